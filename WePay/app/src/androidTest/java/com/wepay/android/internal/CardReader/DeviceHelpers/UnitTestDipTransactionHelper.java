@@ -26,7 +26,7 @@ public class UnitTestDipTransactionHelper {
     private static final Context CONTEXT = InstrumentationRegistry.getTargetContext();
     private static final String ENVIRONMENT = Config.ENVIRONMENT_STAGE;
     private Config config = new Config(CONTEXT, CLIENT_ID, ENVIRONMENT);
-    private DipTransactionHelper dipTransactionHelper = new DipTransactionHelper(config, null, null, null);
+    private DipTransactionHelper dipTransactionHelper = new DipTransactionHelper(config, null, null, null, new ReaderCommandExecutor());
 
     @Test
     public void testShouldReactToError() {
@@ -0,0 +1,49 @@
+package com.wepay.android.internal.CardReader.DeviceHelpers;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestDiscoveryBackoff {
+
+    @Test
+    public void testFirstSearchIsShortAndImmediate() {
+        DiscoveryBackoff backoff = new DiscoveryBackoff();
+
+        Assert.assertEquals(DiscoveryBackoff.INITIAL_SEARCH_WINDOW_MS, backoff.getSearchWindowMs());
+        Assert.assertEquals(0, backoff.getRescanDelayMs());
+    }
+
+    @Test
+    public void testEmptySearchesBackOffUpToLimits() {
+        DiscoveryBackoff backoff = new DiscoveryBackoff();
+
+        backoff.onEmptySearch();
+        Assert.assertEquals(DiscoveryBackoff.INITIAL_SEARCH_WINDOW_MS * 2, backoff.getSearchWindowMs());
+        Assert.assertEquals(DiscoveryBackoff.INITIAL_RESCAN_DELAY_MS, backoff.getRescanDelayMs());
+
+        backoff.onEmptySearch();
+        Assert.assertEquals(DiscoveryBackoff.INITIAL_RESCAN_DELAY_MS * 2, backoff.getRescanDelayMs());
+
+        for (int i = 0; i < 100; i++) {
+            backoff.onEmptySearch();
+        }
+        Assert.assertEquals(DiscoveryBackoff.MAX_SEARCH_WINDOW_MS, backoff.getSearchWindowMs());
+        Assert.assertEquals(DiscoveryBackoff.MAX_RESCAN_DELAY_MS, backoff.getRescanDelayMs());
+    }
+
+    @Test
+    public void testResetStartsOver() {
+        DiscoveryBackoff backoff = new DiscoveryBackoff();
+        backoff.onEmptySearch();
+        backoff.onEmptySearch();
+
+        backoff.reset();
+
+        Assert.assertEquals(DiscoveryBackoff.INITIAL_SEARCH_WINDOW_MS, backoff.getSearchWindowMs());
+        Assert.assertEquals(0, backoff.getRescanDelayMs());
+    }
+}
@@ -0,0 +1,110 @@
+package com.wepay.android.internal.CardReader.DeviceHelpers;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestReaderCommandExecutor {
+    private static final long TIMEOUT_SEC = 5;
+
+    @Test
+    public void testCommandsRunInOrder() throws InterruptedException {
+        ReaderCommandExecutor executor = new ReaderCommandExecutor();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(10);
+
+        for (int i = 0; i < 10; i++) {
+            final int index = i;
+            executor.execute("command" + i, new Runnable() {
+                @Override
+                public void run() {
+                    order.add(index);
+                    done.countDown();
+                }
+            });
+        }
+
+        Assert.assertTrue(done.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        Assert.assertEquals(10, order.size());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    @Test
+    public void testCancelPendingDropsQueuedCommands() throws InterruptedException {
+        ReaderCommandExecutor executor = new ReaderCommandExecutor();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final boolean[] cancelledRan = {false};
+
+        executor.execute("blocking", this.getBlockingCommand(blocked, release));
+        Assert.assertTrue(blocked.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+
+        executor.execute("cancelled", new Runnable() {
+            @Override
+            public void run() {
+                cancelledRan[0] = true;
+            }
+        });
+        executor.cancelPending();
+
+        executor.execute("after", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        release.countDown();
+
+        Assert.assertTrue(done.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        Assert.assertFalse(cancelledRan[0]);
+    }
+
+    @Test
+    public void testFullQueueDropsCommands() throws InterruptedException {
+        ReaderCommandExecutor executor = new ReaderCommandExecutor();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        executor.execute("blocking", this.getBlockingCommand(blocked, release));
+        Assert.assertTrue(blocked.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+
+        for (int i = 0; i < ReaderCommandExecutor.MAX_PENDING_COMMANDS; i++) {
+            Assert.assertTrue(executor.execute("queued" + i, noop));
+        }
+        Assert.assertFalse(executor.execute("dropped", noop));
+        Assert.assertEquals(ReaderCommandExecutor.MAX_PENDING_COMMANDS, executor.getPendingCount());
+
+        release.countDown();
+    }
+
+    private Runnable getBlockingCommand(final CountDownLatch blocked, final CountDownLatch release) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package com.wepay.android.internal.CardReader.DeviceHelpers;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.roam.roamreaderunifiedapi.constants.Command;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestReaderConfigPlan {
+    private ReaderConfigRecord desired = new ReaderConfigRecord("aids", Arrays.asList("key0", "key1", "key2"), "amount", "online", "response", "ui");
+
+    @Test
+    public void testUnknownConfigIsFullyConfigured() {
+        ReaderConfigPlan plan = new ReaderConfigPlan(new ReaderConfigRecord(), desired);
+
+        List<Command> expected = Arrays.asList(Command.ClearAIDsList, Command.SubmitAIDsList,
+                Command.ClearPublicKeys, Command.SubmitPublicKey, Command.SubmitPublicKey, Command.SubmitPublicKey,
+                Command.ConfigureAmountDOLData, Command.ConfigureOnlineDOLData, Command.ConfigureResponseDOLData,
+                Command.ConfigureUserInterfaceOptions);
+
+        Assert.assertEquals(expected, this.runPlan(plan, -1));
+        Assert.assertEquals(desired.toJSONString(), plan.getAppliedRecord().toJSONString());
+    }
+
+    @Test
+    public void testAppliedConfigNeedsNoCommands() {
+        ReaderConfigPlan plan = new ReaderConfigPlan(ReaderConfigRecord.fromJSONString(desired.toJSONString()), desired);
+
+        Assert.assertTrue(plan.isComplete());
+        Assert.assertNull(plan.getNextCommand());
+    }
+
+    @Test
+    public void testOnlyMissingPublicKeysAreSubmitted() {
+        ReaderConfigRecord applied = new ReaderConfigRecord("aids", Arrays.asList("key0", "key2"), "amount", "online", "response", "ui");
+        ReaderConfigPlan plan = new ReaderConfigPlan(applied, desired);
+
+        Assert.assertEquals(Command.SubmitPublicKey, plan.getNextCommand());
+        Assert.assertEquals(1, plan.getNextPublicKeyIndex());
+        Assert.assertEquals(Arrays.asList(Command.SubmitPublicKey), this.runPlan(plan, -1));
+    }
+
+    @Test
+    public void testUnwantedPublicKeyClearsAllKeys() {
+        ReaderConfigRecord applied = new ReaderConfigRecord("aids", Arrays.asList("key0", "old"), "amount", "online", "response", "ui");
+        ReaderConfigPlan plan = new ReaderConfigPlan(applied, desired);
+
+        List<Command> expected = Arrays.asList(Command.ClearPublicKeys,
+                Command.SubmitPublicKey, Command.SubmitPublicKey, Command.SubmitPublicKey);
+
+        Assert.assertEquals(expected, this.runPlan(plan, -1));
+    }
+
+    @Test
+    public void testInterruptedConfigResumes() {
+        ReaderConfigPlan plan = new ReaderConfigPlan(new ReaderConfigRecord(), desired);
+
+        // interrupted after the first public key
+        this.runPlan(plan, 4);
+        String checkpoint = plan.getAppliedRecord().toJSONString();
+
+        ReaderConfigPlan resumed = new ReaderConfigPlan(ReaderConfigRecord.fromJSONString(checkpoint), desired);
+        Assert.assertEquals(1, resumed.getNextPublicKeyIndex());
+
+        List<Command> expected = Arrays.asList(Command.SubmitPublicKey, Command.SubmitPublicKey,
+                Command.ConfigureAmountDOLData, Command.ConfigureOnlineDOLData, Command.ConfigureResponseDOLData,
+                Command.ConfigureUserInterfaceOptions);
+
+        Assert.assertEquals(expected, this.runPlan(resumed, -1));
+    }
+
+    private List<Command> runPlan(ReaderConfigPlan plan, int maxCommands) {
+        List<Command> commands = new ArrayList<Command>();
+
+        while (!plan.isComplete() && commands.size() != maxCommands) {
+            commands.add(plan.getNextCommand());
+            plan.onCommandSucceeded();
+        }
+
+        return commands;
+    }
+}
@@ -0,0 +1,228 @@
+package com.wepay.android.internal;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.wepay.android.internal.network.CircuitBreaker;
+import com.wepay.android.internal.network.HttpRequest;
+import com.wepay.android.internal.network.HttpResponse;
+import com.wepay.android.internal.network.HttpTransport;
+import com.wepay.android.internal.network.JsonRequestBody;
+import com.wepay.android.internal.network.RateLimiter;
+import com.wepay.android.internal.network.ResponseDecoder;
+import com.wepay.android.internal.network.RetryPolicy;
+
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestApiCall {
+    private static final String ENDPOINT = "credit_card/create_emv";
+    private static final String URL = "https://stage.wepayapi.com/v2/" + ENDPOINT;
+
+    @Test
+    public void testHedgedCopyWinsAndSlowCopyIsCancelled() throws InterruptedException {
+        StubTransport transport = new StubTransport();
+        transport.addResponse(5000, 200);
+        transport.addResponse(50, 201);
+
+        Result result = this.run(transport, RetryPolicy.NO_RETRY, 200);
+
+        Assert.assertEquals(201, result.statusCode);
+        Assert.assertEquals(2, transport.requests.size());
+        Assert.assertEquals(1, transport.cancelledCount);
+        Assert.assertEquals(transport.requests.get(0).getHeaders().get(ApiCall.HEADER_IDEMPOTENCY_KEY),
+                transport.requests.get(1).getHeaders().get(ApiCall.HEADER_IDEMPOTENCY_KEY));
+    }
+
+    @Test
+    public void testFastResponseIsNotHedged() throws InterruptedException {
+        StubTransport transport = new StubTransport();
+        transport.addResponse(20, 200);
+
+        Result result = this.run(transport, RetryPolicy.NO_RETRY, 500);
+
+        Assert.assertEquals(200, result.statusCode);
+        Thread.sleep(700);
+        Assert.assertEquals(1, transport.requests.size());
+    }
+
+    @Test
+    public void testRetryAfterTransientFailure() throws InterruptedException {
+        StubTransport transport = new StubTransport();
+        transport.addResponse(20, 503);
+        transport.addResponse(20, 200);
+
+        Result result = this.run(transport, new RetryPolicy(2, 10, 10), -1);
+
+        Assert.assertEquals(200, result.statusCode);
+        Assert.assertEquals(2, transport.requests.size());
+        Assert.assertEquals(transport.requests.get(0).getHeaders().get(ApiCall.HEADER_IDEMPOTENCY_KEY),
+                transport.requests.get(1).getHeaders().get(ApiCall.HEADER_IDEMPOTENCY_KEY));
+    }
+
+    @Test
+    public void testNoRetryAfterRejection() throws InterruptedException {
+        StubTransport transport = new StubTransport();
+        transport.addResponse(20, 400);
+
+        Result result = this.run(transport, new RetryPolicy(2, 10, 10), -1);
+
+        Assert.assertEquals(400, result.statusCode);
+        Assert.assertEquals(1, transport.requests.size());
+    }
+
+    @Test
+    public void testAbandonableAttemptNotStartedNearDeadline() throws InterruptedException {
+        StubTransport transport = new StubTransport();
+        transport.addResponse(20, 200);
+        TransactionDeadline deadline = TransactionDeadline.start(ApiCall.MIN_ABANDONABLE_ATTEMPT_BUDGET_MS - 1000);
+
+        Result result = this.run(transport, RetryPolicy.NO_RETRY, -1, deadline, new Result(), null, null);
+
+        Assert.assertNotNull(result.throwable);
+        Assert.assertEquals(0, transport.requests.size());
+    }
+
+    @Test
+    public void testSuccessAfterDeadlineGoesToAbandonedHandler() throws InterruptedException {
+        StubTransport transport = new StubTransport();
+        transport.addResponse((int) ApiCall.MIN_ABANDONABLE_ATTEMPT_BUDGET_MS + 2000, 200);
+        TransactionDeadline deadline = TransactionDeadline.start(ApiCall.MIN_ABANDONABLE_ATTEMPT_BUDGET_MS + 500);
+        Result abandonedResult = new Result();
+
+        Result result = this.run(transport, RetryPolicy.NO_RETRY, -1, deadline, abandonedResult, null, null);
+
+        Assert.assertNotNull(result.throwable);
+        Assert.assertEquals(0, transport.cancelledCount);
+        Assert.assertTrue(abandonedResult.latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(200, abandonedResult.statusCode);
+    }
+
+    @Test
+    public void testOpenBreakerDoesNotTakeToken() throws InterruptedException {
+        StubTransport transport = new StubTransport();
+        transport.addResponse(20, 200);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 60000);
+        circuitBreaker.recordFailure(SystemClock.elapsedRealtime());
+        RateLimiter rateLimiter = new RateLimiter(0.01, 1);
+
+        Result result = this.run(transport, RetryPolicy.NO_RETRY, -1, TransactionDeadline.NONE, null, circuitBreaker, rateLimiter);
+
+        Assert.assertNotNull(result.throwable);
+        Assert.assertEquals(0, transport.requests.size());
+        Assert.assertEquals(0, rateLimiter.tryAcquire(SystemClock.elapsedRealtime()));
+    }
+
+    private Result run(StubTransport transport, RetryPolicy retryPolicy, long hedgeDelayMs) throws InterruptedException {
+        return this.run(transport, retryPolicy, hedgeDelayMs, TransactionDeadline.NONE, null, null, null);
+    }
+
+    private Result run(final StubTransport transport, final RetryPolicy retryPolicy, final long hedgeDelayMs,
+                       final TransactionDeadline deadline, final Result abandonedResult,
+                       final CircuitBreaker circuitBreaker, final RateLimiter rateLimiter) throws InterruptedException {
+        final Result result = new Result();
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                new ApiCall<>(transport, ENDPOINT, URL, HttpRequest.METHOD_POST, new JsonRequestBody(new HashMap<String, Object>()),
+                        ResponseDecoder.IGNORE_BODY, retryPolicy, newHandler(result))
+                        .setHedgeDelayMs(hedgeDelayMs)
+                        .setDeadline(deadline)
+                        .setCircuitBreaker(circuitBreaker)
+                        .setRateLimiter(rateLimiter)
+                        .setCancellationToken(new CancellationToken(), (abandonedResult == null) ? null : newHandler(abandonedResult))
+                        .start();
+            }
+        });
+
+        Assert.assertTrue(result.latch.await(10, TimeUnit.SECONDS));
+        return result;
+    }
+
+    private static WepayClient.ResponseHandler<Void> newHandler(final Result result) {
+        return new WepayClient.ResponseHandler<Void>() {
+            @Override
+            public void onSuccess(int statusCode, Void response) {
+                result.statusCode = statusCode;
+                result.latch.countDown();
+            }
+
+            @Override
+            public void onFailure(int statusCode, Throwable throwable, JSONObject errorResponse) {
+                result.statusCode = statusCode;
+                result.throwable = throwable;
+                result.latch.countDown();
+            }
+        };
+    }
+
+    private static class Result {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private int statusCode;
+        private Throwable throwable;
+    }
+
+    /**
+     * A transport that answers each request after a scripted delay.
+     */
+    private static class StubTransport implements HttpTransport {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final Queue<int[]> scriptedResponses = new LinkedList<>();
+        private final List<HttpRequest> requests = new ArrayList<>();
+        private int cancelledCount = 0;
+
+        void addResponse(int delayMs, int statusCode) {
+            this.scriptedResponses.add(new int[] {delayMs, statusCode});
+        }
+
+        @Override
+        public Call enqueue(HttpRequest request, final Callback callback) {
+            this.requests.add(request);
+            final int[] scripted = this.scriptedResponses.poll();
+
+            final Runnable delivery = new Runnable() {
+                @Override
+                public void run() {
+                    if (scripted == null) {
+                        callback.onFailure(new IOException("no scripted response"));
+                    } else {
+                        callback.onResponse(new HttpResponse(scripted[1], new HashMap<String, String>(), "{}".getBytes()));
+                    }
+                }
+            };
+            this.handler.postDelayed(delivery, (scripted == null) ? 0 : scripted[0]);
+
+            return new Call() {
+                private boolean isCancelled = false;
+
+                @Override
+                public void cancel() {
+                    this.isCancelled = true;
+                    cancelledCount++;
+                    handler.removeCallbacks(delivery);
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return this.isCancelled;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.wepay.android.internal;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestCancellationToken {
+
+    @Test
+    public void testCancelRunsActionsOnce() {
+        CancellationToken token = new CancellationToken();
+        AtomicInteger runCount = new AtomicInteger(0);
+        token.register(this.counter(runCount));
+        token.register(this.counter(runCount));
+
+        Assert.assertFalse(token.isCancelled());
+        Assert.assertEquals(0, runCount.get());
+
+        token.cancel();
+        token.cancel();
+
+        Assert.assertTrue(token.isCancelled());
+        Assert.assertEquals(2, runCount.get());
+    }
+
+    @Test
+    public void testRegisterAfterCancelRunsImmediately() {
+        CancellationToken token = new CancellationToken();
+        AtomicInteger runCount = new AtomicInteger(0);
+        token.cancel();
+
+        token.register(this.counter(runCount));
+
+        Assert.assertEquals(1, runCount.get());
+    }
+
+    private Runnable counter(final AtomicInteger runCount) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                runCount.incrementAndGet();
+            }
+        };
+    }
+}
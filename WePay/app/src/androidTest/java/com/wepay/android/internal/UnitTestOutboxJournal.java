@@ -0,0 +1,101 @@
+package com.wepay.android.internal;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestOutboxJournal {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("outbox", ".journal");
+        this.file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    @Test
+    public void testLoadMissingFile() {
+        OutboxJournal journal = new OutboxJournal(this.file);
+
+        Assert.assertTrue(journal.load().isEmpty());
+    }
+
+    @Test
+    public void testAddSurvivesReload() throws IOException {
+        OutboxJournal journal = new OutboxJournal(this.file);
+        journal.add(new OutboxJournal.Record("1", "credit_card/auth_reverse", "https://wepayapi.com/v2/credit_card/auth_reverse", "{\"credit_card_id\":1234567890}", 1000));
+        journal.add(new OutboxJournal.Record("2", "checkout/signature/create", "https://wepayapi.com/v2/checkout/signature/create", "{}", 2000));
+
+        List<OutboxJournal.Record> records = new OutboxJournal(this.file).load();
+
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("1", records.get(0).getId());
+        Assert.assertEquals("credit_card/auth_reverse", records.get(0).getEndpoint());
+        Assert.assertEquals("{\"credit_card_id\":1234567890}", records.get(0).getBody());
+        Assert.assertEquals(1000, records.get(0).getCreatedAt());
+        Assert.assertEquals("2", records.get(1).getId());
+    }
+
+    @Test
+    public void testMarkDoneSurvivesReload() throws IOException {
+        OutboxJournal journal = new OutboxJournal(this.file);
+        journal.add(new OutboxJournal.Record("1", "credit_card/auth_reverse", "url", "{}", 1000));
+        journal.add(new OutboxJournal.Record("2", "credit_card/auth_reverse", "url", "{}", 2000));
+        journal.markDone("1");
+
+        List<OutboxJournal.Record> records = new OutboxJournal(this.file).load();
+
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals("2", records.get(0).getId());
+    }
+
+    @Test
+    public void testTornLineIsIgnored() throws IOException {
+        OutboxJournal journal = new OutboxJournal(this.file);
+        journal.add(new OutboxJournal.Record("1", "credit_card/auth_reverse", "url", "{}", 1000));
+
+        FileOutputStream outputStream = new FileOutputStream(this.file, true);
+        outputStream.write("{\"op\":\"add\",\"id\":\"2\",\"endp".getBytes("UTF-8"));
+        outputStream.close();
+
+        List<OutboxJournal.Record> records = new OutboxJournal(this.file).load();
+
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals("1", records.get(0).getId());
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        OutboxJournal journal = new OutboxJournal(this.file);
+        journal.add(new OutboxJournal.Record("pending", "credit_card/auth_reverse", "url", "{}", 1000));
+
+        for (int i = 0; i < 20; i++) {
+            journal.add(new OutboxJournal.Record("done" + i, "credit_card/auth_reverse", "url", "{}", 1000));
+            journal.markDone("done" + i);
+        }
+
+        Assert.assertTrue(journal.getLineCount() < 20);
+
+        OutboxJournal reloaded = new OutboxJournal(this.file);
+        List<OutboxJournal.Record> records = reloaded.load();
+
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals("pending", records.get(0).getId());
+        Assert.assertEquals(reloaded.getLineCount(), journal.getLineCount());
+    }
+}
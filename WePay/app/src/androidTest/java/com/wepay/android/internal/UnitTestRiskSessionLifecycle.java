@@ -0,0 +1,61 @@
+package com.wepay.android.internal;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestRiskSessionLifecycle {
+
+    private static final long TTL_MS = 600000;
+    private static final long REFRESH_LEAD_MS = 60000;
+    private static final long MIN_INTERVAL_MS = 30000;
+
+    @Test
+    public void testSessionIsReusedUntilExpiry() {
+        RiskSessionLifecycle lifecycle = new RiskSessionLifecycle(TTL_MS, REFRESH_LEAD_MS, MIN_INTERVAL_MS);
+
+        Assert.assertNull(lifecycle.getSessionId(0));
+        Assert.assertTrue(lifecycle.tryStartProfiling(0));
+        lifecycle.onSessionStarted("session-1", 100);
+        lifecycle.onProfilingComplete();
+
+        Assert.assertEquals("session-1", lifecycle.getSessionId(1000));
+        Assert.assertFalse(lifecycle.tryStartProfiling(1000));
+        Assert.assertEquals("session-1", lifecycle.getSessionId(TTL_MS + 99));
+        Assert.assertNull(lifecycle.getSessionId(TTL_MS + 100));
+    }
+
+    @Test
+    public void testRefreshStartsBeforeExpiry() {
+        RiskSessionLifecycle lifecycle = new RiskSessionLifecycle(TTL_MS, REFRESH_LEAD_MS, MIN_INTERVAL_MS);
+        Assert.assertTrue(lifecycle.tryStartProfiling(0));
+        lifecycle.onSessionStarted("session-1", 0);
+        lifecycle.onProfilingComplete();
+
+        long refreshTimeMs = TTL_MS - REFRESH_LEAD_MS;
+        Assert.assertFalse(lifecycle.tryStartProfiling(refreshTimeMs - 1));
+        Assert.assertTrue(lifecycle.tryStartProfiling(refreshTimeMs));
+
+        // the old session is still handed out while the replacement is profiled
+        Assert.assertFalse(lifecycle.tryStartProfiling(refreshTimeMs + 1));
+        Assert.assertEquals("session-1", lifecycle.getSessionId(refreshTimeMs + 1));
+
+        lifecycle.onSessionStarted("session-2", refreshTimeMs + 500);
+        Assert.assertEquals("session-2", lifecycle.getSessionId(refreshTimeMs + 500));
+    }
+
+    @Test
+    public void testFailedProfilingIsThrottled() {
+        RiskSessionLifecycle lifecycle = new RiskSessionLifecycle(TTL_MS, REFRESH_LEAD_MS, MIN_INTERVAL_MS);
+
+        Assert.assertTrue(lifecycle.tryStartProfiling(0));
+        lifecycle.onProfilingComplete();
+
+        Assert.assertNull(lifecycle.getSessionId(10));
+        Assert.assertFalse(lifecycle.tryStartProfiling(MIN_INTERVAL_MS - 1));
+        Assert.assertTrue(lifecycle.tryStartProfiling(MIN_INTERVAL_MS));
+    }
+}
@@ -0,0 +1,72 @@
+package com.wepay.android.internal;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestSdkStore {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("sdkstore", ".store");
+        this.file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    @Test
+    public void testValuesSurviveReload() {
+        SdkStore store = new SdkStore(this.file);
+        Set<String> hashes = new HashSet<String>(Arrays.asList("hash1", "hash2"));
+
+        store.putString("reader", "RP350x");
+        store.putStringSet("hashes", hashes);
+        store.putString("removed", "value");
+        store.remove("removed");
+        store.write();
+
+        SdkStore reloaded = new SdkStore(this.file);
+        Assert.assertEquals("RP350x", reloaded.getString("reader", null));
+        Assert.assertEquals(hashes, reloaded.getStringSet("hashes"));
+        Assert.assertNull(reloaded.getString("removed", null));
+        Assert.assertEquals(2, reloaded.getKeys().size());
+    }
+
+    @Test
+    public void testReturnedSetIsACopy() {
+        SdkStore store = new SdkStore(this.file);
+        store.putStringSet("hashes", new HashSet<String>(Arrays.asList("hash1")));
+
+        store.getStringSet("hashes").add("hash2");
+
+        Assert.assertEquals(1, store.getStringSet("hashes").size());
+    }
+
+    @Test
+    public void testCorruptFileIsIgnored() throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(this.file);
+        outputStream.write(new byte[] {1, 2, 3});
+        outputStream.close();
+
+        SdkStore store = new SdkStore(this.file);
+
+        Assert.assertTrue(store.getKeys().isEmpty());
+        Assert.assertEquals("default", store.getString("reader", "default"));
+    }
+}
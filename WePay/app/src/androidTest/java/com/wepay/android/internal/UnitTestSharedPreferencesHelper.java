@@ -22,6 +22,9 @@ public class UnitTestSharedPreferencesHelper {
         SharedPreferences.Editor editor = sharedPreferences.edit();
         editor.clear();
         editor.commit();
+
+        // Clear everything in the SDK store
+        SdkStore.getInstance(CONTEXT).clear();
     }
 
     @Test
@@ -0,0 +1,42 @@
+package com.wepay.android.internal;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestTransactionDeadline {
+
+    @Test
+    public void testRemainingTimeShrinksToZero() {
+        TransactionDeadline deadline = new TransactionDeadline(60000, 1000);
+
+        Assert.assertFalse(deadline.isUnlimited());
+        Assert.assertEquals(60000, deadline.getRemainingMs(1000));
+        Assert.assertEquals(15000, deadline.getRemainingMs(46000));
+        Assert.assertFalse(deadline.isExpired(60999));
+        Assert.assertEquals(0, deadline.getRemainingMs(90000));
+        Assert.assertTrue(deadline.isExpired(61000));
+    }
+
+    @Test
+    public void testClampLimitsPhaseTimeouts() {
+        TransactionDeadline deadline = new TransactionDeadline(60000, 0);
+
+        Assert.assertEquals(40000, deadline.clampMs(40000, 0));
+        Assert.assertEquals(10000, deadline.clampMs(40000, 50000));
+        Assert.assertEquals(0, deadline.clampMs(40000, 70000));
+    }
+
+    @Test
+    public void testNoBudgetNeverExpires() {
+        TransactionDeadline deadline = new TransactionDeadline(0, 0);
+
+        Assert.assertTrue(deadline.isUnlimited());
+        Assert.assertTrue(TransactionDeadline.NONE.isUnlimited());
+        Assert.assertFalse(deadline.isExpired(Long.MAX_VALUE / 2));
+        Assert.assertEquals(40000, deadline.clampMs(40000, Long.MAX_VALUE / 2));
+    }
+}
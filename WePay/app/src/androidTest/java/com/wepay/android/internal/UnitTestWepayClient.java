@@ -4,6 +4,8 @@ import android.content.Context;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.wepay.android.internal.network.RateLimiter;
+import com.wepay.android.internal.network.RequestPriority;
 import com.wepay.android.models.Config;
 
 import org.junit.Assert;
@@ -47,4 +49,20 @@ public class UnitTestWepayClient {
 
         Assert.assertEquals(expected, result);
     }
+
+    @Test
+    public void testRateLimiterFollowsConfig() {
+        Config config = new Config(CONTEXT, CLIENT_ID, Config.ENVIRONMENT_STAGE).setDeferredApiRateLimit(2);
+        RateLimiter rateLimiter = WepayClient.getRateLimiter(config, RequestPriority.BACKGROUND);
+
+        Assert.assertNotNull(rateLimiter);
+        Assert.assertSame(rateLimiter, WepayClient.getRateLimiter(config, RequestPriority.BACKGROUND));
+
+        config.setDeferredApiRateLimit(5);
+        RateLimiter changedRateLimiter = WepayClient.getRateLimiter(config, RequestPriority.BACKGROUND);
+        Assert.assertNotSame(rateLimiter, changedRateLimiter);
+
+        config.setDeferredApiRateLimit(0);
+        Assert.assertNull(WepayClient.getRateLimiter(config, RequestPriority.BACKGROUND));
+    }
 }
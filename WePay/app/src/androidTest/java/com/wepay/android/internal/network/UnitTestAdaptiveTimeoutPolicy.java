@@ -0,0 +1,63 @@
+package com.wepay.android.internal.network;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestAdaptiveTimeoutPolicy {
+
+    @Test
+    public void testCeilingUntilEnoughSamples() {
+        AdaptiveTimeoutPolicy policy = new AdaptiveTimeoutPolicy(10000, 40000);
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 0; i < AdaptiveTimeoutPolicy.MIN_SAMPLES - 1; i++) {
+            histogram.record(1000);
+        }
+
+        Assert.assertEquals(40000, policy.getTimeoutMs(histogram));
+    }
+
+    @Test
+    public void testFastEndpointUsesFloor() {
+        AdaptiveTimeoutPolicy policy = new AdaptiveTimeoutPolicy(10000, 40000);
+        LatencyHistogram histogram = this.histogramOf(800, 50);
+
+        Assert.assertEquals(10000, policy.getTimeoutMs(histogram));
+    }
+
+    @Test
+    public void testTimeoutFollowsPercentile() {
+        AdaptiveTimeoutPolicy policy = new AdaptiveTimeoutPolicy(1000, 40000);
+        LatencyHistogram histogram = this.histogramOf(6000, 50);
+
+        Assert.assertEquals(6000 * AdaptiveTimeoutPolicy.TIMEOUT_MULTIPLIER, policy.getTimeoutMs(histogram));
+    }
+
+    @Test
+    public void testSlowEndpointUsesCeiling() {
+        AdaptiveTimeoutPolicy policy = new AdaptiveTimeoutPolicy(10000, 40000);
+        LatencyHistogram histogram = this.histogramOf(30000, 50);
+
+        Assert.assertEquals(40000, policy.getTimeoutMs(histogram));
+    }
+
+    @Test
+    public void testFloorAboveCeiling() {
+        AdaptiveTimeoutPolicy policy = new AdaptiveTimeoutPolicy(50000, 40000);
+        LatencyHistogram histogram = this.histogramOf(800, 50);
+
+        Assert.assertEquals(40000, policy.getFloorMs());
+        Assert.assertEquals(40000, policy.getTimeoutMs(histogram));
+    }
+
+    private LatencyHistogram histogramOf(long latencyMs, int count) {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 0; i < count; i++) {
+            histogram.record(latencyMs);
+        }
+        return histogram;
+    }
+}
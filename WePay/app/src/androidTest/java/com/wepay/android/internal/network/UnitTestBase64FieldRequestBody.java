@@ -0,0 +1,49 @@
+package com.wepay.android.internal.network;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestBase64FieldRequestBody {
+
+    @Test
+    public void testWriteToAppendsField() throws IOException, JSONException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("checkout_id", "12345");
+        params.put("client_id", "171482");
+
+        // only the first bytes of the buffer hold the value
+        byte[] buffer = "iVBORw0KGgo=unused".getBytes("US-ASCII");
+
+        JSONObject result = new JSONObject(this.write(new Base64FieldRequestBody(params, "base64_img_data", buffer, 12)));
+
+        Assert.assertEquals("12345", result.getString("checkout_id"));
+        Assert.assertEquals("171482", result.getString("client_id"));
+        Assert.assertEquals("iVBORw0KGgo=", result.getString("base64_img_data"));
+    }
+
+    @Test
+    public void testWriteToWithoutOtherParams() throws IOException {
+        byte[] buffer = "AAAA".getBytes("US-ASCII");
+
+        String result = this.write(new Base64FieldRequestBody(new HashMap<String, Object>(), "base64_img_data", buffer, buffer.length));
+
+        Assert.assertEquals("{\"base64_img_data\":\"AAAA\"}", result);
+    }
+
+    private String write(RequestBody body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.writeTo(outputStream);
+        return outputStream.toString("UTF-8");
+    }
+}
@@ -0,0 +1,123 @@
+package com.wepay.android.internal.network;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestCircuitBreaker {
+
+    private static final long OPEN_DURATION_MS = 1000;
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, OPEN_DURATION_MS);
+
+        breaker.recordFailure(0);
+        breaker.recordFailure(0);
+        Assert.assertTrue(breaker.allowRequest(0));
+
+        breaker.recordFailure(0);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(0));
+        Assert.assertFalse(breaker.allowRequest(10));
+        Assert.assertEquals(OPEN_DURATION_MS - 10, breaker.getRemainingOpenMs(10));
+    }
+
+    @Test
+    public void testSuccessResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(3, OPEN_DURATION_MS);
+
+        breaker.recordFailure(0);
+        breaker.recordFailure(0);
+        breaker.recordSuccess();
+        breaker.recordFailure(0);
+        breaker.recordFailure(0);
+
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(0));
+    }
+
+    @Test
+    public void testHalfOpenAllowsSingleProbe() {
+        CircuitBreaker breaker = this.openBreaker();
+
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(OPEN_DURATION_MS));
+        Assert.assertTrue(breaker.allowRequest(OPEN_DURATION_MS));
+        Assert.assertFalse(breaker.allowRequest(OPEN_DURATION_MS + 10));
+    }
+
+    @Test
+    public void testSuccessfulProbeCloses() {
+        CircuitBreaker breaker = this.openBreaker();
+
+        Assert.assertTrue(breaker.allowRequest(OPEN_DURATION_MS));
+        breaker.recordSuccess();
+
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(OPEN_DURATION_MS));
+        Assert.assertTrue(breaker.allowRequest(OPEN_DURATION_MS));
+    }
+
+    @Test
+    public void testFailedProbeReopens() {
+        CircuitBreaker breaker = this.openBreaker();
+
+        Assert.assertTrue(breaker.allowRequest(OPEN_DURATION_MS));
+        breaker.recordFailure(OPEN_DURATION_MS + 100);
+
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(OPEN_DURATION_MS + 100));
+        Assert.assertFalse(breaker.allowRequest(OPEN_DURATION_MS + 200));
+        Assert.assertTrue(breaker.allowRequest(2 * OPEN_DURATION_MS + 100));
+    }
+
+    @Test
+    public void testLateFailureDoesNotExtendOpenDuration() {
+        CircuitBreaker breaker = this.openBreaker();
+
+        breaker.recordFailure(OPEN_DURATION_MS - 1);
+
+        Assert.assertTrue(breaker.allowRequest(OPEN_DURATION_MS));
+    }
+
+    @Test
+    public void testUnreportedProbeExpires() {
+        CircuitBreaker breaker = this.openBreaker();
+
+        Assert.assertTrue(breaker.allowRequest(OPEN_DURATION_MS));
+        Assert.assertFalse(breaker.allowRequest(2 * OPEN_DURATION_MS - 1));
+        Assert.assertTrue(breaker.allowRequest(2 * OPEN_DURATION_MS));
+    }
+
+    @Test
+    public void testIsFailure() {
+        Assert.assertTrue(CircuitBreaker.isFailure(null));
+        Assert.assertTrue(CircuitBreaker.isFailure(this.response(500)));
+        Assert.assertTrue(CircuitBreaker.isFailure(this.response(503)));
+        Assert.assertTrue(CircuitBreaker.isFailure(this.response(429)));
+        Assert.assertFalse(CircuitBreaker.isFailure(this.response(200)));
+        Assert.assertFalse(CircuitBreaker.isFailure(this.response(400)));
+    }
+
+    @Test
+    public void testFindDoesNotCreateBreaker() {
+        String endpoint = "checkout/unknown_endpoint";
+
+        Assert.assertNull(CircuitBreaker.findForEndpoint(endpoint));
+        Assert.assertNull(CircuitBreaker.findForEndpoint(endpoint));
+
+        CircuitBreaker breaker = CircuitBreaker.forEndpoint(endpoint);
+        Assert.assertSame(breaker, CircuitBreaker.findForEndpoint(endpoint));
+    }
+
+    private CircuitBreaker openBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(1, OPEN_DURATION_MS);
+        breaker.recordFailure(0);
+        return breaker;
+    }
+
+    private HttpResponse response(int statusCode) {
+        return new HttpResponse(statusCode, new HashMap<String, String>(), new byte[0]);
+    }
+}
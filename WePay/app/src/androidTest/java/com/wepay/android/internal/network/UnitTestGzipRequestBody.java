@@ -0,0 +1,76 @@
+package com.wepay.android.internal.network;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestGzipRequestBody {
+
+    @Test
+    public void testWriteToCompressesWrappedBody() throws IOException {
+        StringBuilder imageData = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            imageData.append("iVBORw0KGgo=");
+        }
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("base64_img_data", imageData.toString());
+        JsonRequestBody plainBody = new JsonRequestBody(params);
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        plainBody.writeTo(plain);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new GzipRequestBody(plainBody).writeTo(compressed);
+
+        Assert.assertTrue(compressed.size() < plain.size());
+        Assert.assertEquals(plain.toString("UTF-8"), this.decompress(compressed.toByteArray()));
+    }
+
+    @Test
+    public void testWriteToLeavesStreamOpen() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                Assert.fail("The body must not close the caller's stream");
+            }
+        };
+
+        new GzipRequestBody(new ByteArrayRequestBody(JsonRequestBody.CONTENT_TYPE_JSON, "{}".getBytes("UTF-8"))).writeTo(outputStream);
+
+        Assert.assertEquals("{}", this.decompress(outputStream.toByteArray()));
+    }
+
+    @Test
+    public void testHeaders() {
+        GzipRequestBody body = new GzipRequestBody(new ByteArrayRequestBody(JsonRequestBody.CONTENT_TYPE_JSON, new byte[10]));
+
+        Assert.assertEquals(-1, body.getContentLength());
+        Assert.assertEquals(JsonRequestBody.CONTENT_TYPE_JSON, body.getContentType());
+    }
+
+    private String decompress(byte[] data) throws IOException {
+        InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        inputStream.close();
+
+        return outputStream.toString("UTF-8");
+    }
+}
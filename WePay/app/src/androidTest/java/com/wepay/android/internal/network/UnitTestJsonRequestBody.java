@@ -0,0 +1,69 @@
+package com.wepay.android.internal.network;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestJsonRequestBody {
+
+    @Test
+    public void testWriteTo() throws IOException, JSONException {
+        Map<String, Object> address = new HashMap<>();
+        address.put("postal_code", "94025");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("client_id", "171482");
+        params.put("credit_card_id", 1234567890L);
+        params.put("address", address);
+
+        JSONObject result = new JSONObject(this.write(new JsonRequestBody(params)));
+
+        Assert.assertEquals("171482", result.getString("client_id"));
+        Assert.assertEquals(1234567890L, result.getLong("credit_card_id"));
+        Assert.assertEquals("94025", result.getJSONObject("address").getString("postal_code"));
+    }
+
+    @Test
+    public void testWriteToDoesNotEscapeBase64() throws IOException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("base64_img_data", "iVBORw0KGgo=");
+
+        String result = this.write(new JsonRequestBody(params));
+
+        Assert.assertEquals("{\"base64_img_data\":\"iVBORw0KGgo=\"}", result);
+    }
+
+    @Test
+    public void testWriteToIsRepeatable() throws IOException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("client_id", "171482");
+
+        JsonRequestBody body = new JsonRequestBody(params);
+
+        Assert.assertEquals(this.write(body), this.write(body));
+    }
+
+    @Test
+    public void testContentLengthIsUnknown() {
+        JsonRequestBody body = new JsonRequestBody(new HashMap<String, Object>());
+
+        Assert.assertEquals(-1, body.getContentLength());
+        Assert.assertEquals("application/json; charset=utf-8", body.getContentType());
+    }
+
+    private String write(RequestBody body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.writeTo(outputStream);
+        return outputStream.toString("UTF-8");
+    }
+}
@@ -0,0 +1,51 @@
+package com.wepay.android.internal.network;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestLatencyHistogram {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram(10);
+
+        Assert.assertEquals(0, histogram.getSampleCount());
+        Assert.assertEquals(-1, histogram.getPercentile(95));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 100; i >= 1; i--) {
+            histogram.record(i);
+        }
+
+        Assert.assertEquals(100, histogram.getSampleCount());
+        Assert.assertEquals(50, histogram.getPercentile(50));
+        Assert.assertEquals(95, histogram.getPercentile(95));
+        Assert.assertEquals(100, histogram.getPercentile(100));
+        Assert.assertEquals(1, histogram.getPercentile(0));
+    }
+
+    @Test
+    public void testWindowDropsOldestSamples() {
+        LatencyHistogram histogram = new LatencyHistogram(4);
+        histogram.record(10000);
+        for (int i = 0; i < 4; i++) {
+            histogram.record(100);
+        }
+
+        Assert.assertEquals(4, histogram.getSampleCount());
+        Assert.assertEquals(100, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testForEndpointReturnsSameHistogram() {
+        Assert.assertSame(LatencyHistogram.forEndpoint("credit_card/create_emv"), LatencyHistogram.forEndpoint("credit_card/create_emv"));
+        Assert.assertNotSame(LatencyHistogram.forEndpoint("credit_card/create_emv"), LatencyHistogram.forEndpoint("credit_card/create_swipe"));
+    }
+}
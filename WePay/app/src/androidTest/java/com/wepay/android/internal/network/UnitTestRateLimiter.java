@@ -0,0 +1,32 @@
+package com.wepay.android.internal.network;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestRateLimiter {
+
+    @Test
+    public void testBurstThenWait() {
+        RateLimiter limiter = new RateLimiter(10, 3);
+
+        Assert.assertEquals(0, limiter.tryAcquire(0));
+        Assert.assertEquals(0, limiter.tryAcquire(0));
+        Assert.assertEquals(0, limiter.tryAcquire(0));
+        Assert.assertEquals(100, limiter.tryAcquire(0));
+        Assert.assertEquals(40, limiter.tryAcquire(60));
+        Assert.assertEquals(0, limiter.tryAcquire(100));
+    }
+
+    @Test
+    public void testRefillIsCappedAtBurst() {
+        RateLimiter limiter = new RateLimiter(1, 1);
+
+        Assert.assertEquals(0, limiter.tryAcquire(0));
+        Assert.assertEquals(0, limiter.tryAcquire(60000));
+        Assert.assertEquals(1000, limiter.tryAcquire(60000));
+    }
+}
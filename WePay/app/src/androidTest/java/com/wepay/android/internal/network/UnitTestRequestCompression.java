@@ -0,0 +1,46 @@
+package com.wepay.android.internal.network;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestRequestCompression {
+
+    @Test
+    public void testGzippedBodyRejectedByDecodingErrors() {
+        HttpRequest request = this.newRequest(new GzipRequestBody(this.newBody()));
+
+        Assert.assertTrue(RequestCompression.isRejected(request, this.newResponse(415)));
+        Assert.assertTrue(RequestCompression.isRejected(request, this.newResponse(400)));
+        Assert.assertTrue(RequestCompression.isRejected(request, this.newResponse(500)));
+        Assert.assertFalse(RequestCompression.isRejected(request, this.newResponse(200)));
+        Assert.assertFalse(RequestCompression.isRejected(request, this.newResponse(503)));
+        Assert.assertFalse(RequestCompression.isRejected(request, null));
+    }
+
+    @Test
+    public void testPlainBodyIsNeverRejected() {
+        HttpRequest request = this.newRequest(this.newBody());
+
+        Assert.assertFalse(RequestCompression.isRejected(request, this.newResponse(415)));
+        Assert.assertFalse(RequestCompression.isRejected(request, this.newResponse(400)));
+    }
+
+    private HttpRequest newRequest(RequestBody body) {
+        return new HttpRequest("checkout/signature/create", "https://example.com/checkout/signature/create", HttpRequest.METHOD_POST)
+                .setBody(body);
+    }
+
+    private RequestBody newBody() {
+        return new ByteArrayRequestBody(JsonRequestBody.CONTENT_TYPE_JSON, new byte[10]);
+    }
+
+    private HttpResponse newResponse(int statusCode) {
+        return new HttpResponse(statusCode, new HashMap<String, String>(), new byte[0]);
+    }
+}
@@ -0,0 +1,58 @@
+package com.wepay.android.internal.network;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.google.gson.stream.JsonReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestResponseDecoder {
+
+    @Test
+    public void testDecodeCreditCardResponse() throws IOException {
+        String json = "{\"credit_card_id\":1234567890,"
+                + "\"state\":\"new\","
+                + "\"card\":{\"last_four\":\"4242\",\"expiration\":[1,2020]},"
+                + "\"authorisation_code\":\"123456\","
+                + "\"authorisation_response_code\":\"00\","
+                + "\"issuer_authentication_data\":\"ABCDEF\","
+                + "\"issuer_script_template1\":null}";
+
+        CreditCardResponse response = CreditCardResponse.DECODER.decode(new JsonReader(new StringReader(json)));
+
+        Assert.assertEquals("1234567890", response.getCreditCardId());
+        Assert.assertEquals("123456", response.getAuthorisationCode());
+        Assert.assertEquals("00", response.getAuthorisationResponseCode());
+        Assert.assertEquals("ABCDEF", response.getIssuerAuthenticationData());
+        Assert.assertNull(response.getIssuerScriptTemplate1());
+        Assert.assertNull(response.getIssuerScriptTemplate2());
+    }
+
+    @Test
+    public void testDecodeCreditCardResponseEmpty() throws IOException {
+        CreditCardResponse response = CreditCardResponse.DECODER.decode(new JsonReader(new StringReader("{}")));
+
+        Assert.assertNull(response.getCreditCardId());
+        Assert.assertNull(response.getAuthorisationCode());
+    }
+
+    @Test
+    public void testDecodeSignatureResponse() throws IOException {
+        String json = "{\"checkout_id\":12345,\"signature_url\":\"https://wepay.com/signature.png\"}";
+
+        SignatureResponse response = SignatureResponse.DECODER.decode(new JsonReader(new StringReader(json)));
+
+        Assert.assertEquals("https://wepay.com/signature.png", response.getSignatureUrl());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDecodeUnexpectedStructure() throws IOException {
+        SignatureResponse.DECODER.decode(new JsonReader(new StringReader("[]")));
+    }
+}
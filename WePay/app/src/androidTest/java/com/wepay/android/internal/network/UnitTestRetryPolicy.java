@@ -0,0 +1,71 @@
+package com.wepay.android.internal.network;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestRetryPolicy {
+    private static final RetryPolicy POLICY = new RetryPolicy(2, 500, 4000);
+
+    @Test
+    public void testRetryOnNetworkFailure() {
+        Assert.assertTrue(POLICY.shouldRetry(0, null, new SocketTimeoutException()));
+        Assert.assertTrue(POLICY.shouldRetry(1, null, new IOException()));
+    }
+
+    @Test
+    public void testNoRetryAfterMaxRetries() {
+        Assert.assertFalse(POLICY.shouldRetry(2, null, new IOException()));
+        Assert.assertFalse(RetryPolicy.NO_RETRY.shouldRetry(0, null, new IOException()));
+    }
+
+    @Test
+    public void testRetryOnTransientStatus() {
+        Assert.assertTrue(POLICY.shouldRetry(0, this.response(503, null), null));
+        Assert.assertTrue(POLICY.shouldRetry(0, this.response(429, null), null));
+        Assert.assertTrue(POLICY.shouldRetry(0, this.response(504, null), null));
+    }
+
+    @Test
+    public void testNoRetryOnOtherStatus() {
+        Assert.assertFalse(POLICY.shouldRetry(0, this.response(400, null), null));
+        Assert.assertFalse(POLICY.shouldRetry(0, this.response(500, null), null));
+    }
+
+    @Test
+    public void testDelayIsBoundedByExponentialCeiling() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(POLICY.getDelayMs(0, null, random) < 500);
+            Assert.assertTrue(POLICY.getDelayMs(1, null, random) < 1000);
+            Assert.assertTrue(POLICY.getDelayMs(10, null, random) < 4000);
+        }
+    }
+
+    @Test
+    public void testDelayHonorsRetryAfter() {
+        Random random = new Random(42);
+
+        Assert.assertTrue(POLICY.getDelayMs(0, this.response(503, "2"), random) >= 2000);
+        Assert.assertEquals(4000, POLICY.getDelayMs(0, this.response(503, "120"), random));
+    }
+
+    private HttpResponse response(int statusCode, String retryAfter) {
+        Map<String, String> headers = new HashMap<>();
+        if (retryAfter != null) {
+            headers.put("Retry-After", retryAfter);
+        }
+
+        return new HttpResponse(statusCode, headers, new byte[0]);
+    }
+}
@@ -0,0 +1,75 @@
+package com.wepay.android.models;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class UnitTestSignatureStrokes {
+
+    @Test
+    public void testEncodeDecodeRoundtrip() {
+        SignatureCapture capture = new SignatureCapture(600, 200);
+        capture.startStroke(10.2f, 150.7f);
+        for (int i = 1; i <= 50; i++) {
+            capture.addPoint(10 + i * 5, 150 - i * 2);
+        }
+        capture.endStroke();
+
+        // a tap, and a stroke that moves back left
+        capture.startStroke(400, 20);
+        capture.endStroke();
+        capture.startStroke(580, 190);
+        capture.addPoint(300, 5);
+
+        SignatureStrokes strokes = capture.getSignatureStrokes();
+        byte[] data = strokes.encode();
+        SignatureStrokes decoded = SignatureStrokes.decode(data);
+
+        Assert.assertEquals(600, decoded.getWidth());
+        Assert.assertEquals(200, decoded.getHeight());
+        Assert.assertEquals(3, decoded.getStrokes().size());
+        for (int i = 0; i < strokes.getStrokes().size(); i++) {
+            Assert.assertArrayEquals(strokes.getStrokes().get(i), decoded.getStrokes().get(i));
+        }
+
+        Assert.assertEquals(10, decoded.getStrokes().get(0)[0]);
+        Assert.assertEquals(151, decoded.getStrokes().get(0)[1]);
+
+        // small steps take a byte per coordinate
+        Assert.assertTrue(data.length < 130);
+    }
+
+    @Test
+    public void testRepeatedPointsAreDropped() {
+        SignatureCapture capture = new SignatureCapture(100, 100);
+        capture.startStroke(5, 5);
+        capture.addPoint(5.2f, 4.9f);
+        capture.addPoint(6, 5);
+
+        Assert.assertArrayEquals(new int[] {5, 5, 6, 5}, capture.getSignatureStrokes().getStrokes().get(0));
+    }
+
+    @Test
+    public void testClear() {
+        SignatureCapture capture = new SignatureCapture(100, 100);
+        capture.startStroke(5, 5);
+        capture.clear();
+
+        Assert.assertTrue(capture.getSignatureStrokes().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeTruncatedData() {
+        SignatureCapture capture = new SignatureCapture(100, 100);
+        capture.startStroke(5, 5);
+        capture.addPoint(50, 50);
+        byte[] data = capture.getSignatureStrokes().encode();
+
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        SignatureStrokes.decode(truncated);
+    }
+}
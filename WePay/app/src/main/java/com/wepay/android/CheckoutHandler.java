@@ -18,7 +18,7 @@ public interface CheckoutHandler {
     public void onSuccess(String signatureUrl, String checkoutId);
 
     /**
-     * Gets called when an error occurs while storing a signature.
+     * Gets called when an error occurs while storing a signature. The signature was not stored and will not be retried by the SDK.
      *
      * @param image the signature image to be stored.
      * @param checkoutId the checkout id associated with the signature.
@@ -0,0 +1,17 @@
+package com.wepay.android;
+
+import com.wepay.android.models.NetworkTiming;
+
+/**
+ * The Interface NetworkTimingListener defines the method used to report how long each phase of an API call took.
+ */
+public interface NetworkTimingListener {
+
+    /**
+     * Gets called on the main thread after each attempt of an API call to the endpoint the listener was registered for, whether it succeeded or not.
+     *
+     * @param networkTiming the timing breakdown of the attempt.
+     */
+    public void onNetworkTiming(NetworkTiming networkTiming);
+
+}
@@ -0,0 +1,19 @@
+package com.wepay.android;
+
+import com.wepay.android.enums.SignatureStatus;
+
+/**
+ * The Interface SignatureProgressListener defines the method used to report the progress of a storeSignatureImage operation.
+ */
+public interface SignatureProgressListener {
+
+    /**
+     * Gets called on the main thread when storing a signature moves on to the next step. The final result is still returned via the CheckoutHandler interface,
+     * except for a signature that is queued for a background upload: SignatureStatus.QUEUED is the last call for it, and no CheckoutHandler method follows.
+     *
+     * @param checkoutId the checkout id associated with the signature.
+     * @param signatureStatus the step that started.
+     */
+    public void onSignatureProgress(String checkoutId, SignatureStatus signatureStatus);
+
+}
@@ -9,16 +9,20 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import com.wepay.android.enums.ApiHealth;
 import com.wepay.android.enums.PaymentMethod;
 import com.wepay.android.internal.CardReaderDirector;
 import com.wepay.android.internal.CheckoutHelper;
 import com.wepay.android.internal.LogHelper;
-import com.wepay.android.internal.RiskHelper;
+import com.wepay.android.internal.RiskSessionManager;
+import com.wepay.android.internal.TransactionDeadline;
 import com.wepay.android.internal.WepayClient;
+import com.wepay.android.internal.network.CreditCardResponse;
 import com.wepay.android.models.Config;
 import com.wepay.android.models.Error;
 import com.wepay.android.models.PaymentInfo;
 import com.wepay.android.models.PaymentToken;
+import com.wepay.android.models.SignatureStrokes;
 
 import org.json.JSONObject;
 
@@ -39,8 +43,8 @@ public class WePay {
     /** The checkout helper. */
     private CheckoutHelper checkoutHelper;
 
-    /** The risk helper. */
-    private RiskHelper riskHelper;
+    /** The risk session manager. */
+    private RiskSessionManager riskSessionManager;
 
     /** The is card reader available flag. */
     private boolean isCardReaderAvailable = false;
@@ -81,12 +85,18 @@ public class WePay {
         // check if risk libraries are included
         try  {
             Class.forName("com.wepay.android.internal.RiskHelper");
-            this.riskHelper = new RiskHelper(config);
+            this.riskSessionManager = RiskSessionManager.getInstance(config);
         } catch (final ClassNotFoundException e) {
-            this.riskHelper = null;
+            this.riskSessionManager = null;
         } catch (final NoClassDefFoundError e) {
-            this.riskHelper = null;
+            this.riskSessionManager = null;
         }
+
+        // Start risk profiling now, so that a session is ready by the first tokenization.
+        this.prepareRiskSession();
+
+        // Open the connection to WePay's servers before the first API call needs it.
+        WepayClient.prewarm(config);
     }
 
     /**
@@ -133,6 +143,8 @@ public class WePay {
      *
      * However, if a general error (errorCategory:ERROR_CATEGORY_CARD_READER, errorCode:CARD_READER_GENERAL_ERROR) occurs while reading, after a few seconds delay, the reader will automatically start waiting again for another 60 seconds. At that time, CardReaderHandler's onStatusChange() method will be called with status = WAITING_FOR_CARD, and the user can try to swipe/dip again. This behavior can be configured with com.wepay.android.models.Config.
      *
+     * If a transaction timeout is set with com.wepay.android.models.Config's setTransactionTimeoutMs(), the whole transaction, including finding the reader and authorizing the card, will not take longer than that.
+     *
      * WARNING: When this method is called, if the "AUDIOJACK" device is selected via the onCardReaderSelection method in the CardReaderHandler interface, a (normally inaudible) signal is sent to the headphone jack of the phone, where the reader is expected to be connected. If headphones are connected instead of the reader, they may emit a very loud audible tone on receiving this signal. This method should only be called when the user intends to use a reader.
      *
      * @param cardReaderHandler the card reader handler
@@ -144,8 +156,15 @@ public class WePay {
             @Override
             public void run() {
                 if (isCardReaderAvailable) {
+                    // The authorization call follows the card dip, so make sure a connection is ready for it.
+                    WepayClient.prewarm(config);
+
+                    // Profile while the card is read, so the authorization does not wait for it.
+                    prepareRiskSession();
+
                     String sessionId = getSessionID();
-                    cardReaderDirector.startCardReaderForTokenizing(cardReaderHandler, tokenizationHandler, authorizationHandler, sessionId);
+                    TransactionDeadline transactionDeadline = TransactionDeadline.start(config.getTransactionTimeoutMs());
+                    cardReaderDirector.startCardReaderForTokenizing(cardReaderHandler, tokenizationHandler, authorizationHandler, sessionId, transactionDeadline);
                 } else {
                     Log.e("wepay_sdk", "card reader functionality is not available");
                 }
@@ -222,11 +241,11 @@ public class WePay {
                 if (paymentInfo.getPaymentMethod() == PaymentMethod.MANUAL) {
                     Map<String, Object> paramMap = getManualParamMap(paymentInfo, sessionId);
 
-                    WepayClient.creditCardCreate(config, paramMap, new WepayClient.ResponseHandler() {
+                    WepayClient.creditCardCreate(config, paramMap, new WepayClient.ResponseHandler<CreditCardResponse>() {
                         @Override
-                        public void onSuccess(int statusCode, JSONObject response) {
+                        public void onSuccess(int statusCode, CreditCardResponse response) {
 
-                            String tokenId = response.isNull("credit_card_id") ? null : response.optString("credit_card_id");
+                            String tokenId = response.getCreditCardId();
                             PaymentToken token = new PaymentToken(tokenId);
 
                             tokenizationHandler.onSuccess(paymentInfo, token);
@@ -256,20 +275,99 @@ public class WePay {
      * The signature can be retrieved via a server-to-server call that fetches the checkout object.
      * The aspect ratio (width:height) of the image must be between 1:4 and 4:1.
      * If needed, the image will internally be scaled to fit inside 256x256 pixels, while maintaining the original aspect ratio.
+     * The image is scaled and encoded on a background thread, so it must not be recycled until CheckoutHandler's onSuccess() or onError() method is called.
+     * If the signature cannot be uploaded right away, for example while the device is offline or after a first attempt that failed, it is queued and uploaded in the background.
+     * A queued signature is reported as SignatureStatus.QUEUED via the SignatureProgressListener, and no CheckoutHandler method is called for it. It must not be stored again.
+     * onError() is only called if the signature will not be stored.
      *
      * @param image the signature image to be stored.
      * @param checkoutId the checkout id associated with the signature
      * @param checkoutHandler the signature handler
      */
     public void storeSignatureImage(final Bitmap image, final String checkoutId, final CheckoutHandler checkoutHandler) {
+        this.storeSignatureImage(image, checkoutId, checkoutHandler, null);
+    }
+
+    /**
+     * Use this method to store a signature image associated with a checkout id on WePay's servers, and follow the progress of the operation.
+     * Works like storeSignatureImage(Bitmap, String, CheckoutHandler), and additionally calls the SignatureProgressListener on the main thread as each step starts.
+     *
+     * @param image the signature image to be stored.
+     * @param checkoutId the checkout id associated with the signature
+     * @param checkoutHandler the signature handler
+     * @param signatureProgressListener the signature progress listener, may be null
+     */
+    public void storeSignatureImage(final Bitmap image, final String checkoutId, final CheckoutHandler checkoutHandler, final SignatureProgressListener signatureProgressListener) {
         this.operationHandler.post(new Runnable() {
             @Override
             public void run() {
-                checkoutHelper.storeSignatureImage(image, checkoutId, checkoutHandler);
+                checkoutHelper.storeSignatureImage(image, checkoutId, checkoutHandler, signatureProgressListener);
             }
         });
     }
 
+    /**
+     * Use this method to store a signature recorded with a SignatureCapture, associated with a checkout id, on WePay's servers.
+     * The strokes are rendered to an image on a background thread, at the size the image is stored at, so the app does not need to draw the signature into a Bitmap first. The stored image shows black strokes on a white background.
+     * The aspect ratio (width:height) of the capture area must be between 1:4 and 4:1. If an error occurs, CheckoutHandler's onError() method is called with a null image.
+     *
+     * @param signatureStrokes the signature to be stored.
+     * @param checkoutId the checkout id associated with the signature
+     * @param checkoutHandler the signature handler
+     * @param signatureProgressListener the signature progress listener, may be null
+     */
+    public void storeSignatureStrokes(final SignatureStrokes signatureStrokes, final String checkoutId, final CheckoutHandler checkoutHandler, final SignatureProgressListener signatureProgressListener) {
+        this.operationHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                checkoutHelper.storeSignatureStrokes(signatureStrokes, checkoutId, checkoutHandler, signatureProgressListener);
+            }
+        });
+    }
+
+    /**
+     * Use this method to open a connection to WePay's servers ahead of time, for example when the checkout screen is shown.
+     * The SDK already does this when it is initialized and when a transaction for tokenizing is started, but idle connections are eventually closed. Calling this shortly before a transaction makes sure that the tokenization call does not wait for a new connection to be set up.
+     * Calling this method repeatedly has no additional cost.
+     */
+    public void prewarm() {
+        WepayClient.prewarm(config);
+    }
+
+    /**
+     * Use this method to receive a timing breakdown of every call the SDK makes to an endpoint, for example to feed it into your own monitoring.
+     * The listener is called on the main thread after each attempt, including retries and failed attempts. Endpoints are listed as constants in NetworkTiming, for example NetworkTiming.ENDPOINT_CREDIT_CARD_CREATE_EMV.
+     * The listener stays registered until removeNetworkTimingListener is called.
+     *
+     * @param endpoint the endpoint to listen to
+     * @param networkTimingListener the network timing listener
+     */
+    public void addNetworkTimingListener(String endpoint, NetworkTimingListener networkTimingListener) {
+        WepayClient.addNetworkTimingListener(endpoint, networkTimingListener);
+    }
+
+    /**
+     * Use this method to stop receiving the timing breakdown of calls to an endpoint.
+     *
+     * @param endpoint the endpoint the listener was registered for
+     * @param networkTimingListener the network timing listener
+     */
+    public void removeNetworkTimingListener(String endpoint, NetworkTimingListener networkTimingListener) {
+        WepayClient.removeNetworkTimingListener(endpoint, networkTimingListener);
+    }
+
+    /**
+     * Use this method to check whether the SDK can currently reach an endpoint, for example before starting a card transaction.
+     * After several consecutive calls to an endpoint fail, the SDK stops sending calls to it for a while, and those calls fail right away. During that time, this method returns UNAVAILABLE, and your app can switch to a fallback payment flow instead of waiting for each call to fail.
+     * Endpoints are listed as constants in NetworkTiming, for example NetworkTiming.ENDPOINT_CREDIT_CARD_CREATE_EMV.
+     *
+     * @param endpoint the endpoint to check
+     * @return the health of the endpoint
+     */
+    public ApiHealth getApiHealth(String endpoint) {
+        return WepayClient.getApiHealth(config, endpoint);
+    }
+
     /**
      * Use this method to get the name of the most recently used card reader.
      *
@@ -357,6 +455,12 @@ public class WePay {
     }
 
     private String getSessionID() {
-        return (this.riskHelper == null) ? null : this.riskHelper.getSessionId();
+        return (this.riskSessionManager == null) ? null : this.riskSessionManager.getSessionId();
+    }
+
+    private void prepareRiskSession() {
+        if (this.riskSessionManager != null) {
+            this.riskSessionManager.prepareSession();
+        }
     }
 }
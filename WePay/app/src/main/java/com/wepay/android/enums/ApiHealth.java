@@ -0,0 +1,60 @@
+package com.wepay.android.enums;
+
+/**
+ * The Enum ApiHealth defines the health of a WePay API endpoint, as seen by the SDK's recent calls to it.
+ * A POS can use it to switch to a fallback payment flow as soon as the API becomes unreachable.
+ * @see com.wepay.android.WePay#getApiHealth(String)
+ */
+public enum ApiHealth {
+
+    /** Calls to the endpoint are succeeding. */
+    AVAILABLE(0),
+
+    /** Calls to the endpoint kept failing, and new calls fail right away without being sent. */
+    UNAVAILABLE(1),
+
+    /** Calls to the endpoint kept failing, and the next call will be sent to check if it has recovered. */
+    RECOVERING(2),
+
+    /** The device has no network connection. */
+    OFFLINE(3);
+
+    /** The code. */
+    private final int code;
+
+    /** \internal
+     * Instantiates a new api health.
+     *
+     * @param code the code representing the api health
+     */
+    ApiHealth(int code) {
+        this.code = code;
+    }
+
+    /** \internal
+     * Gets the code representing the api health.
+     *
+     * @return the code
+     */
+    public int getApiHealthCode() {
+        return code;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        switch (this.code) {
+            case 0:
+                return "AVAILABLE";
+            case 1:
+                return "UNAVAILABLE";
+            case 2:
+                return "RECOVERING";
+            case 3:
+                return "OFFLINE";
+            default:
+                return "UNDEFINED_API_HEALTH";
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.wepay.android.enums;
+
+/**
+ * The Enum SignatureStatus defines the steps of storing a signature image.
+ * @see com.wepay.android.SignatureProgressListener
+ */
+public enum SignatureStatus {
+
+    /** The image is being scaled to the stored size. */
+    SCALING(0),
+
+    /** The image is being compressed and encoded. */
+    ENCODING(1),
+
+    /** The encoded image is queued for upload to WePay's servers. */
+    UPLOADING(2),
+
+    /** The upload could not be completed now, and will be retried in the background. This is the final step reported for the signature. */
+    QUEUED(3);
+
+    /** The code. */
+    private final int code;
+
+    /** \internal
+     * Instantiates a new signature status.
+     *
+     * @param code the code representing the signature status
+     */
+    SignatureStatus(int code) {
+        this.code = code;
+    }
+
+    /** \internal
+     * Gets the code representing the signature status.
+     *
+     * @return the code
+     */
+    public int getSignatureStatusCode() {
+        return code;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        switch (this.code) {
+            case 0:
+                return "SCALING";
+            case 1:
+                return "ENCODING";
+            case 2:
+                return "UPLOADING";
+            case 3:
+                return "QUEUED";
+            default:
+                return "UNDEFINED_SIGNATURE_STATUS";
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package com.wepay.android.internal;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.wepay.android.internal.network.AdaptiveTimeoutPolicy;
+import com.wepay.android.internal.network.CircuitBreaker;
+import com.wepay.android.internal.network.HttpRequest;
+import com.wepay.android.internal.network.HttpResponse;
+import com.wepay.android.internal.network.HttpTransport;
+import com.wepay.android.internal.network.LatencyHistogram;
+import com.wepay.android.internal.network.RateLimiter;
+import com.wepay.android.internal.network.RequestBody;
+import com.wepay.android.internal.network.RequestCompression;
+import com.wepay.android.internal.network.RequestPriority;
+import com.wepay.android.internal.network.ResponseDecoder;
+import com.wepay.android.internal.network.RetryPolicy;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A single logical API call, which may be sent more than once. Every attempt carries the same
+ * Idempotency-Key header, so the server processes the call at most once no matter how many
+ * attempts reach it. The call's result is delivered to its response handler exactly once.
+ *
+ * Attempts are sent again according to the call's RetryPolicy. If a hedge delay is set and the
+ * first attempt has not answered within it, a second copy is sent alongside; the first answer
+ * wins and the other copy is cancelled.
+ *
+ * Each attempt's timeout is taken from the call's AdaptiveTimeoutPolicy, based on the endpoint's
+ * recent latencies. A timed out attempt counts as a latency of its full timeout, so that a slow
+ * spell raises later timeouts instead of tripping every call at the floor.
+ *
+ * If a rate limiter is set, every attempt takes a token from it. A first attempt or retry that
+ * finds no token waits for one, and a hedged copy that finds none is not sent.
+ *
+ * If a circuit breaker is set, every attempt's outcome is reported to it, and while it is open the
+ * call fails right away instead of waiting for a timeout, without taking a token from the rate
+ * limiter.
+ *
+ * If a transaction deadline is set, the call fails with a timeout once it has passed, and a retry
+ * that would start after it is not made. Each attempt's timeout is cut to the time that is left,
+ * unless an abandoned response handler is set: the server may act on such an attempt no matter when
+ * the client gives up on it, so it is not started with less than a minimum budget left, and if the
+ * deadline passes while it is in flight it runs to completion and a success goes to that handler.
+ *
+ * If a cancellation token is set, cancelling it abandons the call: nothing more is sent and the
+ * response handler is never called. Attempts in flight are cancelled, unless an abandoned response
+ * handler is set, in which case they run to completion and a success goes to that handler, so that
+ * the caller can undo what the server did.
+ *
+ * ApiCall is driven from the main thread, where the transport delivers its results.
+ *
+ * @param <T> the type of the decoded response
+ */
+public class ApiCall<T> {
+
+    /** The name of the header that lets the server deduplicate attempts. */
+    static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    /** The timeout of an attempt in milliseconds, if no timeout policy is set. */
+    private static final int DEFAULT_TIMEOUT_MS = 40000;
+
+    /** The least time left before the deadline for an attempt whose success must be undone if abandoned. */
+    static final long MIN_ABANDONABLE_ATTEMPT_BUDGET_MS = 5000;
+
+    /** The source of retry jitter. */
+    private static final Random RANDOM = new Random();
+
+    private final HttpTransport transport;
+    private final String endpoint;
+    private final String url;
+    private final String method;
+    private final RequestBody body;
+    private final ResponseDecoder<T> decoder;
+    private final RetryPolicy retryPolicy;
+    private final WepayClient.ResponseHandler<T> responseHandler;
+    private final String idempotencyKey = UUID.randomUUID().toString();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /** The delay before a hedged copy is sent, in milliseconds, or -1 to never hedge. */
+    private long hedgeDelayMs = -1;
+
+    /** Determines if the body may be gzipped. */
+    private boolean compressionEnabled = false;
+
+    /** Sets the timeout of each attempt. Unless replaced, every attempt gets the same fixed timeout. */
+    private AdaptiveTimeoutPolicy timeoutPolicy = new AdaptiveTimeoutPolicy(DEFAULT_TIMEOUT_MS, DEFAULT_TIMEOUT_MS);
+
+    /** The scheduling priority of every attempt. */
+    private RequestPriority priority = RequestPriority.NORMAL;
+
+    /** Limits the rate of attempts. May be null. */
+    private RateLimiter rateLimiter = null;
+
+    /** Refuses attempts while the endpoint is failing. May be null. */
+    private CircuitBreaker circuitBreaker = null;
+
+    /** The deadline of the transaction the call belongs to. */
+    private TransactionDeadline deadline = TransactionDeadline.NONE;
+
+    /** Abandons the call when cancelled. May be null. */
+    private CancellationToken cancellationToken = null;
+
+    /** Receives a success that arrives after the call was abandoned. May be null. */
+    private WepayClient.ResponseHandler<T> abandonedResponseHandler = null;
+
+    /** Set while an abandoned call still waits for an attempt that may succeed. */
+    private boolean isAbandoned = false;
+
+    /** The number of retries made so far. */
+    private int retryCount = 0;
+
+    /** The attempts in flight. */
+    private final List<Attempt> activeAttempts = new ArrayList<>();
+
+    /** Sends the hedged copy, while it is scheduled. */
+    private Runnable pendingHedge = null;
+
+    /** Ends the call at the transaction deadline, while it is scheduled. */
+    private Runnable pendingDeadline = null;
+
+    /** Set once the result has been delivered. */
+    private boolean isFinished = false;
+
+    public ApiCall(HttpTransport transport, String endpoint, String url, String method, RequestBody body,
+                   ResponseDecoder<T> decoder, RetryPolicy retryPolicy, WepayClient.ResponseHandler<T> responseHandler) {
+        this.transport = transport;
+        this.endpoint = endpoint;
+        this.url = url;
+        this.method = method;
+        this.body = body;
+        this.decoder = decoder;
+        this.retryPolicy = retryPolicy;
+        this.responseHandler = responseHandler;
+    }
+
+    public String getIdempotencyKey() {
+        return this.idempotencyKey;
+    }
+
+    /**
+     * Sets the delay after which a second copy of the first attempt is sent, if it has not answered.
+     *
+     * @param hedgeDelayMs the delay in milliseconds, or -1 to never hedge
+     * @return the call
+     */
+    public ApiCall<T> setHedgeDelayMs(long hedgeDelayMs) {
+        this.hedgeDelayMs = hedgeDelayMs;
+        return this;
+    }
+
+    /**
+     * Sets the option to gzip the body, if the endpoint's bodies are worth compressing.
+     *
+     * @param compressionEnabled true, if the body may be gzipped
+     * @return the call
+     */
+    public ApiCall<T> setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+        return this;
+    }
+
+    /**
+     * Sets the policy that derives each attempt's timeout from the endpoint's recent latencies.
+     *
+     * @param timeoutPolicy the timeout policy
+     * @return the call
+     */
+    public ApiCall<T> setTimeoutPolicy(AdaptiveTimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+        return this;
+    }
+
+    /**
+     * Sets the scheduling priority of the call's attempts.
+     *
+     * @param priority the priority
+     * @return the call
+     */
+    public ApiCall<T> setPriority(RequestPriority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Sets the rate limiter that the call's attempts take their tokens from.
+     *
+     * @param rateLimiter the rate limiter, or null to send without limit
+     * @return the call
+     */
+    public ApiCall<T> setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    /**
+     * Sets the circuit breaker of the call's endpoint.
+     *
+     * @param circuitBreaker the circuit breaker, or null to always send
+     * @return the call
+     */
+    public ApiCall<T> setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    /**
+     * Sets the deadline of the transaction the call belongs to.
+     *
+     * @param deadline the deadline
+     * @return the call
+     */
+    public ApiCall<T> setDeadline(TransactionDeadline deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    /**
+     * Sets the token that abandons the call.
+     *
+     * @param cancellationToken the cancellation token
+     * @param abandonedResponseHandler the handler for a success that arrives after the call was abandoned, or null to cancel attempts in flight
+     * @return the call
+     */
+    public ApiCall<T> setCancellationToken(CancellationToken cancellationToken, WepayClient.ResponseHandler<T> abandonedResponseHandler) {
+        this.cancellationToken = cancellationToken;
+        this.abandonedResponseHandler = abandonedResponseHandler;
+        return this;
+    }
+
+    /**
+     * Sends the first attempt.
+     */
+    public void start() {
+        if (this.cancellationToken != null) {
+            if (this.cancellationToken.isCancelled()) {
+                LogHelper.log("Call to " + this.endpoint + " was cancelled before it was sent");
+                return;
+            }
+
+            this.cancellationToken.register(new Runnable() {
+                @Override
+                public void run() {
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            abandon();
+                        }
+                    });
+                }
+            });
+        }
+
+        if (!this.deadline.isUnlimited()) {
+            this.pendingDeadline = new Runnable() {
+                @Override
+                public void run() {
+                    pendingDeadline = null;
+                    onDeadlineReached();
+                }
+            };
+            this.handler.postDelayed(this.pendingDeadline, this.deadline.getRemainingMs());
+        }
+
+        this.sendAttempt();
+
+        if (this.hedgeDelayMs >= 0) {
+            this.pendingHedge = new Runnable() {
+                @Override
+                public void run() {
+                    pendingHedge = null;
+
+                    if (!isFinished && !activeAttempts.isEmpty()) {
+                        LogHelper.log("Call to " + endpoint + " has not answered in " + hedgeDelayMs + "ms, sending hedged copy");
+                        sendAttempt();
+                    }
+                }
+            };
+            this.handler.postDelayed(this.pendingHedge, this.hedgeDelayMs);
+        }
+    }
+
+    private void sendAttempt() {
+        long nowMs = SystemClock.elapsedRealtime();
+
+        if (this.deadline.isExpired(nowMs)) {
+            this.refuseAttempt("the transaction deadline was reached", new SocketTimeoutException("Transaction deadline reached"));
+            return;
+        }
+
+        if (this.abandonedResponseHandler != null && this.deadline.getRemainingMs(nowMs) < MIN_ABANDONABLE_ATTEMPT_BUDGET_MS) {
+            // the attempt could not finish in time, and the server may act on it after the client gives up
+            this.refuseAttempt("too little time is left before the transaction deadline", new SocketTimeoutException("Transaction deadline reached"));
+            return;
+        }
+
+        // an open breaker refuses the attempt without taking a token from the calls that can go out
+        if (this.circuitBreaker != null && this.circuitBreaker.getState(nowMs) == CircuitBreaker.State.OPEN) {
+            this.refuseAttempt("the endpoint is failing", new IOException("WePay API is unavailable"));
+            return;
+        }
+
+        if (this.rateLimiter != null) {
+            long waitMs = this.rateLimiter.tryAcquire(nowMs);
+            if (waitMs > 0) {
+                this.waitForToken(waitMs);
+                return;
+            }
+        }
+
+        // claimed last, so that a half-open breaker's probe is never claimed by an attempt that then waits for a token
+        if (this.circuitBreaker != null && !this.circuitBreaker.allowRequest(nowMs)) {
+            this.refuseAttempt("the endpoint is failing", new IOException("WePay API is unavailable"));
+            return;
+        }
+
+        int timeoutMs = this.timeoutPolicy.getTimeoutMs(LatencyHistogram.forEndpoint(this.endpoint));
+        if (this.abandonedResponseHandler == null) {
+            timeoutMs = (int) Math.max(1, this.deadline.clampMs(timeoutMs, nowMs));
+        }
+        HttpRequest request = WepayClient.newRequest(this.endpoint, this.url, this.method, timeoutMs)
+                .setHeader(HEADER_IDEMPOTENCY_KEY, this.idempotencyKey)
+                .setPriority(this.priority)
+                .setResponseDecoder(this.decoder);
+        WepayClient.setBody(request, this.body, this.compressionEnabled);
+
+        final Attempt attempt = new Attempt(request);
+        this.activeAttempts.add(attempt);
+
+        HttpTransport.Call call = this.transport.enqueue(request, new HttpTransport.Callback() {
+            @Override
+            public void onResponse(HttpResponse response) {
+                onAttemptFinished(attempt, response, null);
+            }
+
+            @Override
+            public void onFailure(IOException exception) {
+                onAttemptFinished(attempt, null, exception);
+            }
+        });
+
+        attempt.call = call;
+    }
+
+    /**
+     * Sends the attempt once the rate limiter has a token for it. A hedged copy is not worth the
+     * wait, so it is simply not sent.
+     *
+     * @param waitMs the time until the rate limiter has a token
+     */
+    private void waitForToken(long waitMs) {
+        if (!this.activeAttempts.isEmpty()) {
+            return;
+        }
+
+        LogHelper.log("Call to " + this.endpoint + " is rate limited, sending in " + waitMs + "ms");
+        this.handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (!isFinished) {
+                    sendAttempt();
+                }
+            }
+        }, waitMs);
+    }
+
+    /**
+     * Does not send an attempt. A hedged copy is simply not sent, but a call with nothing in flight
+     * fails with the given exception.
+     *
+     * @param reason the reason, for the log
+     * @param exception the exception to fail with
+     */
+    private void refuseAttempt(String reason, final IOException exception) {
+        if (!this.activeAttempts.isEmpty()) {
+            return;
+        }
+
+        LogHelper.log("Call to " + this.endpoint + " refused, " + reason);
+        this.handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isFinished) {
+                    cancelPendingHedge();
+                    finish(null, exception);
+                }
+            }
+        });
+    }
+
+    private void onAttemptFinished(Attempt attempt, HttpResponse response, IOException exception) {
+        this.activeAttempts.remove(attempt);
+        WepayClient.publishTiming(attempt.request, response);
+
+        // the token may have been cancelled after this result was posted
+        if (!this.isFinished && this.cancellationToken != null && this.cancellationToken.isCancelled()) {
+            this.abandon();
+        }
+
+        if (!this.isFinished && RequestCompression.isRejected(attempt.request, response)) {
+            // the server may not take gzipped bodies here, so send it again uncompressed
+            LogHelper.log("Call to " + this.endpoint + " does not accept compressed bodies, sending uncompressed");
+            RequestCompression.markUnsupported(this.endpoint);
+
+            if (this.activeAttempts.isEmpty()) {
+                this.sendAttempt();
+            }
+            return;
+        }
+
+        if (this.circuitBreaker != null) {
+            if (CircuitBreaker.isFailure(response)) {
+                this.circuitBreaker.recordFailure(SystemClock.elapsedRealtime());
+            } else {
+                this.circuitBreaker.recordSuccess();
+            }
+        }
+
+        if (this.isFinished) {
+            if (this.isAbandoned && response != null && response.isSuccessful()) {
+                this.isAbandoned = false;
+                this.cancelActiveAttempts();
+                WepayClient.deliverResponse(response, this.abandonedResponseHandler);
+            }
+            return;
+        }
+
+        if (response != null) {
+            LatencyHistogram.forEndpoint(this.endpoint).record(SystemClock.elapsedRealtime() - attempt.startTimeMs);
+        } else if (exception instanceof SocketTimeoutException) {
+            LatencyHistogram.forEndpoint(this.endpoint).record(attempt.request.getTimeoutMs());
+        }
+
+        boolean isSuccessful = response != null && response.isSuccessful();
+        if (!isSuccessful && !this.activeAttempts.isEmpty()) {
+            // a hedged copy is still in flight and may yet succeed
+            return;
+        }
+
+        this.cancelPendingHedge();
+
+        long delayMs = isSuccessful ? 0 : this.retryPolicy.getDelayMs(this.retryCount, response, RANDOM);
+        if (!isSuccessful && this.retryPolicy.shouldRetry(this.retryCount, response, exception) && delayMs < this.deadline.getRemainingMs()) {
+            this.retryCount++;
+
+            String reason = (response != null) ? "status " + response.getStatusCode() : exception.getClass().getSimpleName();
+            LogHelper.log("Call to " + this.endpoint + " failed with " + reason + ", retry " + this.retryCount + " in " + delayMs + "ms");
+
+            this.handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isFinished) {
+                        sendAttempt();
+                    }
+                }
+            }, delayMs);
+            return;
+        }
+
+        this.finish(response, exception);
+    }
+
+    private void finish(HttpResponse response, IOException exception) {
+        this.isFinished = true;
+        this.cancelPendingDeadline();
+
+        // the first answer wins, drop any other copy
+        this.cancelActiveAttempts();
+
+        if (response != null) {
+            WepayClient.deliverResponse(response, this.responseHandler);
+        } else {
+            WepayClient.deliverFailure(exception, this.responseHandler);
+        }
+    }
+
+    /**
+     * Stops the call without calling the response handler. Pending hedges and retries are dropped,
+     * and attempts in flight are cancelled unless an abandoned response handler is waiting for them.
+     */
+    private void abandon() {
+        if (this.isFinished) {
+            return;
+        }
+
+        LogHelper.log("Call to " + this.endpoint + " was cancelled");
+        this.isFinished = true;
+        this.cancelPendingHedge();
+        this.cancelPendingDeadline();
+
+        if (this.abandonedResponseHandler != null && !this.activeAttempts.isEmpty()) {
+            this.isAbandoned = true;
+        } else {
+            this.cancelActiveAttempts();
+        }
+    }
+
+    /**
+     * Fails the call with a timeout. Attempts in flight are cancelled, unless an abandoned response
+     * handler is waiting for them, in which case a success that arrives later goes to that handler.
+     */
+    private void onDeadlineReached() {
+        if (this.isFinished) {
+            return;
+        }
+
+        LogHelper.log("Call to " + this.endpoint + " reached the transaction deadline");
+        this.cancelPendingHedge();
+
+        if (this.abandonedResponseHandler != null && !this.activeAttempts.isEmpty()) {
+            this.isFinished = true;
+            this.isAbandoned = true;
+            WepayClient.deliverFailure(new SocketTimeoutException("Transaction deadline reached"), this.responseHandler);
+        } else {
+            this.finish(null, new SocketTimeoutException("Transaction deadline reached"));
+        }
+    }
+
+    private void cancelActiveAttempts() {
+        for (Attempt activeAttempt : this.activeAttempts) {
+            if (activeAttempt.call != null) {
+                activeAttempt.call.cancel();
+            }
+        }
+        this.activeAttempts.clear();
+    }
+
+    private void cancelPendingHedge() {
+        if (this.pendingHedge != null) {
+            this.handler.removeCallbacks(this.pendingHedge);
+            this.pendingHedge = null;
+        }
+    }
+
+    private void cancelPendingDeadline() {
+        if (this.pendingDeadline != null) {
+            this.handler.removeCallbacks(this.pendingDeadline);
+            this.pendingDeadline = null;
+        }
+    }
+
+    /**
+     * One copy of the request on the wire.
+     */
+    private static class Attempt {
+        private final HttpRequest request;
+        private final long startTimeMs = SystemClock.elapsedRealtime();
+        private HttpTransport.Call call = null;
+
+        Attempt(HttpRequest request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package com.wepay.android.internal;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.wepay.android.internal.network.ByteArrayRequestBody;
+import com.wepay.android.internal.network.CircuitBreaker;
+import com.wepay.android.internal.network.HttpRequest;
+import com.wepay.android.internal.network.HttpResponse;
+import com.wepay.android.internal.network.HttpTransport;
+import com.wepay.android.internal.network.JsonRequestBody;
+import com.wepay.android.internal.network.RateLimiter;
+import com.wepay.android.internal.network.RequestBody;
+import com.wepay.android.internal.network.RequestCompression;
+import com.wepay.android.internal.network.RequestPriority;
+import com.wepay.android.internal.network.ResponseDecoder;
+import com.wepay.android.models.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A durable queue for API calls that do not need to block the user, such as authorization
+ * reversals and signature uploads.
+ *
+ * Requests are written to an OutboxJournal before they are sent, and are retried with exponential
+ * backoff until the server accepts or rejects them, surviving process death. The outbox never
+ * sends more than MAX_CONCURRENT_SENDS requests at a time, so it cannot take over the transport's
+ * connections from interactive calls. While the device is offline, requests are parked instead of
+ * being sent to fail, and when connectivity returns they are all drained right away instead of
+ * waiting for their backoff, at no more than the deferred rate limit. Requests to an endpoint whose
+ * circuit breaker is open are held back until the breaker lets a probe through, without using up
+ * the rate limit.
+ *
+ * A caller waiting for a request gets exactly one answer: the result of the first attempt if the
+ * request succeeded or was rejected, or onQueued if it was parked, held back or will be retried.
+ *
+ * All state is confined to the outbox's own thread.
+ */
+public class ApiOutbox {
+
+    /** The name of the journal file in the app's files directory. */
+    private static final String JOURNAL_FILE_NAME = "wepay_api_outbox.journal";
+
+    /** The charset of stored request bodies. */
+    private static final String CHARSET = "UTF-8";
+
+    /** The maximum number of requests the outbox sends at the same time. */
+    private static final int MAX_CONCURRENT_SENDS = 1;
+
+    /** The delay before the first retry, in milliseconds. Doubles with each failed attempt. */
+    private static final long INITIAL_BACKOFF_MS = 5000;
+
+    /** The maximum delay between retries, in milliseconds. */
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    /** The minimum delay before a request held back by its endpoint's circuit breaker is checked again, in milliseconds. */
+    private static final long CIRCUIT_RECHECK_MS = 1000;
+
+    /** How long a request is retried before it is given up on, in milliseconds. */
+    private static final long MAX_REQUEST_AGE_MS = 3 * 24 * 60 * 60 * 1000L;
+
+    /** The singleton instance. */
+    private static ApiOutbox instance = null;
+
+    /** The config of the most recent caller. */
+    private volatile Config config;
+
+    private final OutboxJournal journal;
+    private final ConnectivityMonitor connectivityMonitor;
+    private final ScheduledExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** The pending requests, in the order they were queued. */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /** The number of requests currently being sent. */
+    private int inFlightCount = 0;
+
+    /** The scheduled drain for the earliest retry. May be null. */
+    private ScheduledFuture<?> scheduledDrain = null;
+
+    /**
+     * Gets the outbox, creating it and resuming any requests left over from a previous process on
+     * first use. The outbox sends with the config it was last given.
+     *
+     * @param config the config
+     * @return the outbox
+     */
+    public static synchronized ApiOutbox getInstance(Config config) {
+        if (instance == null) {
+            instance = new ApiOutbox(config);
+            instance.start();
+        } else {
+            instance.config = config;
+        }
+
+        return instance;
+    }
+
+    private ApiOutbox(Config config) {
+        this.config = config;
+        this.journal = new OutboxJournal(new File(config.getContext().getFilesDir(), JOURNAL_FILE_NAME));
+        this.connectivityMonitor = ConnectivityMonitor.getInstance(config.getContext());
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "wepay-outbox");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues a request. The request is stored before it is sent.
+     *
+     * @param endpoint the API endpoint
+     * @param url the absolute url
+     * @param params the params, including the client id
+     * @param decoder the decoder for the first attempt's response
+     * @param responseHandler the handler for the first attempt's result, or for the news that the request was queued, may be null
+     */
+    public <T> void enqueue(final String endpoint, final String url, final Map<String, Object> params, final ResponseDecoder<T> decoder, final WepayClient.QueuedResponseHandler<T> responseHandler) {
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String body;
+                try {
+                    body = encode(new JsonRequestBody(params));
+                } catch (IOException e) {
+                    onEncodingFailed(endpoint, e, decoder, responseHandler);
+                    return;
+                }
+
+                add(endpoint, url, body, decoder, responseHandler);
+            }
+        });
+    }
+
+    /**
+     * Queues a request with a ready-made body. The body is written on the calling thread before this
+     * returns, so the caller may reuse whatever buffers back it afterwards.
+     *
+     * @param endpoint the API endpoint
+     * @param url the absolute url
+     * @param body the JSON body, including the client id
+     * @param decoder the decoder for the first attempt's response
+     * @param responseHandler the handler for the first attempt's result, or for the news that the request was queued, may be null
+     */
+    public <T> void enqueue(final String endpoint, final String url, RequestBody body, final ResponseDecoder<T> decoder, final WepayClient.QueuedResponseHandler<T> responseHandler) {
+        final String encodedBody;
+        try {
+            encodedBody = encode(body);
+        } catch (IOException e) {
+            this.onEncodingFailed(endpoint, e, decoder, responseHandler);
+            return;
+        }
+
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                add(endpoint, url, encodedBody, decoder, responseHandler);
+            }
+        });
+    }
+
+    private <T> void add(String endpoint, String url, String body, ResponseDecoder<T> decoder, WepayClient.QueuedResponseHandler<T> responseHandler) {
+        OutboxJournal.Record record = new OutboxJournal.Record(UUID.randomUUID().toString(), endpoint, url, body, System.currentTimeMillis());
+
+        try {
+            this.journal.add(record);
+        } catch (IOException e) {
+            // still try to send it, it just won't survive a restart
+            LogHelper.log("Error: Unable to store request for " + endpoint + ". Failure: " + e.getLocalizedMessage());
+        }
+
+        Entry entry = new Entry(record);
+        if (responseHandler != null) {
+            entry.pendingCall = new PendingCall<>(decoder, responseHandler);
+        }
+
+        this.entries.put(record.getId(), entry);
+        this.drain();
+    }
+
+    private <T> void onEncodingFailed(String endpoint, IOException exception, ResponseDecoder<T> decoder, WepayClient.QueuedResponseHandler<T> responseHandler) {
+        LogHelper.log("Error: Unable to encode request for " + endpoint + ". Failure: " + exception.getLocalizedMessage());
+        if (responseHandler != null) {
+            this.deliver(new PendingCall<>(decoder, responseHandler), null, exception);
+        }
+    }
+
+    /**
+     * Retries all waiting requests right away.
+     */
+    public void retryNow() {
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Entry entry : entries.values()) {
+                    entry.nextAttemptTimeMs = 0;
+                }
+
+                drain();
+            }
+        });
+    }
+
+    private void start() {
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (OutboxJournal.Record record : journal.load()) {
+                    entries.put(record.getId(), new Entry(record));
+                }
+
+                if (!entries.isEmpty()) {
+                    LogHelper.log("Resuming " + entries.size() + " queued API calls");
+                }
+
+                drain();
+            }
+        });
+
+        // Drain as soon as the device is back online, instead of waiting for the backoff.
+        this.connectivityMonitor.addListener(new ConnectivityMonitor.Listener() {
+            @Override
+            public void onConnectivityChanged(boolean isConnected) {
+                if (isConnected) {
+                    retryNow();
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends every request that is due, up to the concurrency limit, and schedules the next drain.
+     * While the device is offline, requests stay parked until connectivity returns.
+     */
+    private void drain() {
+        if (!this.connectivityMonitor.isConnected()) {
+            if (this.scheduledDrain != null) {
+                this.scheduledDrain.cancel(false);
+                this.scheduledDrain = null;
+            }
+
+            for (Entry entry : this.entries.values()) {
+                this.reportQueued(entry);
+            }
+            return;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        long nextAttemptTimeMs = Long.MAX_VALUE;
+
+        for (Entry entry : new ArrayList<>(this.entries.values())) {
+            if (entry.isInFlight) {
+                continue;
+            }
+
+            if (System.currentTimeMillis() - entry.record.getCreatedAt() > MAX_REQUEST_AGE_MS) {
+                LogHelper.log("Error: Giving up on queued call to " + entry.record.getEndpoint() + " after " + entry.attempts + " attempts");
+                this.remove(entry);
+            } else if (entry.nextAttemptTimeMs > now) {
+                nextAttemptTimeMs = Math.min(nextAttemptTimeMs, entry.nextAttemptTimeMs);
+            } else if (this.inFlightCount < MAX_CONCURRENT_SENDS) {
+                CircuitBreaker circuitBreaker = CircuitBreaker.forEndpoint(entry.record.getEndpoint());
+                if (circuitBreaker.getState(now) == CircuitBreaker.State.OPEN) {
+                    // defer until the breaker lets a probe through, without taking a token
+                    this.reportQueued(entry);
+                    nextAttemptTimeMs = Math.min(nextAttemptTimeMs, now + Math.max(CIRCUIT_RECHECK_MS, circuitBreaker.getRemainingOpenMs(now)));
+                    continue;
+                }
+
+                RateLimiter rateLimiter = WepayClient.getRateLimiter(this.config, RequestPriority.BACKGROUND);
+                long rateLimitWaitMs = (rateLimiter == null) ? 0 : rateLimiter.tryAcquire(now);
+                if (rateLimitWaitMs > 0) {
+                    // spread the backlog out instead of sending it in a burst
+                    nextAttemptTimeMs = Math.min(nextAttemptTimeMs, now + rateLimitWaitMs);
+                } else if (circuitBreaker.allowRequest(now)) {
+                    this.send(entry);
+                } else {
+                    // another probe is in flight
+                    this.reportQueued(entry);
+                    nextAttemptTimeMs = Math.min(nextAttemptTimeMs, now + CIRCUIT_RECHECK_MS);
+                }
+            }
+        }
+
+        if (this.scheduledDrain != null) {
+            this.scheduledDrain.cancel(false);
+            this.scheduledDrain = null;
+        }
+
+        if (nextAttemptTimeMs != Long.MAX_VALUE) {
+            this.scheduledDrain = this.executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, nextAttemptTimeMs - now, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void send(final Entry entry) {
+        byte[] body;
+        try {
+            body = entry.record.getBody().getBytes(CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            LogHelper.log("Error: Unable to read queued call to " + entry.record.getEndpoint());
+            this.remove(entry);
+            return;
+        }
+
+        ResponseDecoder<?> decoder = (entry.pendingCall == null) ? ResponseDecoder.IGNORE_BODY : entry.pendingCall.decoder;
+        HttpRequest request = WepayClient.newRequest(entry.record.getEndpoint(), entry.record.getUrl(), HttpRequest.METHOD_POST,
+                this.config.getApiTimeoutCeilingMs())
+                .setHeader(ApiCall.HEADER_IDEMPOTENCY_KEY, entry.record.getId())
+                .setPriority(RequestPriority.BACKGROUND)
+                .setResponseDecoder(decoder);
+        WepayClient.setBody(request, new ByteArrayRequestBody(JsonRequestBody.CONTENT_TYPE_JSON, body), this.config.isRequestCompressionEnabled());
+
+        entry.isInFlight = true;
+        this.inFlightCount++;
+
+        final HttpRequest sentRequest = request;
+        WepayClient.getTransport(this.config).enqueue(request, new HttpTransport.Callback() {
+            @Override
+            public void onResponse(final HttpResponse response) {
+                WepayClient.publishTiming(sentRequest, response);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onResult(entry, sentRequest, response, null);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(final IOException exception) {
+                WepayClient.publishTiming(sentRequest, null);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onResult(entry, sentRequest, null, exception);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onResult(Entry entry, HttpRequest request, HttpResponse response, IOException exception) {
+        entry.isInFlight = false;
+        this.inFlightCount--;
+
+        if (RequestCompression.isRejected(request, response)) {
+            // the server may not take gzipped bodies here, so send it again uncompressed right away
+            LogHelper.log("Queued call to " + entry.record.getEndpoint() + " does not accept compressed bodies, sending uncompressed");
+            RequestCompression.markUnsupported(entry.record.getEndpoint());
+            this.drain();
+            return;
+        }
+
+        entry.attempts++;
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.forEndpoint(entry.record.getEndpoint());
+        if (CircuitBreaker.isFailure(response)) {
+            circuitBreaker.recordFailure(SystemClock.elapsedRealtime());
+        } else {
+            circuitBreaker.recordSuccess();
+        }
+
+        if (response != null && response.isSuccessful()) {
+            this.remove(entry);
+        } else if (response != null && isRejected(response.getStatusCode())) {
+            // sending it again will not help
+            LogHelper.log("Error: Queued call to " + entry.record.getEndpoint() + " was rejected with status " + response.getStatusCode());
+            this.remove(entry);
+        } else {
+            long backoffMs = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(entry.attempts - 1, 16));
+            entry.nextAttemptTimeMs = SystemClock.elapsedRealtime() + backoffMs;
+            LogHelper.log("Queued call to " + entry.record.getEndpoint() + " failed, retrying in " + backoffMs + "ms");
+        }
+
+        // only the first attempt is reported, and a request that is retried is reported as queued
+        if (this.entries.containsKey(entry.record.getId())) {
+            this.reportQueued(entry);
+        } else if (entry.pendingCall != null) {
+            this.deliver(entry.pendingCall, response, exception);
+            entry.pendingCall = null;
+        }
+
+        this.drain();
+    }
+
+    private void remove(Entry entry) {
+        this.entries.remove(entry.record.getId());
+        this.journal.markDone(entry.record.getId());
+    }
+
+    /**
+     * Tells the caller waiting for a request that it will be retried in the background, if the
+     * caller has not been told anything yet.
+     *
+     * @param entry the request
+     */
+    private void reportQueued(Entry entry) {
+        if (entry.pendingCall == null) {
+            return;
+        }
+
+        final PendingCall<?> pendingCall = entry.pendingCall;
+        entry.pendingCall = null;
+
+        this.mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                pendingCall.responseHandler.onQueued();
+            }
+        });
+    }
+
+    private void deliver(final PendingCall<?> pendingCall, final HttpResponse response, final IOException exception) {
+        this.mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                pendingCall.deliver(response, exception);
+            }
+        });
+    }
+
+    /**
+     * Determines if the server rejected a request, meaning it would be rejected again.
+     *
+     * @param statusCode the status code
+     * @return true, if the request should not be retried
+     */
+    private static boolean isRejected(int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 408 && statusCode != 429;
+    }
+
+    private static String encode(RequestBody body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.writeTo(outputStream);
+        return outputStream.toString(CHARSET);
+    }
+
+    /**
+     * A queued request and its retry state.
+     */
+    private static class Entry {
+        private final OutboxJournal.Record record;
+        private int attempts = 0;
+        private long nextAttemptTimeMs = 0;
+        private boolean isInFlight = false;
+        private PendingCall<?> pendingCall = null;
+
+        Entry(OutboxJournal.Record record) {
+            this.record = record;
+        }
+    }
+
+    /**
+     * The caller waiting for the result of a request's first attempt, or to be told that it was queued.
+     */
+    private static class PendingCall<T> {
+        private final ResponseDecoder<T> decoder;
+        private final WepayClient.QueuedResponseHandler<T> responseHandler;
+
+        PendingCall(ResponseDecoder<T> decoder, WepayClient.QueuedResponseHandler<T> responseHandler) {
+            this.decoder = decoder;
+            this.responseHandler = responseHandler;
+        }
+
+        void deliver(HttpResponse response, IOException exception) {
+            if (response != null) {
+                WepayClient.deliverResponse(response, this.responseHandler);
+            } else {
+                WepayClient.deliverFailure(exception, this.responseHandler);
+            }
+        }
+    }
+}
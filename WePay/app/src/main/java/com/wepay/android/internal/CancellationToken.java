@@ -0,0 +1,61 @@
+package com.wepay.android.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Signals that the work started for a transaction is no longer wanted, for example because the
+ * card reader was stopped. Work that can be abandoned registers an action that stops it, and
+ * checks isCancelled() before calling back into its handlers.
+ *
+ * A token can be cancelled from any thread, and only once.
+ */
+public class CancellationToken {
+
+    /** The actions to run on cancellation. Cleared once they have run. */
+    private final List<Runnable> actions = new ArrayList<>();
+
+    private volatile boolean isCancelled = false;
+
+    /**
+     * Cancels the token and runs every registered action, on the calling thread.
+     */
+    public void cancel() {
+        List<Runnable> actionsToRun;
+
+        synchronized (this.actions) {
+            if (this.isCancelled) {
+                return;
+            }
+
+            this.isCancelled = true;
+            actionsToRun = new ArrayList<>(this.actions);
+            this.actions.clear();
+        }
+
+        for (Runnable action : actionsToRun) {
+            action.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return this.isCancelled;
+    }
+
+    /**
+     * Registers an action to run when the token is cancelled. If it already is, the action runs
+     * right away on the calling thread.
+     *
+     * @param action the action
+     */
+    public void register(Runnable action) {
+        synchronized (this.actions) {
+            if (!this.isCancelled) {
+                this.actions.add(action);
+                return;
+            }
+        }
+
+        action.run();
+    }
+}
@@ -1,5 +1,6 @@
 package com.wepay.android.internal.CardReader.DeviceHelpers;
 
+import com.roam.roamreaderunifiedapi.constants.LanguageCode;
 import com.roam.roamreaderunifiedapi.constants.Parameter;
 import com.roam.roamreaderunifiedapi.data.ApplicationIdentifier;
 import com.roam.roamreaderunifiedapi.data.PublicKey;
@@ -11,9 +12,11 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -48,6 +51,12 @@ public class DipConfigHelper {
 
     private HashMap<String, HashMap<String, String>> tacMap;
 
+    /** The device configuration hash of each serial number seen. */
+    private final Map<String, String> deviceConfigHashes = new HashMap<String, String>();
+
+    /** The fingerprint of each public key, in submission order. */
+    private List<String> publicKeyFingerprints = null;
+
     public DipConfigHelper(Config config) {
 
         if (config.isUseTestEMVCards()) {
@@ -62,6 +71,12 @@ public class DipConfigHelper {
     }
 
     public String generateDeviceConfigHash(String deviceSerialNumber) throws NoSuchAlgorithmException, UnsupportedEncodingException {
+        // the AIDs and keys never change, so neither does a serial number's hash
+        String cachedHash = this.deviceConfigHashes.get(deviceSerialNumber);
+        if (cachedHash != null) {
+            return cachedHash;
+        }
+
         MessageDigest messageDigest = MessageDigest.getInstance("MD5");
         messageDigest.update(deviceSerialNumber.getBytes("UTF-8"));
 
@@ -74,9 +89,57 @@ public class DipConfigHelper {
         }
 
         String hexString = String.format("%032X", new BigInteger(1, messageDigest.digest()));
+        this.deviceConfigHashes.put(deviceSerialNumber, hexString);
         return hexString;
     }
 
+    /**
+     * Gets the configuration a reader should have, for comparison with what was applied to it.
+     *
+     * @param cardReaderTimeoutSec the card timeout set in the reader's user interface options
+     * @return the desired configuration
+     */
+    public ReaderConfigRecord getDesiredConfigRecord(int cardReaderTimeoutSec) {
+        if (this.publicKeyFingerprints == null) {
+            List<String> publicKeyFingerprints = new ArrayList<String>();
+            for (PublicKey publicKey : publicKeyList) {
+                publicKeyFingerprints.add(fingerprint(publicKey.toString()));
+            }
+            this.publicKeyFingerprints = publicKeyFingerprints;
+        }
+
+        // the set has no fixed order, so sort it to get the same fingerprint every time
+        List<String> aids = new ArrayList<String>();
+        for (ApplicationIdentifier applicationIdentifier : aidsSet) {
+            aids.add(applicationIdentifier.toString());
+        }
+        Collections.sort(aids);
+
+        return new ReaderConfigRecord(fingerprint(aids.toString()),
+                                      this.publicKeyFingerprints,
+                                      amountDOLList.toString(),
+                                      onlineDOLList.toString(),
+                                      responseDOLList.toString(),
+                                      "timeout=" + cardReaderTimeoutSec + ",language=" + LanguageCode.ENGLISH);
+    }
+
+    private void clearCachedFingerprints() {
+        this.deviceConfigHashes.clear();
+        this.publicKeyFingerprints = null;
+    }
+
+    private static String fingerprint(String value) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+            messageDigest.update(value.getBytes("UTF-8"));
+            return String.format("%032X", new BigInteger(1, messageDigest.digest()));
+        } catch (Exception e) {
+            // the value itself is a longer but equally good fingerprint
+            LogHelper.log("Exception while generating configuration fingerprint " + e.getMessage());
+            return value;
+        }
+    }
+
     public List<Parameter> getAmountDOLList() {
         return amountDOLList;
     }
@@ -202,6 +265,8 @@ public class DipConfigHelper {
     }
 
     void setupKeysValuesForTesting() {
+        this.clearCachedFingerprints();
+
         publicKeyList = new ArrayList<PublicKey>();
 
         // MasterCard
@@ -452,6 +517,8 @@ public class DipConfigHelper {
     }
 
     private void setupKeysValuesForProduction() {
+        this.clearCachedFingerprints();
+
         this.publicKeyList = new ArrayList<PublicKey>();
 
         // MasterCard
@@ -1,5 +1,7 @@
 package com.wepay.android.internal.CardReader.DeviceHelpers;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Base64;
 
 import com.roam.roamreaderunifiedapi.DeviceManager;
@@ -14,16 +16,17 @@ import com.roam.roamreaderunifiedapi.data.ApplicationIdentifier;
 import com.wepay.android.CardReaderHandler;
 import com.wepay.android.enums.CardReaderStatus;
 import com.wepay.android.enums.PaymentMethod;
+import com.wepay.android.internal.CancellationToken;
 import com.wepay.android.internal.CardReader.Utilities.TransactionUtilities;
 import com.wepay.android.internal.CardReaderDirector.CardReaderRequest;
 import com.wepay.android.internal.LogHelper;
+import com.wepay.android.internal.TransactionDeadline;
+import com.wepay.android.internal.network.CreditCardResponse;
 import com.wepay.android.models.AuthorizationInfo;
 import com.wepay.android.models.Config;
 import com.wepay.android.models.Error;
 import com.wepay.android.models.PaymentInfo;
 
-import org.json.JSONObject;
-
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
@@ -100,35 +103,58 @@ public class DipTransactionHelper implements DeviceResponseHandler {
     private Error authorizationError;
     private Runnable postStopRunnable = null;
 
+    /** Abandons the current transaction's API calls when it is stopped. */
+    private CancellationToken cancellationToken = new CancellationToken();
+
+    /** The time budget of the current transaction. */
+    private TransactionDeadline transactionDeadline = TransactionDeadline.NONE;
+
+    /** Ends the wait for a card when the transaction deadline is reached. */
+    private final Handler deadlineHandler = new Handler(Looper.getMainLooper());
+    private Runnable deadlineRunnable = null;
+
+    /** Sends commands to the reader one at a time, in order with the reader manager's commands. */
+    private final ReaderCommandExecutor commandExecutor;
+
     public DipTransactionHelper(Config config,
                                 ExternalCardReaderHelper externalCardReaderHelper,
                                 TransactionDelegate transactionDelegate,
-                                DipConfigHelper dipConfighelper) {
+                                DipConfigHelper dipConfighelper,
+                                ReaderCommandExecutor commandExecutor) {
         this.config = config;
+        this.commandExecutor = commandExecutor;
         this.externalCardReaderHelper = externalCardReaderHelper;
         this.dipConfighelper = dipConfighelper;
         this.delegate = transactionDelegate;
         this.transactionUtilities = new TransactionUtilities(config, externalCardReaderHelper);
     }
 
-    public void performEMVTransactionStartCommand(BigDecimal amount, String currencyCode, long accountId, DeviceManager roamDeviceManager, CardReaderRequest request) {
+    public void performEMVTransactionStartCommand(BigDecimal amount, String currencyCode, long accountId, DeviceManager roamDeviceManager, CardReaderRequest request, TransactionDeadline transactionDeadline) {
         this.amount = amount;
         this.currencyCode = currencyCode;
         this.accountId = accountId;
         this.roamDeviceManager = roamDeviceManager;
         this.cardReaderRequest = request;
+        this.transactionDeadline = transactionDeadline;
 
         this.transactionUtilities.setCardReaderRequest(request);
+        this.transactionUtilities.setTransactionDeadline(transactionDeadline);
         this.startTransaction();
     }
 
     public void stopTransaction() {
+        this.stopCardWaitDeadline();
+        this.cancellationToken.cancel();
         this.resetStates();
     }
 
     private void startTransaction() {
         this.resetStates();
 
+        // API calls of a previous transaction must not call back into this one
+        this.cancellationToken.cancel();
+        this.cancellationToken = new CancellationToken();
+
         this.selectedAID = null;
         this.authCode = null;
         this.issuerAuthenticationData = null;
@@ -140,6 +166,39 @@ public class DipTransactionHelper implements DeviceResponseHandler {
         this.authorizationError = null;
 
         this.executeCommand(Command.EMVStartTransaction, this);
+        this.startCardWaitDeadline();
+    }
+
+    /**
+     * Ends the wait for a card with a timeout error if the transaction deadline is reached first.
+     * The reader's own card timeout is part of its configuration, so it cannot follow the deadline.
+     */
+    private void startCardWaitDeadline() {
+        this.stopCardWaitDeadline();
+
+        if (this.transactionDeadline.isUnlimited()) {
+            return;
+        }
+
+        this.deadlineRunnable = new Runnable() {
+            @Override
+            public void run() {
+                deadlineRunnable = null;
+                LogHelper.log("Transaction deadline reached while waiting for card");
+
+                Error error = Error.getCardReaderTimeoutError();
+                reportAuthorizationSuccess(null, error, null);
+                reactToError(error);
+            }
+        };
+        this.deadlineHandler.postDelayed(this.deadlineRunnable, this.transactionDeadline.getRemainingMs());
+    }
+
+    private void stopCardWaitDeadline() {
+        if (this.deadlineRunnable != null) {
+            this.deadlineHandler.removeCallbacks(this.deadlineRunnable);
+            this.deadlineRunnable = null;
+        }
     }
 
     private void resetStates() {
@@ -272,40 +331,61 @@ public class DipTransactionHelper implements DeviceResponseHandler {
     }
 
     private void executeCommand(final Command cmd, final DeviceResponseHandler handler) {
-        LogHelper.log("Executing " + cmd.toString());
-        new Thread(new Runnable() {
+        // Build the command's input now, so it reflects the transaction as it is at this point
+        // and this object's state is not read from the reader thread.
+        Map<Parameter, Object> inputMap;
+
+        switch (cmd) {
+            case EMVStartTransaction:
+                inputMap = getStartTransactionInputMap();
+                break;
+            case EMVTransactionData:
+                inputMap = getTransactionDataInputMap();
+                break;
+            case EMVCompleteTransaction:
+                inputMap = getCompleteTransactionInputMap();
+                break;
+            case EMVTransactionStop:
+                inputMap = getTransactionStopInputMap();
+                break;
+            default:
+                inputMap = null;
+                break;
+        }
+
+        if (inputMap != null) {
+            this.sendCommand(cmd.toString(), inputMap, handler);
+        }
+    }
+
+    /**
+     * Queues a transaction command to be sent to the reader after the commands already queued.
+     *
+     * @param name the name of the command, for logging
+     * @param inputMap the command's input
+     * @param handler the handler of the reader's response
+     */
+    private void sendCommand(final String name, final Map<Parameter, Object> inputMap, final DeviceResponseHandler handler) {
+        final DeviceManager deviceManager = this.roamDeviceManager;
+
+        if (deviceManager == null) {
+            LogHelper.log("Not executing command '" + name + "' because there is no reader");
+            return;
+        }
+
+        this.commandExecutor.execute(name, new Runnable() {
             @Override
             public void run() {
-                switch (cmd) {
-                    case EMVStartTransaction:
-                        roamDeviceManager.getTransactionManager().sendCommand(
-                                getStartTransactionInputMap(), handler);
-                        break;
-                    case EMVTransactionData:
-                        roamDeviceManager.getTransactionManager().sendCommand(
-                                getTransactionDataInputMap(), handler);
-                        break;
-                    case EMVCompleteTransaction:
-                        roamDeviceManager.getTransactionManager().sendCommand(
-                                getCompleteTransactionInputMap(), handler);
-                        break;
-                    case EMVTransactionStop:
-                        if (roamDeviceManager != null) {
-                            roamDeviceManager.getTransactionManager().sendCommand(
-                                    getTransactionStopInputMap(), handler);
-                        }
-                        break;
-                    default:
-                        break;
-
-                }
+                LogHelper.log("Executing " + name);
+                deviceManager.getTransactionManager().sendCommand(inputMap, handler);
             }
-        }).start();
+        });
     }
 
     @Override
     public void onResponse(Map<Parameter, Object> data) {
         LogHelper.log(data.toString());
+        this.stopCardWaitDeadline();
         this.shouldReportCheckCardOrientation = false;
 
         Error error = this.validateEMVResponse(data);
@@ -329,9 +409,9 @@ public class DipTransactionHelper implements DeviceResponseHandler {
             switch (cmd) {
                 case EMVStartTransaction:
                     if (responseType == ResponseType.MAGNETIC_CARD_DATA) {
-                        this.transactionUtilities.handleSwipeResponse(data, this.roamDeviceManager.getType().toString(), this.amount, this.currencyCode, this.accountId, this.isFallbackSwipe, new TransactionUtilities.TransactionResponseHandler() {
+                        this.transactionUtilities.handleSwipeResponse(data, this.roamDeviceManager.getType().toString(), this.amount, this.currencyCode, this.accountId, this.isFallbackSwipe, this.cancellationToken, new TransactionUtilities.TransactionResponseHandler() {
                             @Override
-                            public void onSuccess(JSONObject response) {
+                            public void onSuccess(CreditCardResponse response) {
                                 reactToError(null, PaymentMethod.SWIPE);
                             }
 
@@ -399,7 +479,7 @@ public class DipTransactionHelper implements DeviceResponseHandler {
                         reactToError(error);
                     } else {
                         selectedAID = applications.get(selectedIndex).getAID();
-                        roamDeviceManager.getTransactionManager().sendCommand(getFinalApplicationSelectionInputMap(applications.get(selectedIndex)), transactionResponseHandler);
+                        sendCommand("FinalApplicationSelection", getFinalApplicationSelectionInputMap(applications.get(selectedIndex)), transactionResponseHandler);
                     }
                 }
             }, applicationIdentifierList);
@@ -434,10 +514,10 @@ public class DipTransactionHelper implements DeviceResponseHandler {
         this.applicationCryptogram = (String) data.get(Parameter.ApplicationCryptogram);
 
 
-        this.transactionUtilities.handlePaymentInfo(paymentInfo, this.roamDeviceManager.getType().toString(), this.amount, this.currencyCode, this.accountId, false, new TransactionUtilities.TransactionResponseHandler() {
+        this.transactionUtilities.handlePaymentInfo(paymentInfo, this.roamDeviceManager.getType().toString(), this.amount, this.currencyCode, this.accountId, false, this.cancellationToken, new TransactionUtilities.TransactionResponseHandler() {
             @Override
-            public void onSuccess(JSONObject response) {
-                String tempAuthCode = response.isNull("authorisation_code") ? null : response.optString("authorisation_code");
+            public void onSuccess(CreditCardResponse response) {
+                String tempAuthCode = response.getAuthorisationCode();
                 if (tempAuthCode != null) {
                     authCode = String.format("%012d", Integer.parseInt(tempAuthCode));
                 } else {
@@ -445,8 +525,8 @@ public class DipTransactionHelper implements DeviceResponseHandler {
                     authCode = String.format("%012d", Integer.parseInt("0"));
                 }
 
-                String issuerAuthenticationData = response.isNull("issuer_authentication_data") ? null : response.optString("issuer_authentication_data");
-                String authResponseCode = response.isNull("authorisation_response_code") ? null : response.optString("authorisation_response_code");
+                String issuerAuthenticationData = response.getIssuerAuthenticationData();
+                String authResponseCode = response.getAuthorisationResponseCode();
 
                 if (authResponseCode != null && authResponseCode.equalsIgnoreCase("217")) {
                     // 217 is an error code that comes back in case of a processor timeout
@@ -454,7 +534,7 @@ public class DipTransactionHelper implements DeviceResponseHandler {
                     authResponseCode = null;
                 }
 
-                long tokenId = response.optLong("credit_card_id", 0);
+                long tokenId = parseCreditCardId(response.getCreditCardId());
                 String creditCardId = null;
 
                 if (tokenId == 0) {
@@ -463,8 +543,8 @@ public class DipTransactionHelper implements DeviceResponseHandler {
                     creditCardId = String.format("%d", tokenId);
                 }
 
-                issuerScriptTemplate1 = response.isNull("issuer_script_template1") ? null : response.optString("issuer_script_template1");
-                issuerScriptTemplate2 = response.isNull("issuer_script_template2") ? null : response.optString("issuer_script_template2");
+                issuerScriptTemplate1 = response.getIssuerScriptTemplate1();
+                issuerScriptTemplate2 = response.getIssuerScriptTemplate2();
 
                 consumeAuthenticationData(issuerAuthenticationData, authResponseCode, creditCardId);
             }
@@ -484,6 +564,25 @@ public class DipTransactionHelper implements DeviceResponseHandler {
         });
     }
 
+    /**
+     * Parses the credit card id returned by the server.
+     *
+     * @param creditCardId the credit card id, may be null
+     * @return the credit card id, or 0 if it is missing or invalid
+     */
+    private long parseCreditCardId(String creditCardId) {
+        if (creditCardId == null) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(creditCardId);
+        } catch (NumberFormatException e) {
+            LogHelper.log("Error: Unable to parse credit card id " + creditCardId);
+            return 0;
+        }
+    }
+
     private void handleCompleteTransactionResponse(Map<Parameter, Object> data) {
         // handle success
         String tc = (String) data.get(Parameter.ApplicationCryptogram);
@@ -528,7 +627,7 @@ public class DipTransactionHelper implements DeviceResponseHandler {
         this.postStopRunnable = new Runnable() {
             @Override
             public void run() {
-                if (shouldRestartTransaction(error, paymentMethod)) {
+                if (shouldRestartTransaction(error, paymentMethod) && !transactionDeadline.isExpired()) {
                     // restart transaction
                     startTransaction();
                 } else {
@@ -666,9 +765,11 @@ public class DipTransactionHelper implements DeviceResponseHandler {
 
                 break;
             case CardInserted:
+                this.stopCardWaitDeadline();
                 this.externalCardReaderHelper.informExternalCardReader(CardReaderStatus.CARD_DIPPED);
                 break;
             case SwipeDetected:
+                this.stopCardWaitDeadline();
                 this.externalCardReaderHelper.informExternalCardReader(CardReaderStatus.SWIPE_DETECTED);
                 break;
             case ICCErrorSwipeCard:
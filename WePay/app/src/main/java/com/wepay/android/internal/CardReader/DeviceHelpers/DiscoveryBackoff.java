@@ -0,0 +1,57 @@
+package com.wepay.android.internal.CardReader.DeviceHelpers;
+
+/**
+ * Decides how long each card reader search runs, and how long to wait before searching again when
+ * nothing was found.
+ *
+ * The first search is short, since a reader that is plugged in or nearby is found quickly. Each
+ * search that finds nothing doubles the next search window and the wait before it, up to a limit,
+ * so that an idle device without a reader searches less and less often.
+ */
+public class DiscoveryBackoff {
+
+    /** The first search window */
+    static final long INITIAL_SEARCH_WINDOW_MS = 2000;
+
+    /** The longest search window */
+    static final long MAX_SEARCH_WINDOW_MS = 6000;
+
+    /** The wait before the first search again */
+    static final long INITIAL_RESCAN_DELAY_MS = 500;
+
+    /** The longest wait before searching again */
+    static final long MAX_RESCAN_DELAY_MS = 8000;
+
+    /** Enough doublings to reach any of the limits, so shifts never overflow. */
+    private static final int MAX_EMPTY_SEARCHES = 16;
+
+    /** The number of searches in a row that found nothing. */
+    private int emptySearches = 0;
+
+    public long getSearchWindowMs() {
+        return Math.min(INITIAL_SEARCH_WINDOW_MS << this.emptySearches, MAX_SEARCH_WINDOW_MS);
+    }
+
+    /**
+     * Gets how long to wait before the next search.
+     *
+     * @return the wait in milliseconds, 0 if no search has come up empty yet
+     */
+    public long getRescanDelayMs() {
+        if (this.emptySearches == 0) {
+            return 0;
+        }
+
+        return Math.min(INITIAL_RESCAN_DELAY_MS << (this.emptySearches - 1), MAX_RESCAN_DELAY_MS);
+    }
+
+    public void onEmptySearch() {
+        if (this.emptySearches < MAX_EMPTY_SEARCHES) {
+            this.emptySearches++;
+        }
+    }
+
+    public void reset() {
+        this.emptySearches = 0;
+    }
+}
@@ -11,6 +11,7 @@ import com.roam.roamreaderunifiedapi.constants.DeviceType;
 import com.roam.roamreaderunifiedapi.data.Device;
 import com.wepay.android.internal.LogHelper;
 import com.wepay.android.internal.SharedPreferencesHelper;
+import com.wepay.android.internal.TransactionDeadline;
 import com.wepay.android.internal.mock.MockRoamDeviceManager;
 import com.wepay.android.models.Config;
 import com.wepay.android.models.MockConfig;
@@ -32,13 +33,24 @@ import java.util.List;
  *        discovered devices.
  *      - If no devices are found in the headphone jack or in Bluetooth scanning range, detection
  *        will time out and the delegate will be notified (see usage of startTimeCounter).
+ *
+ * Searches start short and return shortly after the first reader is found. A search that finds
+ * nothing is repeated after a wait, and both the search and the wait grow with every empty search
+ * (see DiscoveryBackoff). The headphone jack is only searched while something is plugged into it.
+ * A search is never started once the transaction deadline has passed; detection expires instead.
+ *
+ * Roam may report a search after the detector has moved on from it, for example when the search
+ * timer fired first. Every search has its own listener, so such reports are ignored instead of
+ * being counted toward a later search.
  */
 
-public class IngenicoCardReaderDetector implements SearchListener {
+public class IngenicoCardReaderDetector {
+
+    /** The time the search timer allows beyond Roam's own search timeout */
+    private static final long SEARCH_TIMER_MARGIN_MS = 500;
 
-    /** Timeout the search after 6.5 seconds  */
-    private static final long TIMEOUT_DEVICE_SEARCH_MS = 6500;
-    private static final long TIMEOUT_ROAM_SEARCH_MS = 6000;
+    /** How long the search goes on after the first reader is found, in case there are more */
+    private static final long FIRST_READER_GRACE_MS = 750;
 
     private DeviceManager rp350xRoamDeviceManager = null;
     private DeviceManager moby3000RoamDeviceManager = null;
@@ -47,11 +59,23 @@ public class IngenicoCardReaderDetector implements SearchListener {
     private List<Device> discoveredDevices;
 
     private Config config = null;
+    private TransactionDeadline transactionDeadline = TransactionDeadline.NONE;
     private CardReaderDetectionDelegate delegate = null;
 
     private Handler deviceDetectionTimeoutHandler = new Handler();
 
     private int completedDiscoveries = 0;
+
+    /** The number of device managers searching in the current search. */
+    private int activeSearches = 0;
+
+    /** Numbers the searches, so that reports from earlier ones can be told apart. */
+    private int searchGeneration = 0;
+
+    private DiscoveryBackoff backoff = new DiscoveryBackoff();
+
+    /** The name of the remembered reader, read once per detection. */
+    private String rememberedName = null;
     private boolean isStopped = false;
 
     public IngenicoCardReaderDetector() {
@@ -63,12 +87,14 @@ public class IngenicoCardReaderDetector implements SearchListener {
         this.supportedDeviceManagers = new ArrayList<>();
     }
 
-    public void findAvailableCardReaders(Config config, CardReaderDetectionDelegate detectionDelegate) {
+    public void findAvailableCardReaders(Config config, TransactionDeadline transactionDeadline, CardReaderDetectionDelegate detectionDelegate) {
         LogHelper.log("findAvailableCardReaders");
         MockConfig mockConfig = config.getMockConfig();
 
         this.config = config;
+        this.transactionDeadline = transactionDeadline;
         this.delegate = detectionDelegate;
+        this.backoff.reset();
 
         if (mockConfig != null && mockConfig.isUseMockCardReader()) {
             this.mockRoamDeviceManager.setMockConfig(mockConfig);
@@ -84,6 +110,7 @@ public class IngenicoCardReaderDetector implements SearchListener {
     public void stopFindingCardReaders() {
         LogHelper.log("stopFindingCardReaders");
         this.isStopped = true;
+        this.searchGeneration++;
         completedDiscoveries = 0;
         this.discoveredDevices.clear();
 
@@ -92,15 +119,38 @@ public class IngenicoCardReaderDetector implements SearchListener {
     }
 
     private void beginDetection() {
+        // a search never runs past the transaction deadline
+        long searchWindowMs = this.backoff.getSearchWindowMs();
+        long roamSearchTimeoutMs = this.transactionDeadline.clampMs(searchWindowMs);
+        long deviceSearchTimeoutMs = this.transactionDeadline.clampMs(searchWindowMs + SEARCH_TIMER_MARGIN_MS);
+
+        if (roamSearchTimeoutMs <= 0) {
+            // the deadline passed while waiting to search again, so there is no time left to search
+            LogHelper.log("no time left to search for card readers");
+            this.isStopped = true;
+            this.delegate.onCardReaderDetectionExpired();
+            return;
+        }
+
         this.isStopped = false;
         completedDiscoveries = 0;
+        this.activeSearches = 0;
+        this.searchGeneration++;
+        SearchListener searchListener = new GenerationSearchListener(this.searchGeneration);
+        this.rememberedName = SharedPreferencesHelper.getRememberedCardReader(this.config.getContext());
 
         for (DeviceManager manager : this.supportedDeviceManagers) {
-            manager.searchDevices(this.config.getContext(), false, TIMEOUT_ROAM_SEARCH_MS, this);
+            if (manager == this.rp350xRoamDeviceManager && !isAudioJackPluggedIn(this.config)) {
+                // nothing to find in an empty headphone jack
+                continue;
+            }
+
+            this.activeSearches++;
+            manager.searchDevices(this.config.getContext(), false, roamSearchTimeoutMs, searchListener);
         }
 
         stopTimeCounter(this.deviceDetectionTimeoutHandler);
-        startTimeCounter(this.deviceDetectionTimeoutHandler, TIMEOUT_DEVICE_SEARCH_MS);
+        startTimeCounter(this.deviceDetectionTimeoutHandler, deviceSearchTimeoutMs);
     }
 
     private void cancelAllDeviceManagerSearches(List<DeviceManager> possibleDeviceManagers) {
@@ -127,6 +177,8 @@ public class IngenicoCardReaderDetector implements SearchListener {
 
     private void discoveryComplete() {
         LogHelper.log("discoveryComplete");
+        // the search is over, whatever Roam still reports about it
+        this.searchGeneration++;
         this.stopTimeCounter(this.deviceDetectionTimeoutHandler);
         this.cancelAllDeviceManagerSearches(this.supportedDeviceManagers);
 
@@ -136,11 +188,27 @@ public class IngenicoCardReaderDetector implements SearchListener {
             this.delegate.onCardReaderDevicesDetected(list);
             this.discoveredDevices.clear();
             this.isStopped = true;
+        } else if (!isStopped && this.transactionDeadline.isExpired()) {
+            this.isStopped = true;
+            this.delegate.onCardReaderDetectionExpired();
         } else if (!isStopped) {
-            this.beginDetection();
+            this.backoff.onEmptySearch();
+            this.beginDetectionAfterDelay(this.transactionDeadline.clampMs(this.backoff.getRescanDelayMs()));
         }
     }
 
+    private void beginDetectionAfterDelay(long delayMs) {
+        LogHelper.log("searching for card readers again in " + delayMs + "ms");
+        this.deviceDetectionTimeoutHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (!isStopped) {
+                    beginDetection();
+                }
+            }
+        }, delayMs);
+    }
+
     /**
      * Returns whether or not something is plugged into the Audio Jack of the device. If
      * provided a mock config using a mock card reader, returns isMockCardReaderDetected().
@@ -169,42 +237,82 @@ public class IngenicoCardReaderDetector implements SearchListener {
 
     /** SearchListener */
 
-    @Override
-    public void onDeviceDiscovered(Device device) {
+    private void onDeviceDiscovered(Device device) {
         LogHelper.log("onDeviceDiscovered " + device.getName());
 
         // Maintain a list of all discovered devices that have the name AUDIOJACK or MOB30*
         String name = device.getName();
         Boolean isMoby = name != null && name.startsWith("MOB30");
         Boolean isAudioJack = name != null && (name.equals("AUDIOJACK") || name.startsWith("RP350"));
-        String rememberedName = SharedPreferencesHelper.getRememberedCardReader(this.config.getContext());
 
         // In Android only, we need to do a manual check that the audio jack is plugged in.
         // Roam "discovers" RP350x even when nothing is plugged in. We don't want to surface that
         // unless something is actually plugged in.
-        if (isMoby || (isAudioJack && isAudioJackPluggedIn(this.config))) {
+        if ((isMoby || (isAudioJack && isAudioJackPluggedIn(this.config))) && !this.isDiscovered(name)) {
             this.discoveredDevices.add(device);
 
-            if (name.equals(rememberedName)) {
+            if (name.equals(this.rememberedName)) {
                 // Stop searching for a device if we've found the card reader we remember.
                 LogHelper.log("onDeviceDiscovered: discovered remembered reader " + name);
 
                 this.discoveryComplete();
+            } else if (this.discoveredDevices.size() == 1) {
+                // Found a reader, only wait a little longer in case there are others.
+                this.stopTimeCounter(this.deviceDetectionTimeoutHandler);
+                this.startTimeCounter(this.deviceDetectionTimeoutHandler, FIRST_READER_GRACE_MS);
             }
         }
     }
 
-    @Override
-    public void onDiscoveryComplete() {
+    private void onDiscoveryComplete() {
         completedDiscoveries++;
         LogHelper.log("onDiscoveryComplete [" + completedDiscoveries + "]");
 
-        if (completedDiscoveries >= this.supportedDeviceManagers.size()) {
+        if (completedDiscoveries >= this.activeSearches) {
             this.discoveryComplete();
         }
     }
 
+    private boolean isDiscovered(String name) {
+        // Bluetooth searches report the same device more than once
+        for (Device device : this.discoveredDevices) {
+            if (name.equals(device.getName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Passes on Roam's reports about one search, as long as it is the current search.
+     */
+    private class GenerationSearchListener implements SearchListener {
+        private final int generation;
+
+        GenerationSearchListener(int generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void onDeviceDiscovered(Device device) {
+            if (this.generation == searchGeneration) {
+                IngenicoCardReaderDetector.this.onDeviceDiscovered(device);
+            }
+        }
+
+        @Override
+        public void onDiscoveryComplete() {
+            if (this.generation == searchGeneration) {
+                IngenicoCardReaderDetector.this.onDiscoveryComplete();
+            } else {
+                LogHelper.log("ignoring onDiscoveryComplete of an earlier search");
+            }
+        }
+    }
+
     public interface CardReaderDetectionDelegate {
         void onCardReaderDevicesDetected(List<Device> devices);
+        void onCardReaderDetectionExpired();
     }
 }
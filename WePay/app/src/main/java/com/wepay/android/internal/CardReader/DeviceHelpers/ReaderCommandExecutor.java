@@ -0,0 +1,93 @@
+package com.wepay.android.internal.CardReader.DeviceHelpers;
+
+import com.wepay.android.internal.LogHelper;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends commands to a card reader one at a time, on a single thread that belongs to the reader.
+ *
+ * Commands run in the order they were submitted, and the next command is not started before the
+ * previous one has been handed to the reader. At most MAX_PENDING_COMMANDS may wait to run; a
+ * command submitted beyond that is dropped and logged, since a reader that far behind will not
+ * catch up.
+ *
+ * When the reader is stopped, cancelPending() drops every command that has not started yet, so a
+ * command queued before the stop can never reach the reader after it.
+ */
+public class ReaderCommandExecutor {
+
+    /** The most commands that may wait to be sent to the reader. */
+    static final int MAX_PENDING_COMMANDS = 32;
+
+    /** How long the idle reader thread is kept around, in seconds. */
+    private static final int IDLE_THREAD_TIMEOUT_SEC = 60;
+
+    /** The thread that commands are sent on. */
+    private final ThreadPoolExecutor executor;
+
+    /** Bumped by cancelPending(), so that commands submitted before it do not run. */
+    private final AtomicInteger generation = new AtomicInteger(0);
+
+    public ReaderCommandExecutor() {
+        this.executor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_TIMEOUT_SEC, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_PENDING_COMMANDS), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "wepay-reader");
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a command to be sent to the reader after the commands already queued.
+     *
+     * @param name the name of the command, for logging
+     * @param command the command
+     * @return true if the command was queued, false if it was dropped
+     */
+    public boolean execute(final String name, final Runnable command) {
+        final int submittedGeneration = this.generation.get();
+
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (submittedGeneration != generation.get()) {
+                        LogHelper.log("Not executing command '" + name + "' because it was cancelled");
+                        return;
+                    }
+
+                    command.run();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            LogHelper.log("Not executing command '" + name + "' because the command queue is full");
+            return false;
+        }
+    }
+
+    /**
+     * Drops every command that has not started yet. A command that is already running finishes.
+     */
+    public void cancelPending() {
+        this.generation.incrementAndGet();
+        this.executor.getQueue().clear();
+    }
+
+    /**
+     * Gets the number of commands waiting to run.
+     *
+     * @return the number of pending commands
+     */
+    public int getPendingCount() {
+        return this.executor.getQueue().size();
+    }
+}
@@ -0,0 +1,155 @@
+package com.wepay.android.internal.CardReader.DeviceHelpers;
+
+import com.roam.roamreaderunifiedapi.constants.Command;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The commands that bring a reader from the configuration it is known to have to the one it should
+ * have, in the order they must be sent.
+ *
+ * Only the parts that differ are sent. The AID list is submitted as a whole, so a changed list is
+ * cleared and submitted again. Public keys are submitted one at a time, so only the missing keys are
+ * submitted, unless the reader may hold a key that is no longer wanted, in which case all keys are
+ * cleared first.
+ *
+ * Every completed command is applied to the applied record, which is saved after each command, so
+ * a plan made from the saved record after an interruption resumes where the last one stopped.
+ */
+public class ReaderConfigPlan {
+
+    /** What is known to have been applied to the reader. */
+    private final ReaderConfigRecord applied;
+
+    /** What the reader should have. */
+    private final ReaderConfigRecord desired;
+
+    /** The commands left to send. */
+    private final LinkedList<Command> commands = new LinkedList<Command>();
+
+    /** The index in the desired public keys of each SubmitPublicKey command left to send. */
+    private final LinkedList<Integer> publicKeyIndexes = new LinkedList<Integer>();
+
+    public ReaderConfigPlan(ReaderConfigRecord applied, ReaderConfigRecord desired) {
+        this.applied = applied;
+        this.desired = desired;
+
+        if (!equal(applied.aids, desired.aids)) {
+            this.commands.add(Command.ClearAIDsList);
+            this.commands.add(Command.SubmitAIDsList);
+        }
+
+        if (applied.publicKeys == null || !desired.publicKeys.containsAll(applied.publicKeys)) {
+            this.commands.add(Command.ClearPublicKeys);
+            this.addPublicKeys(new ArrayList<String>());
+        } else {
+            this.addPublicKeys(applied.publicKeys);
+        }
+
+        if (!equal(applied.amountDOL, desired.amountDOL)) {
+            this.commands.add(Command.ConfigureAmountDOLData);
+        }
+
+        if (!equal(applied.onlineDOL, desired.onlineDOL)) {
+            this.commands.add(Command.ConfigureOnlineDOLData);
+        }
+
+        if (!equal(applied.responseDOL, desired.responseDOL)) {
+            this.commands.add(Command.ConfigureResponseDOLData);
+        }
+
+        if (!equal(applied.userInterfaceOptions, desired.userInterfaceOptions)) {
+            this.commands.add(Command.ConfigureUserInterfaceOptions);
+        }
+    }
+
+    private void addPublicKeys(List<String> appliedPublicKeys) {
+        for (int i = 0; i < this.desired.publicKeys.size(); i++) {
+            if (!appliedPublicKeys.contains(this.desired.publicKeys.get(i))) {
+                this.commands.add(Command.SubmitPublicKey);
+                this.publicKeyIndexes.add(i);
+            }
+        }
+    }
+
+    public boolean isComplete() {
+        return this.commands.isEmpty();
+    }
+
+    /**
+     * Gets the next command to send.
+     *
+     * @return the command, or null if the plan is complete
+     */
+    public Command getNextCommand() {
+        return this.commands.peek();
+    }
+
+    /**
+     * Gets the index in the desired public keys of the key the next command submits.
+     *
+     * @return the index, or -1 if the next command does not submit a public key
+     */
+    public int getNextPublicKeyIndex() {
+        if (this.getNextCommand() != Command.SubmitPublicKey) {
+            return -1;
+        }
+
+        return this.publicKeyIndexes.peek();
+    }
+
+    /**
+     * Records that the reader accepted the next command, and moves on to the one after it.
+     */
+    public void onCommandSucceeded() {
+        Command command = this.commands.poll();
+
+        if (command == null) {
+            return;
+        }
+
+        switch (command) {
+            case ClearAIDsList:
+                this.applied.aids = null;
+                break;
+            case SubmitAIDsList:
+                this.applied.aids = this.desired.aids;
+                break;
+            case ClearPublicKeys:
+                this.applied.publicKeys = new ArrayList<String>();
+                break;
+            case SubmitPublicKey:
+                this.applied.publicKeys.add(this.desired.publicKeys.get(this.publicKeyIndexes.poll()));
+                break;
+            case ConfigureAmountDOLData:
+                this.applied.amountDOL = this.desired.amountDOL;
+                break;
+            case ConfigureOnlineDOLData:
+                this.applied.onlineDOL = this.desired.onlineDOL;
+                break;
+            case ConfigureResponseDOLData:
+                this.applied.responseDOL = this.desired.responseDOL;
+                break;
+            case ConfigureUserInterfaceOptions:
+                this.applied.userInterfaceOptions = this.desired.userInterfaceOptions;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Gets what is known to have been applied to the reader so far.
+     *
+     * @return the applied record
+     */
+    public ReaderConfigRecord getAppliedRecord() {
+        return this.applied;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,104 @@
+package com.wepay.android.internal.CardReader.DeviceHelpers;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The EMV configuration of a card reader, as fingerprints of each part of it.
+ *
+ * A record either describes the configuration the SDK wants a reader to have, or what is known to
+ * have been applied to a reader. In the latter case a null part is unknown - the reader may hold
+ * anything there - and must be cleared before it is submitted.
+ */
+public class ReaderConfigRecord {
+
+    private static final String KEY_AIDS = "aids";
+    private static final String KEY_PUBLIC_KEYS = "public_keys";
+    private static final String KEY_AMOUNT_DOL = "amount_dol";
+    private static final String KEY_ONLINE_DOL = "online_dol";
+    private static final String KEY_RESPONSE_DOL = "response_dol";
+    private static final String KEY_USER_INTERFACE_OPTIONS = "user_interface_options";
+
+    String aids = null;
+    List<String> publicKeys = null;
+    String amountDOL = null;
+    String onlineDOL = null;
+    String responseDOL = null;
+    String userInterfaceOptions = null;
+
+    /** Creates a record of a reader whose configuration is unknown. */
+    public ReaderConfigRecord() {
+    }
+
+    public ReaderConfigRecord(String aids, List<String> publicKeys, String amountDOL, String onlineDOL, String responseDOL, String userInterfaceOptions) {
+        this.aids = aids;
+        this.publicKeys = publicKeys == null ? null : new ArrayList<String>(publicKeys);
+        this.amountDOL = amountDOL;
+        this.onlineDOL = onlineDOL;
+        this.responseDOL = responseDOL;
+        this.userInterfaceOptions = userInterfaceOptions;
+    }
+
+    public String toJSONString() {
+        JSONObject json = new JSONObject();
+
+        try {
+            json.put(KEY_AIDS, this.aids);
+            json.put(KEY_AMOUNT_DOL, this.amountDOL);
+            json.put(KEY_ONLINE_DOL, this.onlineDOL);
+            json.put(KEY_RESPONSE_DOL, this.responseDOL);
+            json.put(KEY_USER_INTERFACE_OPTIONS, this.userInterfaceOptions);
+
+            if (this.publicKeys != null) {
+                JSONArray publicKeys = new JSONArray();
+                for (String publicKey : this.publicKeys) {
+                    publicKeys.put(publicKey);
+                }
+                json.put(KEY_PUBLIC_KEYS, publicKeys);
+            }
+        } catch (JSONException e) {
+            // only thrown for non-finite numbers
+        }
+
+        return json.toString();
+    }
+
+    /**
+     * Reads a record written by toJSONString().
+     *
+     * @param jsonString the record, may be null
+     * @return the record, or a record of an unknown configuration if it could not be read
+     */
+    public static ReaderConfigRecord fromJSONString(String jsonString) {
+        ReaderConfigRecord record = new ReaderConfigRecord();
+
+        if (jsonString == null) {
+            return record;
+        }
+
+        try {
+            JSONObject json = new JSONObject(jsonString);
+            record.aids = json.optString(KEY_AIDS, null);
+            record.amountDOL = json.optString(KEY_AMOUNT_DOL, null);
+            record.onlineDOL = json.optString(KEY_ONLINE_DOL, null);
+            record.responseDOL = json.optString(KEY_RESPONSE_DOL, null);
+            record.userInterfaceOptions = json.optString(KEY_USER_INTERFACE_OPTIONS, null);
+
+            JSONArray publicKeys = json.optJSONArray(KEY_PUBLIC_KEYS);
+            if (publicKeys != null) {
+                record.publicKeys = new ArrayList<String>();
+                for (int i = 0; i < publicKeys.length(); i++) {
+                    record.publicKeys.add(publicKeys.getString(i));
+                }
+            }
+        } catch (JSONException e) {
+            return new ReaderConfigRecord();
+        }
+
+        return record;
+    }
+}
@@ -2,6 +2,7 @@ package com.wepay.android.internal.CardReader.DeviceManagers;
 
 import com.wepay.android.CalibrationHandler;
 import com.wepay.android.internal.CardReaderDirector.CardReaderRequest;
+import com.wepay.android.internal.TransactionDeadline;
 
 /**
  * Interface that defines the possible interactions with a card reader device.
@@ -13,4 +14,5 @@ public interface CardReaderManager {
     void calibrateDevice(final CalibrationHandler calibrationHandler);
     void processCardReaderRequest();
     void setCardReaderRequestType(CardReaderRequest cardReaderRequestType);
+    void setTransactionDeadline(TransactionDeadline transactionDeadline);
 }
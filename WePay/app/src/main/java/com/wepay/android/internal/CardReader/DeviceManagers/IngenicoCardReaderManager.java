@@ -27,10 +27,14 @@ import com.wepay.android.internal.CardReader.DeviceHelpers.DipConfigHelper;
 import com.wepay.android.internal.CardReader.DeviceHelpers.DipTransactionHelper;
 import com.wepay.android.internal.CardReader.DeviceHelpers.ExternalCardReaderHelper;
 import com.wepay.android.internal.CardReader.DeviceHelpers.IngenicoCardReaderDetector;
+import com.wepay.android.internal.CardReader.DeviceHelpers.ReaderConfigPlan;
+import com.wepay.android.internal.CardReader.DeviceHelpers.ReaderConfigRecord;
+import com.wepay.android.internal.CardReader.DeviceHelpers.ReaderCommandExecutor;
 import com.wepay.android.internal.CardReader.DeviceHelpers.TransactionDelegate;
 import com.wepay.android.internal.CardReaderDirector.CardReaderRequest;
 import com.wepay.android.internal.LogHelper;
 import com.wepay.android.internal.SharedPreferencesHelper;
+import com.wepay.android.internal.TransactionDeadline;
 import com.wepay.android.internal.mock.MockRoamDeviceManager;
 import com.wepay.android.models.Config;
 import com.wepay.android.models.Error;
@@ -68,6 +72,15 @@ public class IngenicoCardReaderManager implements CardReaderManager,
     /** The maximum number of times we'll attempt to get the card reader device's serial number */
     private static final int MAX_TRIES_FETCH_DEVICE_SERIAL_NUMBER = 3;
 
+    /** How often the reader of a warm session is checked */
+    private static final long HEARTBEAT_INTERVAL_MS = 15000;
+
+    /** How long a heartbeat may go unanswered before the reader is considered gone */
+    private static final long HEARTBEAT_TIMEOUT_MS = 5000;
+
+    /** The name prefix of readers whose names identify them, so their serial numbers can be cached */
+    private static final String IDENTIFIABLE_READER_NAME_PREFIX = "MOB30";
+
     /** The reader should perform card reader request operation. */
     private boolean readerShouldPerformOperation;
 
@@ -81,13 +94,16 @@ public class IngenicoCardReaderManager implements CardReaderManager,
     private boolean isSearching;
 
     /** The stop command was issued. */
-    private boolean isCardReaderStopped;
+    private volatile boolean isCardReaderStopped;
 
     /** The config. */
     private Config config = null;
 
     /** The roam device manager */
-    private DeviceManager roamDeviceManager = null;
+    private volatile DeviceManager roamDeviceManager = null;
+
+    /** Sends commands to the reader one at a time. Shared with the dip transaction helper. */
+    private final ReaderCommandExecutor commandExecutor = new ReaderCommandExecutor();
 
     /** The external card reader helper. */
     private ExternalCardReaderHelper externalCardReaderHelper = null;
@@ -101,8 +117,23 @@ public class IngenicoCardReaderManager implements CardReaderManager,
     /** The CardReaderRequest type */
     private CardReaderRequest requestType = null;
 
+    /** The time budget of the current request */
+    private TransactionDeadline transactionDeadline = TransactionDeadline.NONE;
+
     private int currPublicKeyIndex = 0;
 
+    /** The configuration commands left to send to the reader, or null if it is not being configured. */
+    private ReaderConfigPlan configPlan = null;
+
+    /** The reader was configured and its expected DOLs were set since it connected. */
+    private boolean isSessionReady = false;
+
+    /** The heartbeat that was sent and has not been answered yet, or null. */
+    private HeartbeatResponseHandler pendingHeartbeat = null;
+
+    /** Runs the heartbeats and the expiry of a warm session. */
+    private Handler warmSessionHandler = new Handler();
+
     private Set<String> configuredDeviceHashes = new HashSet<String>();
 
     private String currentDeviceSerialNumber;
@@ -159,7 +190,8 @@ public class IngenicoCardReaderManager implements CardReaderManager,
         this.dipTransactionHelper = new DipTransactionHelper(config,
                                                              externalCardReaderHelper,
                                                              this,
-                                                             this.dipConfighelper);
+                                                             this.dipConfighelper,
+                                                             this.commandExecutor);
         configuredDeviceHashes = SharedPreferencesHelper.getConfiguredDevices(config.getContext());
         LogHelper.log("configuredDeviceHashes: " + configuredDeviceHashes);
     }
@@ -170,6 +202,7 @@ public class IngenicoCardReaderManager implements CardReaderManager,
     public void processCardReaderRequest() {
         LogHelper.log("processCardReaderRequest");
 
+        this.stopWarmSession();
         this.stopFindingCardReaders();
         this.stopWaitingForCard();
         this.stopPendingOperations();
@@ -199,6 +232,10 @@ public class IngenicoCardReaderManager implements CardReaderManager,
     @Override
     public void stopCardReader() {
         this.isCardReaderStopped = true;
+        this.commandExecutor.cancelPending();
+        this.configPlan = null;
+        this.stopWarmSession();
+        this.isSessionReady = false;
         this.isConnected = false;
         endOperation();
         stopFindingCardReaders();
@@ -224,6 +261,11 @@ public class IngenicoCardReaderManager implements CardReaderManager,
         this.requestType = cardReaderRequestType;
     }
 
+    @Override
+    public void setTransactionDeadline(TransactionDeadline transactionDeadline) {
+        this.transactionDeadline = transactionDeadline;
+    }
+
     private Boolean isConnected() {
         return this.isConnected && roamDeviceManager != null;
     }
@@ -270,12 +312,21 @@ public class IngenicoCardReaderManager implements CardReaderManager,
                 SharedPreferencesHelper.rememberCardReader(this.connectedDeviceName, this.config.getContext());
             }
 
-            this.deviceSerialNumberFetchCount = 0;
-            this.executeCommand(Command.ReadCapabilities, this);
             // cancel timer if it exists
             if (this.readerInformNotConnectedHandler != null) {
                 this.readerInformNotConnectedHandler.removeCallbacks(this.readerInformNotConnectedRunnable);
             }
+
+            String cachedSerialNumber = this.getCachedSerialNumber(this.connectedDeviceName);
+            if (cachedSerialNumber != null) {
+                // we know this reader, no need to ask for its capabilities again
+                LogHelper.log("using cached serial number of " + this.connectedDeviceName);
+                this.currentDeviceSerialNumber = cachedSerialNumber;
+                this.onReaderIdentified();
+            } else {
+                this.deviceSerialNumberFetchCount = 0;
+                this.executeCommand(Command.ReadCapabilities, this);
+            }
         }
 
         this.isConnected = true;
@@ -296,7 +347,7 @@ public class IngenicoCardReaderManager implements CardReaderManager,
                 this.externalCardReaderHelper.informExternalCardReader(CardReaderStatus.NOT_CONNECTED);
                 this.stopWaitingForCard();
                 this.stopPendingOperations();
-            } else if (!this.config.shouldStopCardReaderAfterOperation()) {
+            } else if (!this.shouldStopCardReaderAfterOperation()) {
                 // inform external
                 externalCardReaderHelper.informExternalCardReader(CardReaderStatus.NOT_CONNECTED);
             }
@@ -305,6 +356,8 @@ public class IngenicoCardReaderManager implements CardReaderManager,
         this.connectedDeviceName = null;
         this.isConnected = false;
         this.currentDeviceSerialNumber = null;
+        this.isSessionReady = false;
+        this.stopWarmSession();
     }
 
     @Override
@@ -336,10 +389,99 @@ public class IngenicoCardReaderManager implements CardReaderManager,
 
         // stop waiting for card and cancel all pending notifications
         this.stopWaitingForCard();
+
+        // keep the reader ready for the next operation if configured to
+        this.startWarmSession();
+    }
+
+    private boolean isWarmSessionEnabled() {
+        return this.config.getWarmReaderSessionMs() > 0;
+    }
+
+    private void startWarmSession() {
+        this.stopWarmSession();
+
+        if (!this.isWarmSessionEnabled() || !this.isConnected() || this.isCardReaderStopped) {
+            return;
+        }
+
+        LogHelper.log("startWarmSession");
+        this.scheduleHeartbeat();
+
+        // the heartbeats cost battery on both sides, so they end with the session either way
+        this.warmSessionHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (config.shouldStopCardReaderAfterOperation()) {
+                    LogHelper.log("warm session expired");
+                    stopCardReader();
+                } else {
+                    LogHelper.log("warm session expired, keeping the reader connected");
+                    stopWarmSession();
+                }
+            }
+        }, this.config.getWarmReaderSessionMs());
+    }
+
+    private void stopWarmSession() {
+        this.warmSessionHandler.removeCallbacksAndMessages(null);
+
+        // an answer to the last heartbeat is ignored from now on
+        this.pendingHeartbeat = null;
+    }
+
+    private void scheduleHeartbeat() {
+        this.warmSessionHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                sendHeartbeat();
+            }
+        }, HEARTBEAT_INTERVAL_MS);
+    }
+
+    private void sendHeartbeat() {
+        if (!this.isConnected() || this.readerShouldPerformOperation || this.isCardReaderStopped) {
+            return;
+        }
+
+        // a battery level request is the cheapest command that needs an answer from the reader
+        this.pendingHeartbeat = new HeartbeatResponseHandler();
+        this.warmSessionHandler.postDelayed(this.pendingHeartbeat, HEARTBEAT_TIMEOUT_MS);
+        this.executeCommand(Command.BatteryInfo, this.pendingHeartbeat);
+    }
+
+    private void onHeartbeatResponse(boolean isReaderResponding) {
+        this.warmSessionHandler.removeCallbacks(this.pendingHeartbeat);
+        this.pendingHeartbeat = null;
+
+        if (!isReaderResponding) {
+            this.onHeartbeatMissed();
+        } else if (!this.readerShouldPerformOperation && !this.isCardReaderStopped) {
+            this.scheduleHeartbeat();
+        }
+    }
+
+    private void onHeartbeatMissed() {
+        this.pendingHeartbeat = null;
+
+        if (!this.readerShouldPerformOperation) {
+            // the reader dropped without telling us, start from scratch next time
+            LogHelper.log("warm session reader stopped responding");
+            this.stopCardReader();
+        }
+    }
+
+    private String getCachedSerialNumber(String deviceName) {
+        if (!this.isWarmSessionEnabled() || deviceName == null || !deviceName.startsWith(IDENTIFIABLE_READER_NAME_PREFIX)) {
+            return null;
+        }
+
+        return SharedPreferencesHelper.getReaderSerialNumber(this.config.getContext(), deviceName);
     }
 
     private boolean shouldStopCardReaderAfterOperation() {
-        return this.config.shouldStopCardReaderAfterOperation();
+        // a warm session stops the reader itself once it expires
+        return this.config.shouldStopCardReaderAfterOperation() && !this.isWarmSessionEnabled();
     }
 
     private boolean shouldDelayOperation() {
@@ -360,6 +502,23 @@ public class IngenicoCardReaderManager implements CardReaderManager,
         return currentDeviceConfigHash;
     }
 
+    private void onReaderIdentified() {
+        this.isConnected = true;
+
+        if (this.readerShouldPerformOperation) {
+            // inform external and start waiting for card
+            this.externalCardReaderHelper.informExternalCardReader(CardReaderStatus.CONNECTED);
+            if (this.requestType == CardReaderRequest.CARD_READER_FOR_BATTERY_LEVEL) {
+                this.checkBatteryLevel();
+            } else {
+                this.checkAndWaitForEMVCard();
+            }
+        } else if (!this.shouldStopCardReaderAfterOperation()) {
+            // inform external
+            this.externalCardReaderHelper.informExternalCardReader(CardReaderStatus.CONNECTED);
+        }
+    }
+
     private void checkAndWaitForBatteryLevel() {
         if (this.isConnected()) {
             this.checkBatteryLevel();
@@ -386,7 +545,7 @@ public class IngenicoCardReaderManager implements CardReaderManager,
                     } else {
                         processor.readerShouldPerformOperation = true;
                         processor.delayedOperationRunnable = null;
-                        processor.roamDeviceManager.getBatteryStatus(processor);
+                        processor.executeCommand(Command.BatteryInfo, processor);
                     }
                 } else {
                     // We've been disconnected so we should start up the card reader
@@ -406,7 +565,12 @@ public class IngenicoCardReaderManager implements CardReaderManager,
 
             if (this.currentDeviceSerialNumber != null) {
                 // check if we should reset device
-                if (configuredDeviceHashes.contains(this.getCurrentDeviceConfigHash())) {
+                if (this.isWarmSessionEnabled() && this.isSessionReady && !this.shouldDelayOperation()) {
+                    // the reader of a warm session is set up already, start right away
+                    LogHelper.log("using warm session");
+                    this.readerShouldPerformOperation = true;
+                    this.fetchAuthInfoForTransaction();
+                } else if (configuredDeviceHashes.contains(this.getCurrentDeviceConfigHash())) {
                     // config hash found
                     // ask external if we should reset anyway
                     this.externalCardReaderHelper.informExternalCardReaderResetCallback(new CardReaderHandler.CardReaderResetCallback() {
@@ -420,8 +584,8 @@ public class IngenicoCardReaderManager implements CardReaderManager,
                         }
                     });
                 } else {
-                    // config hash not found
-                    this.resetDevice();
+                    // config hash not found, bring the reader up to date
+                    this.updateDeviceConfig();
                 }
             } else {
                 // read capabilities again
@@ -453,14 +617,63 @@ public class IngenicoCardReaderManager implements CardReaderManager,
             }
         };
 
-        this.readerInformNotConnectedHandler.postDelayed(this.readerInformNotConnectedRunnable, CONNECTION_TIME_MS);
+        this.readerInformNotConnectedHandler.postDelayed(this.readerInformNotConnectedRunnable, this.transactionDeadline.clampMs(CONNECTION_TIME_MS));
     }
 
     private void resetDevice() {
         LogHelper.log("resetDevice");
-        this.currPublicKeyIndex = 0;
-        this.externalCardReaderHelper.informExternalCardReader(CardReaderStatus.CONFIGURING_READER);
-        this.executeCommand(Command.ClearAIDsList, this);
+        // configure everything, as if nothing was known to have been applied
+        this.configureDevice(new ReaderConfigRecord());
+    }
+
+    private void updateDeviceConfig() {
+        LogHelper.log("updateDeviceConfig");
+        // configure only what differs from what was applied, resuming an interrupted configuration
+        String appliedConfig = SharedPreferencesHelper.getReaderConfig(config.getContext(), this.currentDeviceSerialNumber);
+        this.configureDevice(ReaderConfigRecord.fromJSONString(appliedConfig));
+    }
+
+    private void configureDevice(ReaderConfigRecord appliedConfig) {
+        this.isSessionReady = false;
+        ReaderConfigRecord desiredConfig = this.dipConfighelper.getDesiredConfigRecord(this.getCardReaderTimeout());
+        this.configPlan = new ReaderConfigPlan(appliedConfig, desiredConfig);
+
+        if (!this.configPlan.isComplete()) {
+            this.externalCardReaderHelper.informExternalCardReader(CardReaderStatus.CONFIGURING_READER);
+        }
+
+        this.executeNextConfigCommand();
+    }
+
+    private void executeNextConfigCommand() {
+        if (this.configPlan.isComplete()) {
+            this.configPlan = null;
+            this.saveConfigHash();
+
+            if (this.requestType == CardReaderRequest.CARD_READER_FOR_BATTERY_LEVEL) {
+                this.executeCommand(Command.BatteryInfo, this);
+            } else {
+                this.setExpectedDOLs();
+            }
+        } else {
+            this.currPublicKeyIndex = this.configPlan.getNextPublicKeyIndex();
+            this.executeCommand(this.configPlan.getNextCommand(), this);
+        }
+    }
+
+    private void onConfigCommandSucceeded(Command cmd) {
+        if (this.configPlan == null || this.configPlan.getNextCommand() != cmd) {
+            LogHelper.log("ignoring unexpected configuration response: " + cmd.toString());
+            return;
+        }
+
+        // checkpoint, so that an interrupted configuration resumes after this command
+        this.configPlan.onCommandSucceeded();
+        if (this.currentDeviceSerialNumber != null) {
+            SharedPreferencesHelper.saveReaderConfig(config.getContext(), this.currentDeviceSerialNumber, this.configPlan.getAppliedRecord().toJSONString());
+        }
+
+        this.executeNextConfigCommand();
     }
 
     private void stopPendingOperations() {
@@ -495,7 +708,7 @@ public class IngenicoCardReaderManager implements CardReaderManager,
         if (requestType == CardReaderRequest.CARD_READER_FOR_READING) {
             // If we're just reading, use dummy info.
             LogHelper.log("Card request is for reading. Using dummy card info.");
-            dipTransactionHelper.performEMVTransactionStartCommand(READ_AMOUNT, READ_CURRENCY.toString(), READ_ACCOUNT_ID, roamDeviceManager, requestType);
+            dipTransactionHelper.performEMVTransactionStartCommand(READ_AMOUNT, READ_CURRENCY.toString(), READ_ACCOUNT_ID, roamDeviceManager, requestType, transactionDeadline);
         } else if (requestType == CardReaderRequest.CARD_READER_FOR_TOKENIZING) {
             // Otherwise, we need to get the info according to the client.
             LogHelper.log("fetchAuthInfoForTransaction");
@@ -513,7 +726,7 @@ public class IngenicoCardReaderManager implements CardReaderManager,
                         // kick-off transaction
                         readerIsWaitingForCard = true;
 
-                        dipTransactionHelper.performEMVTransactionStartCommand(amount, currencyCode.toString(), accountId, roamDeviceManager, requestType);
+                        dipTransactionHelper.performEMVTransactionStartCommand(amount, currencyCode.toString(), accountId, roamDeviceManager, requestType, transactionDeadline);
                     }
                 }
             });
@@ -543,68 +756,72 @@ public class IngenicoCardReaderManager implements CardReaderManager,
     }
 
     private void executeCommand(final Command cmd, final DeviceResponseHandler handler) {
-        LogHelper.log("Executing " + cmd.toString());
-        new Thread(new Runnable() {
+        // Capture the device manager and command inputs now, so the command does not read this
+        // object's state from the reader thread while it changes.
+        final DeviceManager deviceManager = this.roamDeviceManager;
+        final int publicKeyIndex = this.currPublicKeyIndex;
+
+        if (this.isCardReaderStopped || deviceManager == null) {
+            // It's okay to silently stop here because Roam will clean up its own internal
+            // resources during release(). This object will be clean for subsequent
+            // transactions because it resets its internal state partially in stopCardReader()
+            // and partially in startCardReader(). This has been verified with manual testing.
+            LogHelper.log("Not executing command '" + cmd.toString() + "' because the card reader was stopped");
+            return;
+        }
+
+        this.commandExecutor.execute(cmd.toString(), new Runnable() {
             @Override
             public void run() {
-                if (isCardReaderStopped) {
-                    // It's okay to silently stop here because Roam will clean up its own internal
-                    // resources during release(). This object will be clean for subsequent
-                    // transactions because it resets its internal state partially in stopCardReader()
-                    // and partially in startCardReader(). This has been verified with manual testing.
-                    LogHelper.log("Not executing command '" + cmd.toString() + "' because the card reader was stopped");
-                } else {
-                    // It's possible that stopCardReader got called during the communication between
-                    // IngenicoCardReaderManager and the card reader. In that case, we don't want to try
-                    // sending any commands since roamDeviceManager will be null.
-                    LogHelper.log("Executing " + cmd.toString());
-
-                    switch (cmd) {
-                        case ReadCapabilities:
-                            roamDeviceManager.getConfigurationManager().getDeviceCapabilities(handler);
-                            break;
-                        case ClearAIDsList:
-                            roamDeviceManager.getConfigurationManager().clearAIDSList(
-                                    handler);
-                            break;
-                        case ClearPublicKeys:
-                            roamDeviceManager.getConfigurationManager().clearPublicKeys(
-                                    handler);
-                            break;
-                        case SubmitAIDsList:
-                            roamDeviceManager.getConfigurationManager().submitAIDList(
-                                    dipConfighelper.getAidsSet(), handler);
-                            break;
-                        case SubmitPublicKey:
-                            roamDeviceManager.getConfigurationManager().submitPublicKey(
-                                    dipConfighelper.getPublicKeyList().get(currPublicKeyIndex), handler);
-                            break;
-                        case ConfigureAmountDOLData:
-                            roamDeviceManager.getConfigurationManager().setAmountDOL(
-                                    dipConfighelper.getAmountDOLList(), handler);
-                            break;
-                        case ConfigureOnlineDOLData:
-                            roamDeviceManager.getConfigurationManager().setOnlineDOL(
-                                    dipConfighelper.getOnlineDOLList(), handler);
-                            break;
-                        case ConfigureResponseDOLData:
-                            roamDeviceManager.getConfigurationManager().setResponseDOL(
-                                    dipConfighelper.getResponseDOLList(), handler);
-                            break;
-                        case ConfigureUserInterfaceOptions:
-                            roamDeviceManager.getConfigurationManager().setUserInterfaceOptions(
-                                    getCardReaderTimeout(), LanguageCode.ENGLISH, new Byte((byte) 0x00), new Byte((byte) 0x00), handler);
-                            break;
-                        case BatteryInfo:
-                            roamDeviceManager.getBatteryStatus(handler);
-                            break;
-                        default:
-                            break;
+                // stopCardReader drops the commands that have not started yet, so a command
+                // queued before the reader was stopped never gets here.
+                LogHelper.log("Executing " + cmd.toString());
+
+                switch (cmd) {
+                    case ReadCapabilities:
+                        deviceManager.getConfigurationManager().getDeviceCapabilities(handler);
+                        break;
+                    case ClearAIDsList:
+                        deviceManager.getConfigurationManager().clearAIDSList(
+                                handler);
+                        break;
+                    case ClearPublicKeys:
+                        deviceManager.getConfigurationManager().clearPublicKeys(
+                                handler);
+                        break;
+                    case SubmitAIDsList:
+                        deviceManager.getConfigurationManager().submitAIDList(
+                                dipConfighelper.getAidsSet(), handler);
+                        break;
+                    case SubmitPublicKey:
+                        deviceManager.getConfigurationManager().submitPublicKey(
+                                dipConfighelper.getPublicKeyList().get(publicKeyIndex), handler);
+                        break;
+                    case ConfigureAmountDOLData:
+                        deviceManager.getConfigurationManager().setAmountDOL(
+                                dipConfighelper.getAmountDOLList(), handler);
+                        break;
+                    case ConfigureOnlineDOLData:
+                        deviceManager.getConfigurationManager().setOnlineDOL(
+                                dipConfighelper.getOnlineDOLList(), handler);
+                        break;
+                    case ConfigureResponseDOLData:
+                        deviceManager.getConfigurationManager().setResponseDOL(
+                                dipConfighelper.getResponseDOLList(), handler);
+                        break;
+                    case ConfigureUserInterfaceOptions:
+                        deviceManager.getConfigurationManager().setUserInterfaceOptions(
+                                getCardReaderTimeout(), LanguageCode.ENGLISH, new Byte((byte) 0x00), new Byte((byte) 0x00), handler);
+                        break;
+                    case BatteryInfo:
+                        deviceManager.getBatteryStatus(handler);
+                        break;
+                    default:
+                        break;
 
-                    }
                 }
             }
-        }).start();
+        });
     }
 
     @Override
@@ -636,20 +853,12 @@ public class IngenicoCardReaderManager implements CardReaderManager,
 
                     // Only proceed with completing the connection if we were able to get a serial number or we've given up.
                     if (currentDeviceSerialNumber != null || deviceSerialNumberFetchCount > MAX_TRIES_FETCH_DEVICE_SERIAL_NUMBER) {
-                        isConnected = true;
-
-                        if (readerShouldPerformOperation) {
-                            // inform external and start waiting for card
-                            externalCardReaderHelper.informExternalCardReader(CardReaderStatus.CONNECTED);
-                            if (this.requestType == CardReaderRequest.CARD_READER_FOR_BATTERY_LEVEL) {
-                                this.checkBatteryLevel();
-                            } else {
-                                this.checkAndWaitForEMVCard();
-                            }
-                        } else if (!this.config.shouldStopCardReaderAfterOperation()) {
-                            // inform external
-                            externalCardReaderHelper.informExternalCardReader(CardReaderStatus.CONNECTED);
+                        if (currentDeviceSerialNumber != null && this.isWarmSessionEnabled()
+                                && connectedDeviceName != null && connectedDeviceName.startsWith(IDENTIFIABLE_READER_NAME_PREFIX)) {
+                            SharedPreferencesHelper.saveReaderSerialNumber(this.config.getContext(), connectedDeviceName, currentDeviceSerialNumber);
                         }
+
+                        this.onReaderIdentified();
                     } else if (deviceSerialNumberFetchCount < MAX_TRIES_FETCH_DEVICE_SERIAL_NUMBER) {
                         this.executeCommand(Command.ReadCapabilities, this);
                     } else {
@@ -658,40 +867,19 @@ public class IngenicoCardReaderManager implements CardReaderManager,
 
                     break;
                 case ClearAIDsList:
-                    this.executeCommand(Command.ClearPublicKeys, this);
-                    break;
                 case ClearPublicKeys:
-                    this.executeCommand(Command.SubmitAIDsList, this);
-                    break;
                 case SubmitAIDsList:
-                    // submit first public key
-                    this.submitPublicKeys();
-                    break;
                 case SubmitPublicKey:
-                    // submit other public keys
-                    currPublicKeyIndex++;
-                    this.submitPublicKeys();
-                    break;
                 case ConfigureAmountDOLData:
-                    this.executeCommand(Command.ConfigureOnlineDOLData, this);
-                    break;
                 case ConfigureOnlineDOLData:
-                    this.executeCommand(Command.ConfigureResponseDOLData, this);
-                    break;
                 case ConfigureResponseDOLData:
-                    this.setUserInterfaceOptions();
-                    break;
                 case ConfigureUserInterfaceOptions:
-                    if (this.requestType == CardReaderRequest.CARD_READER_FOR_BATTERY_LEVEL) {
-                        this.executeCommand(Command.BatteryInfo, this);
-                    } else {
-                        this.setExpectedDOLs();
-                    }
+                    this.onConfigCommandSucceeded(cmd);
                     break;
                 case BatteryInfo:
                     int batteryLevel = (int) data.get(Parameter.BatteryLevel);
                     this.externalCardReaderHelper.informExternalBatteryLevelSuccess(batteryLevel);
-                    if (this.config.shouldStopCardReaderAfterOperation()) {
+                    if (this.shouldStopCardReaderAfterOperation()) {
                         // Stop if configured to
                         this.stopCardReader();
                     } else {
@@ -708,7 +896,7 @@ public class IngenicoCardReaderManager implements CardReaderManager,
     private void findCardReaders() {
         this.isSearching = true;
         this.detector = new IngenicoCardReaderDetector();
-        this.detector.findAvailableCardReaders(config, this);
+        this.detector.findAvailableCardReaders(config, this.transactionDeadline, this);
 	    this.externalCardReaderHelper.informExternalCardReader(CardReaderStatus.SEARCHING_FOR_READER);
     }
 
@@ -792,6 +980,14 @@ public class IngenicoCardReaderManager implements CardReaderManager,
         }
     }
 
+    @Override
+    public void onCardReaderDetectionExpired() {
+        LogHelper.log("Transaction deadline reached while searching for a card reader");
+        this.isSearching = false;
+        this.externalCardReaderHelper.informExternalCardReaderError(Error.getCardReaderTimeoutError());
+        this.stopCardReader();
+    }
+
     private Device getDeviceByName(String name, List<Device> devices) {
         Device foundDevice = null;
 
@@ -874,14 +1070,11 @@ public class IngenicoCardReaderManager implements CardReaderManager,
         }
     }
 
-    private void setUserInterfaceOptions() {
-        this.executeCommand(Command.ConfigureUserInterfaceOptions, this);
-    }
-
     private void setExpectedDOLs() {
         this.roamDeviceManager.getConfigurationManager().setExpectedAmountDOL(this.dipConfighelper.getAmountDOLList());
         this.roamDeviceManager.getConfigurationManager().setExpectedOnlineDOL(this.dipConfighelper.getOnlineDOLList());
         this.roamDeviceManager.getConfigurationManager().setExpectedResponseDOL(this.dipConfighelper.getResponseDOLList());
+        this.isSessionReady = true;
 
         final IngenicoCardReaderManager processor = this;
         this.delayedOperationHandler = new Handler();
@@ -905,15 +1098,6 @@ public class IngenicoCardReaderManager implements CardReaderManager,
         this.delayedOperationHandler.postDelayed(this.delayedOperationRunnable, 1000);
     }
 
-    private void submitPublicKeys() {
-        if (currPublicKeyIndex < dipConfighelper.getPublicKeyList().size()) {
-            this.executeCommand(Command.SubmitPublicKey, this);
-        } else {
-            this.saveConfigHash();
-            this.executeCommand(Command.ConfigureAmountDOLData, this);
-        }
-    }
-
     private void saveConfigHash() {
         try {
             String configuredDeviceHash = this.dipConfighelper.generateDeviceConfigHash(currentDeviceSerialNumber);
@@ -932,7 +1116,7 @@ public class IngenicoCardReaderManager implements CardReaderManager,
 
         if (cmd == Command.BatteryInfo) {
             this.externalCardReaderHelper.informExternalBatteryLevelError(Error.getFailedToGetBatteryLevelError());
-            if (this.config.shouldStopCardReaderAfterOperation()) {
+            if (this.shouldStopCardReaderAfterOperation()) {
                 this.stopCardReader();
             }
         } else if (data.get(Parameter.ErrorCode) == ErrorCode.CardReaderNotConnected) {
@@ -951,4 +1135,34 @@ public class IngenicoCardReaderManager implements CardReaderManager,
             return CARD_READER_TIMEOUT_DEFAULT_SEC;
         }
     }
+
+    /**
+     * Receives the answer to one heartbeat, and runs when the heartbeat has gone unanswered for too
+     * long. Heartbeats have their own handler, so that their answers are never taken for the answer
+     * to a battery level request, and an answer to a heartbeat that is no longer pending is ignored.
+     */
+    private class HeartbeatResponseHandler implements DeviceResponseHandler, Runnable {
+
+        @Override
+        public void onResponse(Map<Parameter, Object> data) {
+            if (pendingHeartbeat != this) {
+                LogHelper.log("ignoring answer to an old heartbeat");
+                return;
+            }
+
+            onHeartbeatResponse(data.get(Parameter.ResponseCode) != ResponseCode.Error);
+        }
+
+        @Override
+        public void onProgress(ProgressMessage message, String additionalMessage) {
+            // nothing to do here
+        }
+
+        @Override
+        public void run() {
+            if (pendingHeartbeat == this) {
+                onHeartbeatMissed();
+            }
+        }
+    }
 }
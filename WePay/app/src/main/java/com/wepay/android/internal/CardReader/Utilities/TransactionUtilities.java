@@ -7,10 +7,14 @@ import com.wepay.android.enums.CardReaderStatus;
 import com.wepay.android.enums.PaymentMethod;
 import com.wepay.android.internal.CardReader.DeviceHelpers.ExternalCardReaderHelper;
 import com.wepay.android.internal.CardReader.DeviceHelpers.RoamHelper;
+import com.wepay.android.internal.CancellationToken;
 import com.wepay.android.internal.CardReaderDirector;
-import com.wepay.android.internal.RiskHelper;
+import com.wepay.android.internal.LogHelper;
+import com.wepay.android.internal.RiskSessionManager;
+import com.wepay.android.internal.TransactionDeadline;
 import com.wepay.android.internal.WepayClient;
 import com.wepay.android.internal.WepayClientHelper;
+import com.wepay.android.internal.network.CreditCardResponse;
 import com.wepay.android.models.Config;
 import com.wepay.android.models.Error;
 import com.wepay.android.models.PaymentInfo;
@@ -32,20 +36,25 @@ public class TransactionUtilities {
 
     private Config config = null;
     private ExternalCardReaderHelper externalCardReaderHelper = null;
-    private RiskHelper riskHelper = null;
+    private RiskSessionManager riskSessionManager = null;
     private CardReaderDirector.CardReaderRequest cardReaderRequest;
+    private TransactionDeadline transactionDeadline = TransactionDeadline.NONE;
 
     public TransactionUtilities(Config config,
                                 ExternalCardReaderHelper helper) {
         this.config = config;
         this.externalCardReaderHelper = helper;
-        this.riskHelper = new RiskHelper(config);
+        this.riskSessionManager = RiskSessionManager.getInstance(config);
     }
 
     public void setCardReaderRequest(CardReaderDirector.CardReaderRequest requestType) {
         this.cardReaderRequest = requestType;
     }
 
+    public void setTransactionDeadline(TransactionDeadline transactionDeadline) {
+        this.transactionDeadline = transactionDeadline;
+    }
+
     /**
      * Validates a payment info instance for tokenization.
      *
@@ -98,7 +107,7 @@ public class TransactionUtilities {
         return null;
     }
 
-    public void handleSwipeResponse(Map<Parameter, Object> data, final String model, final BigDecimal amount, final String currencyCode, final long accountId, final boolean fallback, TransactionResponseHandler responseHandler) {
+    public void handleSwipeResponse(Map<Parameter, Object> data, final String model, final BigDecimal amount, final String currencyCode, final long accountId, final boolean fallback, CancellationToken cancellationToken, TransactionResponseHandler responseHandler) {
         Error error = this.validateSwiperInfoForTokenization(data);
         if (error != null) {
             // inform handler error
@@ -111,14 +120,32 @@ public class TransactionUtilities {
             paymentDescription = this.sanitizePAN(paymentDescription);
 
             PaymentInfo paymentInfo = new PaymentInfo(firstName,lastName, paymentDescription, PaymentMethod.SWIPE, data);
-            this.handlePaymentInfo(paymentInfo, model, amount, currencyCode, accountId, fallback, responseHandler);
+            this.handlePaymentInfo(paymentInfo, model, amount, currencyCode, accountId, fallback, cancellationToken, responseHandler);
         }
     }
 
-    public void handlePaymentInfo(final PaymentInfo paymentInfo, final String model, final BigDecimal amount, final String currencyCode, final long accountId, final boolean fallback, final TransactionResponseHandler responseHandler) {
+    /**
+     * Reports a payment info to the app, and tokenizes or authorizes it if requested. Once the
+     * cancellation token is cancelled, no API call is started and the response handler is not called.
+     *
+     * @param paymentInfo the payment info
+     * @param model the device model
+     * @param amount the amount
+     * @param currencyCode the currency code
+     * @param accountId the account id
+     * @param fallback if this is an emv fallback swipe
+     * @param cancellationToken the token that abandons the transaction's API calls
+     * @param responseHandler the response handler
+     */
+    public void handlePaymentInfo(final PaymentInfo paymentInfo, final String model, final BigDecimal amount, final String currencyCode, final long accountId, final boolean fallback, final CancellationToken cancellationToken, final TransactionResponseHandler responseHandler) {
         this.externalCardReaderHelper.informExternalCardReaderEmailCallback(new CardReaderHandler.CardReaderEmailCallback() {
             @Override
             public void insertPayerEmail(String email) {
+                if (cancellationToken.isCancelled()) {
+                    LogHelper.log("Transaction was cancelled, ignoring payer email");
+                    return;
+                }
+
                 if (email != null) {
                     paymentInfo.addEmail(email);
                 }
@@ -132,7 +159,7 @@ public class TransactionUtilities {
                         // inform external
                         externalCardReaderHelper.informExternalCardReader(CardReaderStatus.TOKENIZING);
                         // tokenize
-                        tokenizeSwipedPaymentInfo(paymentInfo, externalCardReaderHelper.getTokenizationHandler(), model, amount, currencyCode, accountId, fallback, responseHandler);
+                        tokenizeSwipedPaymentInfo(paymentInfo, externalCardReaderHelper.getTokenizationHandler(), model, amount, currencyCode, accountId, fallback, cancellationToken, responseHandler);
                     } else {
                         // validate before authorizing
                         Error error = validatePaymentInfoForTokenization(paymentInfo);
@@ -144,10 +171,21 @@ public class TransactionUtilities {
                             externalCardReaderHelper.informExternalCardReader(CardReaderStatus.AUTHORIZING);
 
                             // authorize
-                            Map<String, Object> paramMap = WepayClientHelper.getCreditCardParams(paymentInfo, riskHelper.getSessionId(), model, amount, currencyCode, accountId, fallback);
-                            WepayClient.creditCardCreateEMV(config, paramMap, new WepayClient.ResponseHandler() {
+                            Map<String, Object> paramMap = WepayClientHelper.getCreditCardParams(paymentInfo, riskSessionManager.getSessionId(), model, amount, currencyCode, accountId, fallback);
+                            WepayClient.creditCardCreateEMV(config, paramMap, transactionDeadline, cancellationToken, new WepayClient.ResponseHandler<CreditCardResponse>() {
+                                @Override
+                                public void onSuccess(int statusCode, CreditCardResponse response) {
+                                    // the transaction was stopped or timed out while the card was being authorized
+                                    reverseAbandonedAuthorization(response, accountId, paymentInfo);
+                                }
+
                                 @Override
-                                public void onSuccess(int statusCode, JSONObject response) {
+                                public void onFailure(int statusCode, Throwable throwable, JSONObject errorResponse) {
+                                    // nothing was authorized
+                                }
+                            }, new WepayClient.ResponseHandler<CreditCardResponse>() {
+                                @Override
+                                public void onSuccess(int statusCode, CreditCardResponse response) {
                                     responseHandler.onSuccess(response);
                                 }
 
@@ -175,17 +213,31 @@ public class TransactionUtilities {
     public void issueReversal(Long creditCardId, Long accountId, Map<Parameter, Object> cardInfo) {
         Map<String, Object> paramMap = WepayClientHelper.getReversalRequestParams(creditCardId, accountId, cardInfo);
 
-        WepayClient.creditCardAuthReverse(this.config, paramMap, new WepayClient.ResponseHandler() {
-            @Override
-            public void onSuccess(int statusCode, JSONObject response) {
-                // do nothing
-            }
+        // the outbox keeps retrying the reversal until it is delivered
+        WepayClient.creditCardAuthReverse(this.config, paramMap);
+    }
 
-            @Override
-            public void onFailure(int statusCode, Throwable throwable, JSONObject errorResponse) {
-                // do nothing
-            }
-        });
+    /**
+     * Reverses an authorization that succeeded after its transaction was stopped or timed out, since
+     * the card never received the result.
+     *
+     * @param response the authorization response
+     * @param accountId the account id
+     * @param paymentInfo the payment info that was authorized
+     */
+    private void reverseAbandonedAuthorization(CreditCardResponse response, long accountId, PaymentInfo paymentInfo) {
+        String creditCardId = response.getCreditCardId();
+        LogHelper.log("Authorization finished after the transaction was abandoned, reversing credit card " + creditCardId);
+
+        // card reader payment infos are always created with the Roam data map
+        @SuppressWarnings("unchecked")
+        Map<Parameter, Object> cardInfo = (Map<Parameter, Object>) paymentInfo.getCardReaderInfo();
+
+        try {
+            this.issueReversal(Long.parseLong(creditCardId), accountId, cardInfo);
+        } catch (NumberFormatException e) {
+            LogHelper.log("Error: Unable to reverse abandoned authorization, invalid credit card id " + creditCardId);
+        }
     }
 
     public String sanitizePAN(String pan) {
@@ -213,8 +265,10 @@ public class TransactionUtilities {
      * @param currencyCode the currency code
      * @param accountId the account id
      * @param fallback if this is an emv fallback swipe
+     * @param cancellationToken the token that abandons the tokenization call
+     * @param responseHandler the response handler
      */
-    private void tokenizeSwipedPaymentInfo(final PaymentInfo paymentInfo, TokenizationHandler tokenizationHandler, String model, BigDecimal amount, String currencyCode, long accountId, boolean fallback, final TransactionResponseHandler responseHandler) {
+    private void tokenizeSwipedPaymentInfo(final PaymentInfo paymentInfo, TokenizationHandler tokenizationHandler, String model, BigDecimal amount, String currencyCode, long accountId, boolean fallback, CancellationToken cancellationToken, final TransactionResponseHandler responseHandler) {
         this.externalCardReaderHelper.setTokenizationHandler(tokenizationHandler);
 
         Error error = this.validatePaymentInfoForTokenization(paymentInfo);
@@ -224,12 +278,12 @@ public class TransactionUtilities {
             responseHandler.onFailure(error);
         } else {
             // tokenize
-            Map<String, Object> paramMap = WepayClientHelper.getCreditCardParams(paymentInfo, riskHelper.getSessionId(), model, amount, currencyCode, accountId, fallback);
+            Map<String, Object> paramMap = WepayClientHelper.getCreditCardParams(paymentInfo, riskSessionManager.getSessionId(), model, amount, currencyCode, accountId, fallback);
 
-            WepayClient.creditCardCreateSwipe(this.config, paramMap, new WepayClient.ResponseHandler() {
+            WepayClient.creditCardCreateSwipe(this.config, paramMap, this.transactionDeadline, cancellationToken, new WepayClient.ResponseHandler<CreditCardResponse>() {
                 @Override
-                public void onSuccess(int statusCode, JSONObject response) {
-                    String tokenId = response.isNull("credit_card_id") ? null : response.optString("credit_card_id");
+                public void onSuccess(int statusCode, CreditCardResponse response) {
+                    String tokenId = response.getCreditCardId();
                     PaymentToken token = new PaymentToken(tokenId);
 
                     externalCardReaderHelper.informExternalCardReaderTokenizationSuccess(paymentInfo, token);
@@ -248,7 +302,7 @@ public class TransactionUtilities {
     }
 
     public interface TransactionResponseHandler {
-        void onSuccess(JSONObject response);
+        void onSuccess(CreditCardResponse response);
         void onFailure(Error error);
         void onFinish();
     }
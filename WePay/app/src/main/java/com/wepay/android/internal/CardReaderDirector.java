@@ -31,6 +31,9 @@ public class CardReaderDirector {
 
     private String sessionId = null;
 
+    /** The time budget of the current request. */
+    private TransactionDeadline transactionDeadline = TransactionDeadline.NONE;
+
     public CardReaderDirector(Config config) {
         this.config = config;
         this.externalCardReaderHelper = new ExternalCardReaderHelper();
@@ -47,9 +50,11 @@ public class CardReaderDirector {
     public void startCardReaderForReading(CardReaderHandler cardReaderHandler) {
         this.externalCardReaderHelper.setCardReaderHandler(cardReaderHandler);
         this.cardReaderRequest = CardReaderRequest.CARD_READER_FOR_READING;
+        this.transactionDeadline = TransactionDeadline.NONE;
 
         if (this.cardReaderManager != null) {
             this.cardReaderManager.setCardReaderRequestType(this.cardReaderRequest);
+            this.cardReaderManager.setTransactionDeadline(this.transactionDeadline);
             this.cardReaderManager.processCardReaderRequest();
         } else {
             instantiateCardReaderInstance();
@@ -57,15 +62,17 @@ public class CardReaderDirector {
     }
 
     public void startCardReaderForTokenizing(CardReaderHandler cardReaderHandler, TokenizationHandler tokenizationHandler,
-                                             AuthorizationHandler authorizationHandler, String sessionId) {
+                                             AuthorizationHandler authorizationHandler, String sessionId, TransactionDeadline transactionDeadline) {
         this.externalCardReaderHelper.setAuthorizationHandler(authorizationHandler);
         this.externalCardReaderHelper.setCardReaderHandler(cardReaderHandler);
         this.externalCardReaderHelper.setTokenizationHandler(tokenizationHandler);
         this.sessionId = sessionId;
         this.cardReaderRequest = CardReaderRequest.CARD_READER_FOR_TOKENIZING;
+        this.transactionDeadline = transactionDeadline;
 
         if (this.cardReaderManager != null) {
             this.cardReaderManager.setCardReaderRequestType(this.cardReaderRequest);
+            this.cardReaderManager.setTransactionDeadline(this.transactionDeadline);
             this.cardReaderManager.processCardReaderRequest();
         } else {
             instantiateCardReaderInstance();
@@ -94,9 +101,11 @@ public class CardReaderDirector {
         this.externalCardReaderHelper.setCardReaderHandler(cardReaderHandler);
         this.externalCardReaderHelper.setBatteryLevelHandler(batteryLevelHandler);
         this.cardReaderRequest = CardReaderRequest.CARD_READER_FOR_BATTERY_LEVEL;
+        this.transactionDeadline = TransactionDeadline.NONE;
 
         if (this.cardReaderManager != null) {
             this.cardReaderManager.setCardReaderRequestType(this.cardReaderRequest);
+            this.cardReaderManager.setTransactionDeadline(this.transactionDeadline);
             this.cardReaderManager.processCardReaderRequest();
         } else {
             instantiateCardReaderInstance();
@@ -115,6 +124,7 @@ public class CardReaderDirector {
         this.cardReaderManager = IngenicoCardReaderManager.instantiate(this.config,
                                                                                    this.externalCardReaderHelper);
         this.cardReaderManager.setCardReaderRequestType(this.cardReaderRequest);
+        this.cardReaderManager.setTransactionDeadline(this.transactionDeadline);
         this.cardReaderManager.startCardReader();
     }
 }
@@ -1,16 +1,20 @@
 package com.wepay.android.internal;
 
 import android.graphics.Bitmap;
-import android.util.Base64;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.wepay.android.CheckoutHandler;
+import com.wepay.android.SignatureProgressListener;
+import com.wepay.android.enums.SignatureStatus;
+import com.wepay.android.internal.network.SignatureResponse;
 import com.wepay.android.models.Config;
 import com.wepay.android.models.Error;
+import com.wepay.android.models.SignatureStrokes;
 
 import org.apache.http.Header;
 import org.json.JSONObject;
 
-import java.io.ByteArrayOutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,6 +38,12 @@ public class CheckoutHelper {
     /** The config. */
     private Config config;
 
+    /** Scales and encodes signature images in the background. */
+    private final SignatureEncoder signatureEncoder = new SignatureEncoder();
+
+    /** Delivers results on the main thread. */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
     public CheckoutHelper(Config config) {
         this.config = config;
     }
@@ -41,77 +51,139 @@ public class CheckoutHelper {
     /**
      * Use this method to store a signature image associated with a checkout id on WePay's servers.
      * The signature can be retrieved via a server-to-server call that fetches the checkout object.
+     * The image is scaled and encoded on a background thread, and the handlers are called on the main thread.
      *
      * @param image the signature image to be stored.
      * @param checkoutId the checkout id associated with the signature
      * @param checkoutHandler the signature handler
+     * @param progressListener the progress listener, may be null
      */
-    public void storeSignatureImage(final Bitmap image, final String checkoutId, final CheckoutHandler checkoutHandler) {
-        Boolean isImageValid = false;
-        Bitmap scaledImage = null;
-        String encodedImage = null;
-        Exception innerException = null;
-
+    public void storeSignatureImage(final Bitmap image, final String checkoutId, final CheckoutHandler checkoutHandler, final SignatureProgressListener progressListener) {
         // validate image
-        try
-        {
-            if(this.canStoreSignatureImage(image)) {
-                // scale image
-                scaledImage = this.scaledSignatureImageCopy(image);
-
-                if (scaledImage !=null) {
-                    // convert image to base64
-                    encodedImage = this.storableStringForImage(scaledImage);
-
-                    // mark image as valid
-                    if (encodedImage != null) {
-                        isImageValid = true;
-                    }
-                }
-            }
-        } catch (Exception e) {
-            innerException = e;
+        if (!this.canStoreSignatureImage(image)) {
+            // return error
+            this.returnInvalidImageError(image, checkoutId, checkoutHandler, null);
+            return;
         }
 
-        // take action based on validity
-        if (isImageValid) {
-            // make the param map
-            Map<String, Object> paramMap = getSignatureParamMap(encodedImage, checkoutId);
-
-            // make the client call
-            WepayClient.checkoutSignatureCreate(this.config, paramMap, new WepayClient.ResponseHandler() {
-                @Override
-                public void onSuccess(int statusCode, JSONObject response) {
-                    // extract signature url
-                    String signatureUrl = response.isNull("signature_url") ? null : response.optString("signature_url");
-
-                    // return response
-                    if (checkoutHandler != null) {
-                        checkoutHandler.onSuccess(signatureUrl, checkoutId);
+        int[] scaledSize = this.scaledSignatureImageSize(image.getWidth(), image.getHeight());
+
+        this.signatureEncoder.encode(image, scaledSize[0], scaledSize[1], Bitmap.CompressFormat.PNG,
+                this.getEncoderListener(image, checkoutId, checkoutHandler, progressListener));
+    }
+
+    /**
+     * Use this method to store a signature recorded as strokes. The strokes are rendered to an image on a background thread, at the size the image would be stored at.
+     *
+     * @param strokes the signature to be stored.
+     * @param checkoutId the checkout id associated with the signature
+     * @param checkoutHandler the signature handler
+     * @param progressListener the progress listener, may be null
+     */
+    public void storeSignatureStrokes(SignatureStrokes strokes, String checkoutId, CheckoutHandler checkoutHandler, SignatureProgressListener progressListener) {
+        // validate signature
+        if (strokes == null || strokes.isEmpty() || !this.canStoreSignatureSize(strokes.getWidth(), strokes.getHeight())) {
+            // return error
+            this.returnInvalidImageError(null, checkoutId, checkoutHandler, null);
+            return;
+        }
+
+        int[] scaledSize = this.scaledSignatureImageSize(strokes.getWidth(), strokes.getHeight());
+
+        this.signatureEncoder.encode(strokes, scaledSize[0], scaledSize[1], Bitmap.CompressFormat.PNG,
+                this.getEncoderListener(null, checkoutId, checkoutHandler, progressListener));
+    }
+
+    /**
+     * Gets the listener that uploads an encoded signature and reports the outcome.
+     *
+     * @param image the signature image, or null if the signature was recorded as strokes
+     * @param checkoutId the checkout id associated with the signature
+     * @param checkoutHandler the signature handler
+     * @param progressListener the progress listener, may be null
+     * @return the listener
+     */
+    private SignatureEncoder.Listener getEncoderListener(final Bitmap image, final String checkoutId, final CheckoutHandler checkoutHandler, final SignatureProgressListener progressListener) {
+        return new SignatureEncoder.Listener() {
+            @Override
+            public void onProgress(SignatureStatus status) {
+                reportProgress(checkoutId, status, progressListener);
+            }
+
+            @Override
+            public void onEncoded(byte[] base64, int length) {
+                reportProgress(checkoutId, SignatureStatus.UPLOADING, progressListener);
+
+                // make the param map
+                Map<String, Object> paramMap = getSignatureParamMap(checkoutId);
+
+                // make the client call
+                WepayClient.checkoutSignatureCreate(config, paramMap, base64, length, new WepayClient.QueuedResponseHandler<SignatureResponse>() {
+                    @Override
+                    public void onSuccess(int statusCode, SignatureResponse response) {
+                        // extract signature url
+                        String signatureUrl = response.getSignatureUrl();
+
+                        // return response
+                        if (checkoutHandler != null) {
+                            checkoutHandler.onSuccess(signatureUrl, checkoutId);
+                        }
                     }
-                }
 
-                @Override
-                public void onFailure(int statusCode, Throwable throwable, JSONObject errorResponse) {
-                    com.wepay.android.models.Error error;
+                    @Override
+                    public void onFailure(int statusCode, Throwable throwable, JSONObject errorResponse) {
+                        com.wepay.android.models.Error error;
+
+                        if (errorResponse != null) {
+                            error = new Error(errorResponse, throwable);
+                        } else {
+                            error = Error.getNoDataReturnedError();
+                        }
 
-                    if (errorResponse != null) {
-                        error = new Error(errorResponse, throwable);
-                    } else {
-                        error = Error.getNoDataReturnedError();
+                        if (checkoutHandler != null) {
+                            checkoutHandler.onError(image, checkoutId, error);
+                        }
                     }
 
-                    if (checkoutHandler != null) {
-                        checkoutHandler.onError(image, checkoutId, error);
+                    @Override
+                    public void onQueued() {
+                        // the signature will still be stored, so this is neither a success nor an error
+                        if (progressListener != null) {
+                            progressListener.onSignatureProgress(checkoutId, SignatureStatus.QUEUED);
+                        }
                     }
+                });
+            }
+
+            @Override
+            public void onError(Exception exception) {
+                returnInvalidImageError(image, checkoutId, checkoutHandler, exception);
+            }
+        };
+    }
+
+    private void returnInvalidImageError(final Bitmap image, final String checkoutId, final CheckoutHandler checkoutHandler, final Exception exception) {
+        this.mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (checkoutHandler != null) {
+                    checkoutHandler.onError(image, checkoutId, Error.getInvalidSignatureImageError(exception));
                 }
-            });
-        } else {
-            // return error
-            if (checkoutHandler != null) {
-                checkoutHandler.onError(image, checkoutId, Error.getInvalidSignatureImageError(innerException));
             }
+        });
+    }
+
+    private void reportProgress(final String checkoutId, final SignatureStatus status, final SignatureProgressListener progressListener) {
+        if (progressListener == null) {
+            return;
         }
+
+        this.mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                progressListener.onSignatureProgress(checkoutId, status);
+            }
+        });
     }
 
     /**
@@ -126,10 +198,17 @@ public class CheckoutHelper {
             return false;
         }
 
-        // get height and width
-        int h = image.getHeight();
-        int w = image.getWidth();
+        return this.canStoreSignatureSize(image.getWidth(), image.getHeight());
+    }
 
+    /**
+     * Checks if a signature of the given size can be stored
+     *
+     * @param w the width of the signature
+     * @param h the height of the signature
+     * @return true if the signature can be stored, otherwise false
+     */
+    private Boolean canStoreSignatureSize(int w, int h) {
         // check trivial height width
         if (h == 0 || w == 0) {
             return false;
@@ -159,19 +238,16 @@ public class CheckoutHelper {
     }
 
     /**
-     * Creates a scaled signature image copy for storage.
+     * Gets the size of the signature image as stored.
      *
-     * @param image the image
-     * @return the scaled image copy
+     * @param w the width of the signature
+     * @param h the height of the signature
+     * @return the scaled width and height
      */
-    private Bitmap scaledSignatureImageCopy(Bitmap image) {
+    private int[] scaledSignatureImageSize(int w, int h) {
         // default scale
         float scale = 1;
 
-        // get height and width
-        int h = image.getHeight();
-        int w = image.getWidth();
-
         // scaling up
         if (h < SIGNATURE_MIN_HEIGHT || w < SIGNATURE_MIN_WIDTH) {
             scale = Math.max(SIGNATURE_MIN_HEIGHT / h, SIGNATURE_MIN_WIDTH / w);
@@ -185,41 +261,19 @@ public class CheckoutHelper {
         int newH = (int)(h * scale);
         int newW = (int)(w * scale);
 
-        Bitmap scaledImage = Bitmap.createScaledBitmap(image, newW, newH, true);
-
-        return scaledImage;
-    }
-
-    /**
-     * Gets the storable base-64 string representation of the image.
-     *
-     * @param image the image
-     * @return the base-64 string representation
-     */
-    private String storableStringForImage(Bitmap image) {
-
-        // convert to byte array
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        image.compress(Bitmap.CompressFormat.PNG, 95, baos); //bm is the bitmap object
-        byte[] byteArrayImage = baos.toByteArray();
-
-        String encodedImage = Base64.encodeToString(byteArrayImage, Base64.DEFAULT);
-
-        return encodedImage;
+        return new int[] {newW, newH};
     }
 
     /**
-     * Gets the signature param map.
+     * Gets the signature param map, without the image, which is added to the request as it is encoded.
      *
-     * @param encodedImage the base-64 encoded image data
      * @param checkoutId the checkout id to associate with the signature
      * @return the signature param map
      */
-    private Map<String, Object> getSignatureParamMap(String encodedImage, String checkoutId) {
+    private Map<String, Object> getSignatureParamMap(String checkoutId) {
         Map<String, Object> params = new HashMap<String, Object>();
 
         params.put("checkout_id", checkoutId);
-        params.put("base64_img_data", encodedImage);
 
         return params;
     }
@@ -0,0 +1,171 @@
+package com.wepay.android.internal;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of whether the device has a network connection, so that API calls can check it
+ * without asking the system every time.
+ *
+ * On API 21 and above, the state follows ConnectivityManager network callbacks for networks that
+ * provide internet access. On older devices, it follows the CONNECTIVITY_ACTION broadcast. If the
+ * app lacks the ACCESS_NETWORK_STATE permission, the device is always considered online.
+ */
+public class ConnectivityMonitor {
+
+    /** The singleton instance. */
+    private static ConnectivityMonitor instance = null;
+
+    private final ConnectivityManager connectivityManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /** The networks with internet access, as reported by network callbacks. */
+    private final Set<Network> availableNetworks = new HashSet<>();
+
+    /** The cached connectivity state. */
+    private volatile boolean isConnected = true;
+
+    /**
+     * Gets the monitor, creating it and starting to monitor on first use.
+     *
+     * @param context the context
+     * @return the monitor
+     */
+    public static synchronized ConnectivityMonitor getInstance(Context context) {
+        if (instance == null) {
+            instance = new ConnectivityMonitor(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    private ConnectivityMonitor(Context context) {
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        try {
+            this.isConnected = this.isActiveNetworkConnected();
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                this.registerNetworkCallback();
+            } else {
+                this.registerReceiver(context);
+            }
+        } catch (SecurityException e) {
+            LogHelper.log("Unable to monitor connectivity, ACCESS_NETWORK_STATE permission is missing");
+            this.isConnected = true;
+        }
+    }
+
+    /**
+     * Determines if the device currently has a network connection.
+     *
+     * @return true, if the device is online
+     */
+    public boolean isConnected() {
+        return this.isConnected;
+    }
+
+    /**
+     * Adds a listener for connectivity changes. Listeners are called on the main thread.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Listener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener for connectivity changes.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(Listener listener) {
+        this.listeners.remove(listener);
+    }
+
+    private boolean isActiveNetworkConnected() {
+        NetworkInfo networkInfo = this.connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void registerNetworkCallback() {
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+
+        this.connectivityManager.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                synchronized (availableNetworks) {
+                    availableNetworks.add(network);
+                    updateState(true);
+                }
+            }
+
+            @Override
+            public void onLost(Network network) {
+                synchronized (availableNetworks) {
+                    availableNetworks.remove(network);
+                    updateState(!availableNetworks.isEmpty());
+                }
+            }
+        });
+    }
+
+    private void registerReceiver(Context context) {
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                updateState(!intent.getBooleanExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY, false) && isActiveNetworkConnected());
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    private void updateState(final boolean connected) {
+        if (this.isConnected == connected) {
+            return;
+        }
+
+        this.isConnected = connected;
+        LogHelper.log(connected ? "Network connection restored" : "Network connection lost");
+
+        this.mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener listener : listeners) {
+                    listener.onConnectivityChanged(connected);
+                }
+            }
+        });
+    }
+
+    /**
+     * Receives connectivity changes.
+     */
+    public interface Listener {
+        /**
+         * Gets called when the device goes online or offline.
+         *
+         * @param isConnected true, if the device is now online
+         */
+        void onConnectivityChanged(boolean isConnected);
+    }
+}
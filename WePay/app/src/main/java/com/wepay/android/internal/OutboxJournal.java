@@ -0,0 +1,266 @@
+package com.wepay.android.internal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The on-disk journal behind ApiOutbox. Each line is a JSON record: an "add" record stores a
+ * request, and a "done" record marks it as finished. Records are only ever appended, so a crash
+ * can at worst leave a torn last line, which is ignored on load. The journal is rewritten with
+ * only the pending requests once enough finished ones have piled up.
+ *
+ * This class is not thread-safe, ApiOutbox only uses it from its own thread.
+ */
+public class OutboxJournal {
+
+    /** The operation of a record that stores a request. */
+    static final String OP_ADD = "add";
+
+    /** The operation of a record that marks a request as finished. */
+    static final String OP_DONE = "done";
+
+    /** The charset of the journal. */
+    private static final String CHARSET = "UTF-8";
+
+    /** The number of lines the journal may hold beyond the pending requests before it is compacted. */
+    private static final int COMPACTION_THRESHOLD = 16;
+
+    private static final Gson GSON = new Gson();
+
+    /** The journal file. */
+    private final File file;
+
+    /** The pending requests, in the order they were added. */
+    private final Map<String, Record> pendingRecords = new LinkedHashMap<>();
+
+    /** The number of lines in the journal file. */
+    private int lineCount = 0;
+
+    public OutboxJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the journal from disk.
+     *
+     * @return the pending requests, in the order they were added
+     */
+    public List<Record> load() {
+        this.pendingRecords.clear();
+        this.lineCount = 0;
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), CHARSET));
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                this.lineCount++;
+                this.replay(line);
+            }
+        } catch (FileNotFoundException e) {
+            // nothing was ever queued
+        } catch (IOException e) {
+            LogHelper.log("Error: Unable to read outbox journal. Failure: " + e.getLocalizedMessage());
+        } finally {
+            closeQuietly(reader);
+        }
+
+        return new ArrayList<>(this.pendingRecords.values());
+    }
+
+    /**
+     * Appends a request to the journal. Returns once the record has reached the disk.
+     *
+     * @param record the request
+     * @throws IOException if the record could not be written
+     */
+    public void add(Record record) throws IOException {
+        record.op = OP_ADD;
+        this.append(GSON.toJson(record), true);
+        this.pendingRecords.put(record.id, record);
+    }
+
+    /**
+     * Marks a request as finished, and compacts the journal if needed.
+     *
+     * @param id the id of the request
+     */
+    public void markDone(String id) {
+        if (this.pendingRecords.remove(id) == null) {
+            return;
+        }
+
+        Record record = new Record();
+        record.op = OP_DONE;
+        record.id = id;
+
+        try {
+            // Not synced: if this record is lost, the request is sent again after a restart.
+            this.append(GSON.toJson(record), false);
+        } catch (IOException e) {
+            LogHelper.log("Error: Unable to write outbox journal. Failure: " + e.getLocalizedMessage());
+        }
+
+        if (this.lineCount - this.pendingRecords.size() >= COMPACTION_THRESHOLD) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Gets the number of lines in the journal file.
+     *
+     * @return the line count
+     */
+    int getLineCount() {
+        return this.lineCount;
+    }
+
+    private void replay(String line) {
+        Record record;
+        try {
+            record = GSON.fromJson(line, Record.class);
+        } catch (JsonParseException e) {
+            LogHelper.log("Error: Skipping malformed outbox journal line.");
+            return;
+        }
+
+        if (record == null || record.id == null) {
+            return;
+        }
+
+        if (OP_ADD.equals(record.op)) {
+            this.pendingRecords.put(record.id, record);
+        } else if (OP_DONE.equals(record.op)) {
+            this.pendingRecords.remove(record.id);
+        }
+    }
+
+    private void append(String line, boolean sync) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(this.file, true);
+        try {
+            outputStream.write((line + "\n").getBytes(CHARSET));
+            if (sync) {
+                outputStream.getFD().sync();
+            }
+        } finally {
+            outputStream.close();
+        }
+
+        this.lineCount++;
+    }
+
+    /**
+     * Rewrites the journal with only the pending requests. The new journal is written to a temporary
+     * file first and then renamed, so the old journal stays intact if this fails.
+     */
+    private void compact() {
+        File tempFile = new File(this.file.getPath() + ".tmp");
+        FileOutputStream outputStream = null;
+
+        try {
+            outputStream = new FileOutputStream(tempFile);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, CHARSET));
+
+            for (Record record : this.pendingRecords.values()) {
+                writer.write(GSON.toJson(record));
+                writer.write("\n");
+            }
+
+            writer.flush();
+            outputStream.getFD().sync();
+            outputStream.close();
+            outputStream = null;
+
+            if (tempFile.renameTo(this.file)) {
+                this.lineCount = this.pendingRecords.size();
+            } else {
+                LogHelper.log("Error: Unable to replace outbox journal.");
+            }
+        } catch (IOException e) {
+            LogHelper.log("Error: Unable to compact outbox journal. Failure: " + e.getLocalizedMessage());
+        } finally {
+            closeQuietly(outputStream);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+
+    /**
+     * A journal record.
+     */
+    public static class Record {
+        /** The operation, OP_ADD or OP_DONE. */
+        String op;
+
+        /** The unique id of the request. */
+        String id;
+
+        /** The API endpoint, relative to the base url. */
+        String endpoint;
+
+        /** The absolute url. */
+        String url;
+
+        /** The encoded JSON body. */
+        String body;
+
+        /** When the request was queued, in milliseconds since the epoch. */
+        long createdAt;
+
+        public Record() {
+        }
+
+        public Record(String id, String endpoint, String url, String body, long createdAt) {
+            this.id = id;
+            this.endpoint = endpoint;
+            this.url = url;
+            this.body = body;
+            this.createdAt = createdAt;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public String getEndpoint() {
+            return this.endpoint;
+        }
+
+        public String getUrl() {
+            return this.url;
+        }
+
+        public String getBody() {
+            return this.body;
+        }
+
+        public long getCreatedAt() {
+            return this.createdAt;
+        }
+    }
+}
@@ -6,6 +6,10 @@ import com.threatmetrix.TrustDefenderMobile.THMStatusCode;
 import com.threatmetrix.TrustDefenderMobile.TrustDefenderMobile;
 import com.wepay.android.models.Config;
 
+/**
+ * Runs ThreatMetrix profiling. Profiling blocks while it starts, so it is only driven from the
+ * RiskSessionManager's thread.
+ */
 public class RiskHelper {
 
     /** The Constant PROFILING_TIMEOUT_SECS. */
@@ -17,9 +21,6 @@ public class RiskHelper {
     /** The config. */
     private Config config = null;
 
-    /** The session id. */
-    private String sessionId;
-
     /**
      * The TrustDefenderMobile profile
      */
@@ -37,28 +38,34 @@ public class RiskHelper {
 
 
     /**
-     * Gets the session id.
+     * Starts a profiling session.
      *
-     * @return the session id - may be null if profiling fails
+     * @param completionCallback called once the session's profiling is complete, successful or not
+     * @return the session id - may be null if profiling fails to start
      */
-    public String getSessionId() {
-        // if a profiling is not currently in progress
-        if (this.sessionId == null) {
-            // initialize profiling again
-            this.initProfiling();
-
-            // start profiling
-            this.sessionId = this.startProfiling();
-        }
+    public String startProfiling(Runnable completionCallback) {
+        // initialize profiling again
+        this.initProfiling(completionCallback);
+
+        // start profiling
+        THMStatusCode status = this.profile.doProfileRequest();
 
-        return this.sessionId;
+        if (status == THMStatusCode.THM_OK) {
+            // The profiling successfully started, return session id
+            return this.profile.getResult().getSessionID();
+        } else {
+            // profiling failed, return null
+            return null;
+        }
     }
 
 
     /**
      * Initialize the TrustDefenderMobile profiling with options.
+     *
+     * @param completionCallback called once profiling is complete
      */
-    private void initProfiling() {
+    private void initProfiling(final Runnable completionCallback) {
         // get a reference to the risk helper for passing inside
         final RiskHelper riskHelper = this;
 
@@ -72,44 +79,21 @@ public class RiskHelper {
                     @Override
                     public void complete(ProfilingResult result) {
                         // Called once profiling is complete
-                        if (result.getStatus() == THMStatusCode.THM_OK) {
-                            // success!
-                            // do nothing special
-                        } else {
-                            // failed
-                            // do nothing special
+                        if (result.getStatus() != THMStatusCode.THM_OK) {
+                            LogHelper.log("Risk profiling failed with status " + result.getStatus());
                         }
 
                         // stop requesting location
                         riskHelper.stopLocationServices();
 
-                        // delete the sessionId
-                        riskHelper.sessionId = null;
-
                         // cleanup resources
                         profile.tidyUp();
+
+                        completionCallback.run();
                     }
                 }));
     }
 
-    /**
-     * Start profiling.
-     *
-     * @return the session id
-     */
-    private String startProfiling() {
-        // start profiling
-        THMStatusCode status = this.profile.doProfileRequest();
-
-        if (status == THMStatusCode.THM_OK) {
-            // The profiling successfully started, return session id
-            return this.profile.getResult().getSessionID();
-        } else {
-            // profiling failed, return null
-            return null;
-        }
-    }
-
     /**
      * Stop location services.
      */
@@ -0,0 +1,96 @@
+package com.wepay.android.internal;
+
+/**
+ * Decides when a risk profiling session can be reused and when a new one is profiled.
+ *
+ * A session is reused until its time to live has passed. Once it is within the refresh lead of
+ * expiring, the next use starts profiling a replacement in the background, so that a fresh session
+ * is usually ready before the old one expires. Profiling is never started more often than the
+ * minimum interval, which bounds the location and network work when transactions come fast or
+ * profiling keeps failing.
+ *
+ * Times are passed in by the caller, in milliseconds since boot.
+ */
+public class RiskSessionLifecycle {
+
+    private final long ttlMs;
+    private final long refreshLeadMs;
+    private final long minProfilingIntervalMs;
+
+    private String sessionId = null;
+    private long sessionStartedAtMs = 0;
+    private boolean isProfiling = false;
+    private boolean hasProfiled = false;
+    private long profilingStartedAtMs = 0;
+
+    /**
+     * Instantiates a new lifecycle.
+     *
+     * @param ttlMs how long a session is reused
+     * @param refreshLeadMs how long before a session expires a replacement is profiled
+     * @param minProfilingIntervalMs the minimum time between two profiling runs
+     */
+    public RiskSessionLifecycle(long ttlMs, long refreshLeadMs, long minProfilingIntervalMs) {
+        this.ttlMs = ttlMs;
+        this.refreshLeadMs = Math.min(refreshLeadMs, ttlMs);
+        this.minProfilingIntervalMs = minProfilingIntervalMs;
+    }
+
+    /**
+     * Gets the session to use.
+     *
+     * @param nowMs the current time
+     * @return the session id, or null if there is no session or it has expired
+     */
+    public synchronized String getSessionId(long nowMs) {
+        if (this.sessionId == null || nowMs - this.sessionStartedAtMs >= this.ttlMs) {
+            return null;
+        }
+
+        return this.sessionId;
+    }
+
+    /**
+     * Determines if profiling should start now, because there is no usable session or it is about to
+     * expire. If it should, this claims the profiling run, so the caller must report its outcome.
+     *
+     * @param nowMs the current time
+     * @return true, if the caller should start profiling
+     */
+    public synchronized boolean tryStartProfiling(long nowMs) {
+        if (this.isProfiling) {
+            return false;
+        }
+
+        if (this.sessionId != null && nowMs - this.sessionStartedAtMs < this.ttlMs - this.refreshLeadMs) {
+            return false;
+        }
+
+        if (this.hasProfiled && nowMs - this.profilingStartedAtMs < this.minProfilingIntervalMs) {
+            return false;
+        }
+
+        this.isProfiling = true;
+        this.hasProfiled = true;
+        this.profilingStartedAtMs = nowMs;
+        return true;
+    }
+
+    /**
+     * Records that a session started, replacing the current one.
+     *
+     * @param sessionId the new session id
+     * @param nowMs the current time
+     */
+    public synchronized void onSessionStarted(String sessionId, long nowMs) {
+        this.sessionId = sessionId;
+        this.sessionStartedAtMs = nowMs;
+    }
+
+    /**
+     * Records that the profiling run ended, successful or not.
+     */
+    public synchronized void onProfilingComplete() {
+        this.isProfiling = false;
+    }
+}
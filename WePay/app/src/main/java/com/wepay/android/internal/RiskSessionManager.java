@@ -0,0 +1,136 @@
+package com.wepay.android.internal;
+
+import android.os.SystemClock;
+
+import com.wepay.android.models.Config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a risk profiling session ready, so that API calls can include its id without waiting for
+ * profiling to start.
+ *
+ * Profiling is started ahead of time, when the SDK starts and when a transaction begins, on the
+ * manager's own thread. getSessionId() never blocks: it hands out the current session, which is
+ * reused for the configured time to live and refreshed in the background shortly before it
+ * expires, as decided by a RiskSessionLifecycle. There is only ever one profiling run at a time.
+ *
+ * If the risk libraries are not included, no session is ever available.
+ */
+public class RiskSessionManager {
+
+    /** The shortest time a session is reused, in milliseconds. */
+    private static final long MIN_SESSION_TTL_MS = 120000;
+
+    /** How long before a session expires a replacement is profiled, in milliseconds. */
+    private static final long REFRESH_LEAD_MS = 60000;
+
+    /** The minimum time between two profiling runs, in milliseconds. */
+    private static final long MIN_PROFILING_INTERVAL_MS = 30000;
+
+    /** How long the idle profiling thread is kept around, in seconds. */
+    private static final int IDLE_THREAD_TIMEOUT_SEC = 60;
+
+    /** The singleton instance. */
+    private static RiskSessionManager instance = null;
+
+    /** Runs profiling. Null if the risk libraries are not included. */
+    private final RiskHelper riskHelper;
+
+    /** The thread that profiling runs on. */
+    private final ExecutorService executor;
+
+    /** Decides when sessions are reused and refreshed. */
+    private final RiskSessionLifecycle lifecycle;
+
+    /**
+     * Gets the manager, creating it on first use.
+     *
+     * @param config the config
+     * @return the manager
+     */
+    public static synchronized RiskSessionManager getInstance(Config config) {
+        if (instance == null) {
+            instance = new RiskSessionManager(config);
+        }
+
+        return instance;
+    }
+
+    private RiskSessionManager(Config config) {
+        RiskHelper helper;
+        try {
+            helper = new RiskHelper(config);
+        } catch (NoClassDefFoundError e) {
+            LogHelper.log("Risk libraries are not included, profiling is disabled");
+            helper = null;
+        }
+        this.riskHelper = helper;
+        this.lifecycle = new RiskSessionLifecycle(Math.max(MIN_SESSION_TTL_MS, config.getRiskSessionTtlMs()), REFRESH_LEAD_MS, MIN_PROFILING_INTERVAL_MS);
+
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_TIMEOUT_SEC, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "wepay-risk");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        this.executor = threadPoolExecutor;
+    }
+
+    /**
+     * Starts profiling a new session in the background, if there is no usable session or it is about
+     * to expire.
+     */
+    public void prepareSession() {
+        if (this.riskHelper == null || !this.lifecycle.tryStartProfiling(SystemClock.elapsedRealtime())) {
+            return;
+        }
+
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                profile();
+            }
+        });
+    }
+
+    /**
+     * Gets the id of the current session, without waiting. If there is no usable session or it is
+     * about to expire, a new one is profiled for later calls.
+     *
+     * @return the session id - may be null if no session is ready
+     */
+    public String getSessionId() {
+        String sessionId = this.lifecycle.getSessionId(SystemClock.elapsedRealtime());
+        this.prepareSession();
+        return sessionId;
+    }
+
+    private void profile() {
+        String newSessionId = this.riskHelper.startProfiling(new Runnable() {
+            @Override
+            public void run() {
+                onProfilingComplete();
+            }
+        });
+
+        if (newSessionId != null) {
+            this.lifecycle.onSessionStarted(newSessionId, SystemClock.elapsedRealtime());
+        } else {
+            LogHelper.log("Risk profiling failed to start");
+            this.onProfilingComplete();
+        }
+    }
+
+    private void onProfilingComplete() {
+        this.lifecycle.onProfilingComplete();
+    }
+}
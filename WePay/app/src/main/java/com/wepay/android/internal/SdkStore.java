@@ -0,0 +1,311 @@
+package com.wepay.android.internal;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SDK's own key-value store, kept in a private file instead of the app's preferences.
+ *
+ * The file is read once, when the store is created, and every read after that is served from
+ * memory. Changes are written in the background: a change made while a write is pending is picked
+ * up by that write, so a burst of changes costs one write. Each write replaces the whole file, by
+ * writing a temporary file and renaming it, so a crash leaves either the old or the new contents.
+ *
+ * The file is a small binary snapshot: a header, then each key with a typed value.
+ */
+public class SdkStore {
+
+    /** The name of the store file, in the app's files directory. */
+    static final String FILE_NAME = "wepay_sdk.store";
+
+    /** The first bytes of a store file. */
+    private static final int MAGIC = 0x57505353;
+
+    /** The version of the file format. */
+    private static final int VERSION = 1;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_STRING_SET = 1;
+
+    /** How long the idle writer thread is kept around, in seconds. */
+    private static final int IDLE_THREAD_TIMEOUT_SEC = 60;
+
+    private static SdkStore instance = null;
+
+    /** The store file. */
+    private final File file;
+
+    /** The values, each a String or a Set of Strings. Guarded by this. */
+    private final Map<String, Object> values = new HashMap<String, Object>();
+
+    /** The thread that the file is written on. */
+    private final ExecutorService writer;
+
+    /** Held while the file is written. */
+    private final Object fileLock = new Object();
+
+    /** A write has been queued that has not yet taken its snapshot. Guarded by this. */
+    private boolean isWriteScheduled = false;
+
+    public static synchronized SdkStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new SdkStore(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+
+        return instance;
+    }
+
+    SdkStore(File file) {
+        this.file = file;
+
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_TIMEOUT_SEC, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "wepay-store");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        this.writer = threadPoolExecutor;
+
+        this.load();
+    }
+
+    public synchronized String getString(String key, String defaultValue) {
+        Object value = this.values.get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    /**
+     * Gets a set of strings.
+     *
+     * @param key the key
+     * @return a copy of the set, or an empty set if there is none
+     */
+    public synchronized Set<String> getStringSet(String key) {
+        Object value = this.values.get(key);
+
+        if (value instanceof Set) {
+            return new HashSet<String>(asStringSet(value));
+        }
+
+        return new HashSet<String>();
+    }
+
+    public synchronized Set<String> getKeys() {
+        return new HashSet<String>(this.values.keySet());
+    }
+
+    /**
+     * Casts a stored set value. Only putStringSet and the file reader store sets, and both store
+     * Sets of Strings.
+     *
+     * @param value a set value from the store
+     * @return the set
+     */
+    @SuppressWarnings("unchecked")
+    private static Set<String> asStringSet(Object value) {
+        return (Set<String>) value;
+    }
+
+    /**
+     * Stores a string, or removes it if it is null. Returns without waiting for the write.
+     *
+     * @param key the key
+     * @param value the value, or null to remove it
+     */
+    public void putString(String key, String value) {
+        synchronized (this) {
+            if (value == null) {
+                this.values.remove(key);
+            } else {
+                this.values.put(key, value);
+            }
+        }
+
+        this.scheduleWrite();
+    }
+
+    /**
+     * Stores a copy of a set of strings, or removes it if it is null. Returns without waiting for the write.
+     *
+     * @param key the key
+     * @param value the set, or null to remove it
+     */
+    public void putStringSet(String key, Set<String> value) {
+        synchronized (this) {
+            if (value == null) {
+                this.values.remove(key);
+            } else {
+                this.values.put(key, new HashSet<String>(value));
+            }
+        }
+
+        this.scheduleWrite();
+    }
+
+    public void remove(String key) {
+        this.putString(key, null);
+    }
+
+    public void clear() {
+        synchronized (this) {
+            this.values.clear();
+        }
+
+        this.scheduleWrite();
+    }
+
+    private void scheduleWrite() {
+        synchronized (this) {
+            if (this.isWriteScheduled) {
+                // the pending write will pick this change up
+                return;
+            }
+
+            this.isWriteScheduled = true;
+        }
+
+        this.writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        });
+    }
+
+    /**
+     * Writes the current values to the file. Only called on the writer thread, or by tests.
+     */
+    void write() {
+        synchronized (this.fileLock) {
+            Map<String, Object> snapshot;
+
+            synchronized (this) {
+                this.isWriteScheduled = false;
+                snapshot = new HashMap<String, Object>(this.values);
+            }
+
+            this.writeSnapshot(snapshot);
+        }
+    }
+
+    private void writeSnapshot(Map<String, Object> snapshot) {
+        File tempFile = new File(this.file.getPath() + ".tmp");
+        FileOutputStream outputStream = null;
+
+        try {
+            outputStream = new FileOutputStream(tempFile);
+            DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(outputStream));
+
+            dataOutputStream.writeInt(MAGIC);
+            dataOutputStream.writeInt(VERSION);
+            dataOutputStream.writeInt(snapshot.size());
+
+            for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+                dataOutputStream.writeUTF(entry.getKey());
+
+                if (entry.getValue() instanceof Set) {
+                    Set<String> set = asStringSet(entry.getValue());
+                    dataOutputStream.writeByte(TYPE_STRING_SET);
+                    dataOutputStream.writeInt(set.size());
+                    for (String item : set) {
+                        dataOutputStream.writeUTF(item);
+                    }
+                } else {
+                    dataOutputStream.writeByte(TYPE_STRING);
+                    dataOutputStream.writeUTF((String) entry.getValue());
+                }
+            }
+
+            dataOutputStream.flush();
+            outputStream.getFD().sync();
+            outputStream.close();
+            outputStream = null;
+
+            if (!tempFile.renameTo(this.file)) {
+                LogHelper.log("Error: Unable to replace SDK store.");
+            }
+        } catch (IOException e) {
+            LogHelper.log("Error: Unable to write SDK store. Failure: " + e.getLocalizedMessage());
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    // nothing more to do
+                }
+            }
+        }
+    }
+
+    private void load() {
+        DataInputStream inputStream = null;
+
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                LogHelper.log("Error: Ignoring SDK store with unknown format.");
+                return;
+            }
+
+            Map<String, Object> loadedValues = new HashMap<String, Object>();
+            int count = inputStream.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String key = inputStream.readUTF();
+                byte type = inputStream.readByte();
+
+                if (type == TYPE_STRING_SET) {
+                    int size = inputStream.readInt();
+                    Set<String> set = new HashSet<String>();
+                    for (int j = 0; j < size; j++) {
+                        set.add(inputStream.readUTF());
+                    }
+                    loadedValues.put(key, set);
+                } else if (type == TYPE_STRING) {
+                    loadedValues.put(key, inputStream.readUTF());
+                } else {
+                    throw new IOException("Unknown value type " + type);
+                }
+            }
+
+            synchronized (this) {
+                this.values.putAll(loadedValues);
+            }
+        } catch (FileNotFoundException e) {
+            // nothing was ever stored
+        } catch (IOException e) {
+            LogHelper.log("Error: Unable to read SDK store. Failure: " + e.getLocalizedMessage());
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    // nothing more to do
+                }
+            }
+        }
+    }
+}
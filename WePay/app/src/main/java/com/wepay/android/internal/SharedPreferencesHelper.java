@@ -4,88 +4,143 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
-import android.util.Log;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Stores the SDK's card reader state in the SdkStore. Reads are served from memory and writes
+ * return without waiting for the disk.
+ *
+ * Earlier versions kept this state in the app's default SharedPreferences. It is moved to the
+ * SdkStore, and removed from there, the first time the store is used.
+ */
 public class SharedPreferencesHelper {
 
     private final static String PREF_KEY_CONFIGURED_DEVICE_SIZE = "PREF_KEY_CONFIGURED_DEVICE_SIZE";
     private final static String PREF_KEY_DEVICE_CONFIG_HASH = "PREF_KEY_DEVICE_CONFIG_HASH_";
     private final static String PREF_KEY_DEVICE_CALIBRATION = "PREF_KEY_DEVICE_CALIBRATION";
     private static final String PREF_KEY_CARDREADER_ID = "PREF_KEY_CARDREADER_ID";
+    private final static String PREF_KEY_READER_CONFIG = "PREF_KEY_READER_CONFIG_";
 
-    public static Set<String> getConfiguredDevices(Context context) {
+    private final static String STORE_KEY_CONFIGURED_DEVICES = "configured_devices";
+    private final static String STORE_KEY_DEVICE_CALIBRATION = "device_calibration";
+    private final static String STORE_KEY_CARDREADER_ID = "card_reader_id";
+    private final static String STORE_KEY_READER_CONFIG = "reader_config_";
+    private final static String STORE_KEY_READER_SERIAL_NUMBER = "reader_serial_number_";
+
+    private static boolean isMigrated = false;
+
+    private static synchronized SdkStore getStore(Context context) {
+        SdkStore store = SdkStore.getInstance(context);
+
+        if (!isMigrated) {
+            isMigrated = true;
+            migrateSharedPreferences(context, store);
+        }
+
+        return store;
+    }
+
+    private static void migrateSharedPreferences(Context context, SdkStore store) {
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-        Set<String> deviceConfigHashes = new HashSet<String>();
-        int size = sp.getInt(PREF_KEY_CONFIGURED_DEVICE_SIZE, 0);
-        String serialNumber;
-        for (int i = 0; i < size; i++) {
-            serialNumber = sp.getString(PREF_KEY_DEVICE_CONFIG_HASH + i, null);
-            if (!TextUtils.isEmpty(serialNumber)) {
-                deviceConfigHashes.add(serialNumber);
+        SharedPreferences.Editor editor = sp.edit();
+        boolean isMigrating = false;
+
+        for (Map.Entry<String, ?> entry : sp.getAll().entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+
+            if (key.equals(PREF_KEY_CONFIGURED_DEVICE_SIZE)) {
+                int size = sp.getInt(PREF_KEY_CONFIGURED_DEVICE_SIZE, 0);
+                Set<String> deviceConfigHashes = new HashSet<String>();
+                for (int i = 0; i < size; i++) {
+                    String deviceConfigHash = sp.getString(PREF_KEY_DEVICE_CONFIG_HASH + i, null);
+                    if (!TextUtils.isEmpty(deviceConfigHash)) {
+                        deviceConfigHashes.add(deviceConfigHash);
+                    }
+                }
+                store.putStringSet(STORE_KEY_CONFIGURED_DEVICES, deviceConfigHashes);
+            } else if (key.equals(PREF_KEY_DEVICE_CALIBRATION) && value instanceof String) {
+                store.putString(STORE_KEY_DEVICE_CALIBRATION, (String) value);
+            } else if (key.equals(PREF_KEY_CARDREADER_ID) && value instanceof String) {
+                store.putString(STORE_KEY_CARDREADER_ID, (String) value);
+            } else if (key.startsWith(PREF_KEY_READER_CONFIG) && value instanceof String) {
+                store.putString(STORE_KEY_READER_CONFIG + key.substring(PREF_KEY_READER_CONFIG.length()), (String) value);
+            } else if (!key.startsWith(PREF_KEY_DEVICE_CONFIG_HASH)) {
+                // not ours
+                continue;
             }
+
+            editor.remove(key);
+            isMigrating = true;
+        }
+
+        if (isMigrating) {
+            LogHelper.log("Moving SDK state from SharedPreferences to the SDK store");
+            editor.apply();
         }
-        return deviceConfigHashes;
+    }
+
+    public static Set<String> getConfiguredDevices(Context context) {
+        return getStore(context).getStringSet(STORE_KEY_CONFIGURED_DEVICES);
     }
 
     public static boolean saveConfiguredDevices(Context context, Set<String> deviceConfigHash) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putInt(PREF_KEY_CONFIGURED_DEVICE_SIZE, deviceConfigHash.size());
-        int i = 0;
-        for (String str : deviceConfigHash) {
-            editor.remove(PREF_KEY_DEVICE_CONFIG_HASH + i);
-            editor.putString(PREF_KEY_DEVICE_CONFIG_HASH + i, str);
-            i++;
-        }
-        return editor.commit();
+        getStore(context).putStringSet(STORE_KEY_CONFIGURED_DEVICES, deviceConfigHash);
+        return true;
     }
 
     public static boolean clearConfiguredDevices(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = sp.edit();
-        editor.remove(PREF_KEY_CONFIGURED_DEVICE_SIZE);
-        editor.remove(PREF_KEY_DEVICE_CONFIG_HASH);
-        return editor.commit();
+        SdkStore store = getStore(context);
+        store.remove(STORE_KEY_CONFIGURED_DEVICES);
+        for (String key : store.getKeys()) {
+            if (key.startsWith(STORE_KEY_READER_CONFIG) || key.startsWith(STORE_KEY_READER_SERIAL_NUMBER)) {
+                store.remove(key);
+            }
+        }
+        return true;
+    }
+
+    public static String getReaderConfig(Context context, String serialNumber) {
+        return getStore(context).getString(STORE_KEY_READER_CONFIG + serialNumber, null);
+    }
+
+    public static boolean saveReaderConfig(Context context, String serialNumber, String readerConfigJSON) {
+        getStore(context).putString(STORE_KEY_READER_CONFIG + serialNumber, readerConfigJSON);
+        return true;
+    }
+
+    public static String getReaderSerialNumber(Context context, String deviceName) {
+        return getStore(context).getString(STORE_KEY_READER_SERIAL_NUMBER + deviceName, null);
+    }
+
+    public static boolean saveReaderSerialNumber(Context context, String deviceName, String serialNumber) {
+        getStore(context).putString(STORE_KEY_READER_SERIAL_NUMBER + deviceName, serialNumber);
+        return true;
     }
 
     public static String getCalibration(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-        return sp.getString(PREF_KEY_DEVICE_CALIBRATION, null);
+        return getStore(context).getString(STORE_KEY_DEVICE_CALIBRATION, null);
     }
 
     public static boolean saveCalibration(Context context, String calibrationJSON) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putString(PREF_KEY_DEVICE_CALIBRATION, calibrationJSON);
-        return editor.commit();
+        getStore(context).putString(STORE_KEY_DEVICE_CALIBRATION, calibrationJSON);
+        return true;
     }
 
     public static boolean clearCalibration(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = sp.edit();
-        editor.remove(PREF_KEY_DEVICE_CALIBRATION);
-        return editor.commit();
+        getStore(context).remove(STORE_KEY_DEVICE_CALIBRATION);
+        return true;
     }
 
     public static void rememberCardReader(String identifier, Context context) {
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = preferences.edit();
-
-        editor.putString(PREF_KEY_CARDREADER_ID, identifier);
-
-        if (!editor.commit()) {
-            Log.e("wepay_sdk", "Unable to write card reader with identifier " + identifier + " to disk.");
-        }
+        getStore(context).putString(STORE_KEY_CARDREADER_ID, identifier);
     }
 
     public static String getRememberedCardReader(Context context) {
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
-        String rememberedCardReader = preferences.getString(PREF_KEY_CARDREADER_ID, null);
-
-        return rememberedCardReader;
+        return getStore(context).getString(STORE_KEY_CARDREADER_ID, null);
     }
 
     public static void forgetRememberedCardReader(Context context) {
@@ -0,0 +1,288 @@
+package com.wepay.android.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.Base64;
+import android.util.Base64OutputStream;
+
+import com.wepay.android.enums.SignatureStatus;
+import com.wepay.android.models.SignatureStrokes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scales and encodes signature images on a background thread.
+ *
+ * The image is drawn into a scaled bitmap that is kept for the next signature of the same size, and
+ * compressed straight into a Base64OutputStream that writes into a buffer that is also kept, so that
+ * storing a signature makes no other copy of it. An image that is already the right size is
+ * compressed as it is.
+ *
+ * A signature recorded as SignatureStrokes is rendered straight into the pooled bitmap at the
+ * stored size, so no full-size image of it is ever made.
+ *
+ * Signatures are encoded one at a time, and the pooled bitmap and buffer are only touched on the
+ * encoder's thread.
+ */
+public class SignatureEncoder {
+
+    /** The quality passed to the compressor. Lossless formats ignore it. */
+    private static final int COMPRESS_QUALITY = 100;
+
+    /** The initial size of the output buffer, enough for a typical signature. */
+    private static final int INITIAL_BUFFER_SIZE = 32 * 1024;
+
+    /** The largest output buffer kept for reuse. Larger buffers are dropped after use. */
+    private static final int MAX_POOLED_BUFFER_SIZE = 512 * 1024;
+
+    /** How long the idle encoder thread is kept around, in seconds. */
+    private static final int IDLE_THREAD_TIMEOUT_SEC = 60;
+
+    /** The thread that signatures are encoded on. */
+    private final ExecutorService executor;
+
+    /** The scaled bitmap kept for reuse. May be null. */
+    private Bitmap pooledBitmap = null;
+
+    /** The output buffer kept for reuse. May be null. */
+    private PooledOutputStream pooledBuffer = null;
+
+    /** The width of rendered strokes, in pixels of the stored image. */
+    private static final float STROKE_WIDTH_PX = 3;
+
+    private final Paint scalePaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
+
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    public SignatureEncoder() {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_TIMEOUT_SEC, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "wepay-signature");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        this.executor = threadPoolExecutor;
+
+        this.strokePaint.setColor(Color.BLACK);
+        this.strokePaint.setStyle(Paint.Style.STROKE);
+        this.strokePaint.setStrokeWidth(STROKE_WIDTH_PX);
+        this.strokePaint.setStrokeCap(Paint.Cap.ROUND);
+        this.strokePaint.setStrokeJoin(Paint.Join.ROUND);
+    }
+
+    /**
+     * Scales and encodes an image in the background. The image must not be recycled until the
+     * listener has been called.
+     *
+     * @param image the image
+     * @param width the width to scale to
+     * @param height the height to scale to
+     * @param format the compression format
+     * @param listener the listener, called on the encoder's thread
+     */
+    public void encode(final Bitmap image, final int width, final int height, final Bitmap.CompressFormat format, final Listener listener) {
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    encodeNow(image, width, height, format, listener);
+                } catch (Exception e) {
+                    listener.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Renders and encodes a stroke signature in the background.
+     *
+     * @param strokes the signature
+     * @param width the width to render at
+     * @param height the height to render at
+     * @param format the compression format
+     * @param listener the listener, called on the encoder's thread
+     */
+    public void encode(final SignatureStrokes strokes, final int width, final int height, final Bitmap.CompressFormat format, final Listener listener) {
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    listener.onProgress(SignatureStatus.SCALING);
+                    compress(render(strokes, width, height), format, listener);
+                } catch (Exception e) {
+                    listener.onError(e);
+                }
+            }
+        });
+    }
+
+    private void encodeNow(Bitmap image, int width, int height, Bitmap.CompressFormat format, Listener listener) throws IOException {
+        Bitmap scaledImage = image;
+
+        if (image.getWidth() != width || image.getHeight() != height) {
+            listener.onProgress(SignatureStatus.SCALING);
+            scaledImage = this.scale(image, width, height);
+        }
+
+        this.compress(scaledImage, format, listener);
+    }
+
+    private void compress(Bitmap scaledImage, Bitmap.CompressFormat format, Listener listener) throws IOException {
+        listener.onProgress(SignatureStatus.ENCODING);
+
+        PooledOutputStream buffer = this.pooledBuffer;
+        if (buffer == null) {
+            buffer = new PooledOutputStream(INITIAL_BUFFER_SIZE);
+        }
+        buffer.reset();
+
+        // the PNG bytes go straight into the base64 encoder, which writes into the pooled buffer
+        OutputStream base64OutputStream = new Base64OutputStream(buffer, Base64.NO_WRAP);
+        try {
+            if (!scaledImage.compress(format, COMPRESS_QUALITY, base64OutputStream)) {
+                throw new IOException("Unable to compress signature image");
+            }
+        } finally {
+            base64OutputStream.close();
+        }
+
+        try {
+            listener.onEncoded(buffer.getBuffer(), buffer.size());
+        } finally {
+            this.pooledBuffer = (buffer.getBuffer().length <= MAX_POOLED_BUFFER_SIZE) ? buffer : null;
+        }
+    }
+
+    /**
+     * Draws the image into the pooled bitmap, replacing it if it has a different size.
+     *
+     * @param image the image
+     * @param width the width to scale to
+     * @param height the height to scale to
+     * @return the scaled image
+     */
+    private Bitmap scale(Bitmap image, int width, int height) {
+        Bitmap bitmap = this.obtainBitmap(width, height, Color.TRANSPARENT);
+
+        Matrix matrix = new Matrix();
+        matrix.setScale(width * 1.0f / image.getWidth(), height * 1.0f / image.getHeight());
+        new Canvas(bitmap).drawBitmap(image, matrix, this.scalePaint);
+
+        return bitmap;
+    }
+
+    /**
+     * Draws a stroke signature into the pooled bitmap, as black strokes on white.
+     *
+     * @param strokes the signature
+     * @param width the width to render at
+     * @param height the height to render at
+     * @return the rendered image
+     */
+    private Bitmap render(SignatureStrokes strokes, int width, int height) {
+        Bitmap bitmap = this.obtainBitmap(width, height, Color.WHITE);
+
+        float scaleX = width * 1.0f / strokes.getWidth();
+        float scaleY = height * 1.0f / strokes.getHeight();
+        Canvas canvas = new Canvas(bitmap);
+
+        for (int[] stroke : strokes.getStrokes()) {
+            if (stroke.length == 2) {
+                // a tap leaves a dot
+                canvas.drawPoint(stroke[0] * scaleX, stroke[1] * scaleY, this.strokePaint);
+                continue;
+            }
+
+            Path path = new Path();
+            for (int i = 0; i + 1 < stroke.length; i += 2) {
+                if (i == 0) {
+                    path.moveTo(stroke[i] * scaleX, stroke[i + 1] * scaleY);
+                } else {
+                    path.lineTo(stroke[i] * scaleX, stroke[i + 1] * scaleY);
+                }
+            }
+            canvas.drawPath(path, this.strokePaint);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Gets the pooled bitmap filled with a color, replacing it if it has a different size.
+     *
+     * @param width the width
+     * @param height the height
+     * @param color the fill color
+     * @return the bitmap
+     */
+    private Bitmap obtainBitmap(int width, int height, int color) {
+        Bitmap bitmap = this.pooledBitmap;
+
+        if (bitmap == null || bitmap.isRecycled() || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            this.pooledBitmap = bitmap;
+        }
+
+        bitmap.eraseColor(color);
+        return bitmap;
+    }
+
+    /**
+     * A ByteArrayOutputStream whose buffer can be read without copying it.
+     */
+    private static class PooledOutputStream extends ByteArrayOutputStream {
+        PooledOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] getBuffer() {
+            return this.buf;
+        }
+    }
+
+    /**
+     * Receives the steps and result of encoding a signature.
+     */
+    public interface Listener {
+        /**
+         * Gets called when a step starts.
+         *
+         * @param status the step
+         */
+        void onProgress(SignatureStatus status);
+
+        /**
+         * Gets called with the encoded image. The buffer is reused once this returns, so it must
+         * be consumed before then.
+         *
+         * @param base64 the buffer holding the base64 encoded image
+         * @param length the number of bytes of the encoded image in the buffer
+         */
+        void onEncoded(byte[] base64, int length);
+
+        /**
+         * Gets called if the image could not be encoded.
+         *
+         * @param exception the cause
+         */
+        void onError(Exception exception);
+    }
+}
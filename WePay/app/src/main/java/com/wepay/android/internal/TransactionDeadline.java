@@ -0,0 +1,87 @@
+package com.wepay.android.internal;
+
+import android.os.SystemClock;
+
+/**
+ * The time budget of a whole card transaction, from the moment it is started to the moment the
+ * authorization result is known. Every phase of the transaction - finding the reader, waiting for
+ * the card and calling the API - takes what it needs from the same budget, and gives up once it is
+ * spent, so that the worst case of the phases together cannot exceed it.
+ *
+ * Times are in milliseconds since boot.
+ */
+public class TransactionDeadline {
+
+    /** A deadline that never expires. */
+    public static final TransactionDeadline NONE = new TransactionDeadline(0, 0);
+
+    /** The budget in milliseconds, or 0 if unlimited. */
+    private final long budgetMs;
+
+    /** The time the transaction was started. */
+    private final long startTimeMs;
+
+    /**
+     * Starts a deadline now.
+     *
+     * @param budgetMs the budget in milliseconds, or 0 for no deadline
+     * @return the deadline
+     */
+    public static TransactionDeadline start(long budgetMs) {
+        if (budgetMs <= 0) {
+            return NONE;
+        }
+
+        return new TransactionDeadline(budgetMs, SystemClock.elapsedRealtime());
+    }
+
+    public TransactionDeadline(long budgetMs, long startTimeMs) {
+        this.budgetMs = Math.max(0, budgetMs);
+        this.startTimeMs = startTimeMs;
+    }
+
+    public boolean isUnlimited() {
+        return this.budgetMs == 0;
+    }
+
+    public long getRemainingMs() {
+        return this.getRemainingMs(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Gets what is left of the budget.
+     *
+     * @param nowMs the current time
+     * @return the remaining time in milliseconds, 0 if expired, or Long.MAX_VALUE if unlimited
+     */
+    public long getRemainingMs(long nowMs) {
+        if (this.isUnlimited()) {
+            return Long.MAX_VALUE;
+        }
+
+        return Math.max(0, this.startTimeMs + this.budgetMs - nowMs);
+    }
+
+    public boolean isExpired() {
+        return this.isExpired(SystemClock.elapsedRealtime());
+    }
+
+    public boolean isExpired(long nowMs) {
+        return this.getRemainingMs(nowMs) == 0;
+    }
+
+    public long clampMs(long timeoutMs) {
+        return this.clampMs(timeoutMs, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Limits a phase's own timeout to what is left of the budget.
+     *
+     * @param timeoutMs the phase's timeout in milliseconds
+     * @param nowMs the current time
+     * @return the smaller of the timeout and the remaining time
+     */
+    public long clampMs(long timeoutMs, long nowMs) {
+        return Math.min(timeoutMs, this.getRemainingMs(nowMs));
+    }
+}
@@ -1,28 +1,48 @@
 package com.wepay.android.internal;
 
-import android.content.Context;
-
-import com.android.volley.AuthFailureError;
-import com.android.volley.DefaultRetryPolicy;
-import com.android.volley.NetworkResponse;
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
-import com.android.volley.toolbox.HttpHeaderParser;
-import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
-import com.google.gson.Gson;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.google.gson.stream.JsonReader;
+import com.wepay.android.internal.network.AdaptiveTimeoutPolicy;
+import com.wepay.android.internal.network.Base64FieldRequestBody;
+import com.wepay.android.internal.network.CircuitBreaker;
+import com.wepay.android.internal.network.CreditCardResponse;
+import com.wepay.android.internal.network.GzipRequestBody;
+import com.wepay.android.internal.network.HttpRequest;
+import com.wepay.android.internal.network.HttpResponse;
+import com.wepay.android.internal.network.HttpTransport;
+import com.wepay.android.internal.network.JsonRequestBody;
+import com.wepay.android.internal.network.LatencyHistogram;
+import com.wepay.android.internal.network.RateLimiter;
+import com.wepay.android.internal.network.RequestBody;
+import com.wepay.android.internal.network.RequestCompression;
+import com.wepay.android.internal.network.RequestPriority;
+import com.wepay.android.internal.network.ResponseDecoder;
+import com.wepay.android.internal.network.RetryPolicy;
+import com.wepay.android.internal.network.SignatureResponse;
+import com.wepay.android.internal.network.UrlConnectionTransport;
+import com.wepay.android.NetworkTimingListener;
+import com.wepay.android.enums.ApiHealth;
 import com.wepay.android.models.Config;
 import com.wepay.android.models.Error;
 import com.wepay.android.models.MockConfig;
+import com.wepay.android.models.NetworkTiming;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The Class WepayClient.
@@ -40,11 +60,44 @@ public class WepayClient {
     /** The Constant USER_AGENT. */
     private static final String USER_AGENT = "WePay Android SDK v3.0.1";
 
-    /** The request queue */
-    private static RequestQueue requestQueue = null;
+    /** The transport that all API calls go through */
+    private static HttpTransport transport = null;
 
-    /** The client-side API call timeout duration in milliseconds */
-    private static final int REQUEST_TIMEOUT_MS = 40000;
+    /** Limits the rate of interactive calls, null if there is no limit. */
+    private static RateLimiter interactiveRateLimiter = null;
+
+    /** The rate the interactive rate limiter was created for, 0 if there is no limit. */
+    private static int interactiveRateLimit = 0;
+
+    /** Limits the rate of deferred calls, null if there is no limit. */
+    private static RateLimiter deferredRateLimiter = null;
+
+    /** The rate the deferred rate limiter was created for, 0 if there is no limit. */
+    private static int deferredRateLimit = 0;
+
+    /** The endpoints whose request bodies are large enough to be worth gzipping */
+    private static final Set<String> COMPRESSED_ENDPOINTS = new HashSet<>(Arrays.asList("checkout/signature/create"));
+
+    /** The upper bound of the first retry delay in milliseconds */
+    private static final long RETRY_BASE_DELAY_MS = 500;
+
+    /** The upper bound of any retry delay in milliseconds */
+    private static final long RETRY_MAX_DELAY_MS = 4000;
+
+    /** The number of latencies an endpoint needs before its calls are hedged */
+    private static final int HEDGE_MIN_SAMPLES = 20;
+
+    /** The minimum delay before a hedged copy is sent in milliseconds */
+    private static final long HEDGE_MIN_DELAY_MS = 250;
+
+    /** The minimum time between two warmups, in milliseconds. Idle connections stay pooled for longer than this. */
+    private static final long PREWARM_INTERVAL_MS = 60000;
+
+    /** The time of the last warmup, in milliseconds since boot */
+    private static long lastPrewarmTimeMs = 0;
+
+    /** The network timing listeners, by endpoint */
+    private static final Map<String, List<NetworkTimingListener>> timingListeners = new HashMap<>();
 
     /**
      * Credit card tokenization, for card information form manual input.
@@ -53,54 +106,155 @@ public class WepayClient {
      * @param params the params
      * @param responseHandler the response handler
      */
-    public static void creditCardCreate(Config config, Map<String, Object> params, ResponseHandler responseHandler) {
-        post(config, "credit_card/create", params, responseHandler);
+    public static void creditCardCreate(Config config, Map<String, Object> params, ResponseHandler<CreditCardResponse> responseHandler) {
+        post(config, "credit_card/create", params, CreditCardResponse.DECODER, getTokenizationRetryPolicy(config), getHedgeDelayMs(config, "credit_card/create"), TransactionDeadline.NONE, null, null, responseHandler);
     }
 
     /**
-     * Credit card tokenization, for swiped card.
+     * Credit card tokenization, for swiped card. Cancelling the token abandons the call, including
+     * any attempt in flight.
      *
      * @param config the config
      * @param params the params
+     * @param deadline the deadline of the card transaction
+     * @param cancellationToken the cancellation token, may be null
      * @param responseHandler the response handler
      */
-    public static void creditCardCreateSwipe(Config config, Map<String, Object> params, ResponseHandler responseHandler) {
-        post(config, "credit_card/create_swipe", params, responseHandler);
+    public static void creditCardCreateSwipe(Config config, Map<String, Object> params, TransactionDeadline deadline, CancellationToken cancellationToken, ResponseHandler<CreditCardResponse> responseHandler) {
+        post(config, "credit_card/create_swipe", params, CreditCardResponse.DECODER, getTokenizationRetryPolicy(config), getHedgeDelayMs(config, "credit_card/create_swipe"), deadline, cancellationToken, null, responseHandler);
     }
 
     /**
-     * Credit card tokenization, for dipped card (EMV).
+     * Credit card tokenization, for dipped card (EMV). Cancelling the token or reaching the deadline
+     * abandons the call, but an attempt in flight may still authorize the card, so it is allowed to
+     * finish and a success goes to the abandoned response handler.
      *
      * @param config the config
      * @param params the params
+     * @param deadline the deadline of the card transaction
+     * @param cancellationToken the cancellation token, may be null
+     * @param abandonedResponseHandler the handler for a success that arrives after the call was abandoned, may be null
      * @param responseHandler the response handler
      */
-    public static void creditCardCreateEMV(Config config, Map<String, Object> params, ResponseHandler responseHandler) {
-        post(config, "credit_card/create_emv", params, responseHandler);
+    public static void creditCardCreateEMV(Config config, Map<String, Object> params, TransactionDeadline deadline, CancellationToken cancellationToken, ResponseHandler<CreditCardResponse> abandonedResponseHandler, ResponseHandler<CreditCardResponse> responseHandler) {
+        post(config, "credit_card/create_emv", params, CreditCardResponse.DECODER, getTokenizationRetryPolicy(config), getHedgeDelayMs(config, "credit_card/create_emv"), deadline, cancellationToken, abandonedResponseHandler, responseHandler);
     }
 
     /**
-     * Credit card authorization reversal.
+     * Credit card authorization reversal. The reversal is queued in the outbox and retried until it
+     * is delivered, so no response is returned.
      *
      * @param config the config
      * @param params the params
-     * @param responseHandler the response handler
      */
-    public static void creditCardAuthReverse(Config config, Map<String, Object> params, ResponseHandler responseHandler) {
-        post(config, "credit_card/auth_reverse", params, responseHandler);
+    public static void creditCardAuthReverse(Config config, Map<String, Object> params) {
+        postDeferred(config, "credit_card/auth_reverse", params, ResponseDecoder.IGNORE_BODY, null);
     }
 
     /**
-     * Store signature.
+     * Store signature. The upload is queued in the outbox and retried until it is delivered. The
+     * response handler receives the result of the first attempt, or is told that the upload was
+     * queued if it is parked or its first attempt failed and will be retried. The image is copied
+     * into the queued request before this returns, so its buffer may be reused afterwards.
      *
      * @param config the config
-     * @param params the params
+     * @param params the params, other than the image
+     * @param base64Image the buffer holding the base64 encoded image
+     * @param base64ImageLength the number of bytes of the encoded image in the buffer
      * @param responseHandler the response handler
      */
-    public static void checkoutSignatureCreate(Config config, Map<String, Object> params, ResponseHandler responseHandler) {
-        post(config, "checkout/signature/create", params, responseHandler);
+    public static void checkoutSignatureCreate(Config config, Map<String, Object> params, byte[] base64Image, int base64ImageLength, final QueuedResponseHandler<SignatureResponse> responseHandler) {
+        final String url = "checkout/signature/create";
+
+        if (isMockClient(config)) {
+            final Config mockConfig = config;
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    mockResponse(mockConfig, url, SignatureResponse.DECODER, responseHandler);
+                }
+            });
+        } else {
+            params.put("client_id", config.getClientId());
+            RequestBody body = new Base64FieldRequestBody(params, "base64_img_data", base64Image, base64ImageLength);
+            ApiOutbox.getInstance(config).enqueue(url, getAbsoluteUrl(config, url), body, SignatureResponse.DECODER, responseHandler);
+        }
+    }
+
+    /**
+     * Gets the health of an endpoint, as seen by the SDK's recent calls to it. An endpoint that has
+     * not been called is reported as available.
+     *
+     * @param config the config
+     * @param endpoint the endpoint
+     * @return the health of the endpoint
+     */
+    public static ApiHealth getApiHealth(Config config, String endpoint) {
+        if (!ConnectivityMonitor.getInstance(config.getContext()).isConnected()) {
+            return ApiHealth.OFFLINE;
+        }
+
+        // looking up the health of an endpoint must not start tracking it
+        CircuitBreaker circuitBreaker = CircuitBreaker.findForEndpoint(endpoint);
+        if (circuitBreaker == null) {
+            return ApiHealth.AVAILABLE;
+        }
+
+        switch (circuitBreaker.getState(SystemClock.elapsedRealtime())) {
+            case OPEN:
+                return ApiHealth.UNAVAILABLE;
+            case HALF_OPEN:
+                return ApiHealth.RECOVERING;
+            default:
+                return ApiHealth.AVAILABLE;
+        }
     }
 
+    /**
+     * Warms up the connection to WePay's servers in the background, so that the next API call does
+     * not pay for creating the transport, resolving the host, or the TCP and TLS handshakes.
+     * Calls made within PREWARM_INTERVAL_MS of the previous warmup are ignored.
+     *
+     * @param config the config
+     */
+    public static void prewarm(Config config) {
+        MockConfig mockConfig = config.getMockConfig();
+        if (mockConfig != null && mockConfig.isUseMockWepayClient()) {
+            return;
+        }
+
+        if (!ConnectivityMonitor.getInstance(config.getContext()).isConnected()) {
+            return;
+        }
+
+        synchronized (WepayClient.class) {
+            long now = SystemClock.elapsedRealtime();
+            if (lastPrewarmTimeMs != 0 && now - lastPrewarmTimeMs < PREWARM_INTERVAL_MS) {
+                return;
+            }
+            lastPrewarmTimeMs = now;
+        }
+
+        // A HEAD request opens a pooled connection without transferring a body.
+        HttpRequest request = newRequest("", getAbsoluteUrl(config, ""), HttpRequest.METHOD_HEAD, config.getApiTimeoutFloorMs());
+
+        getTransport(config).enqueue(request, new HttpTransport.Callback() {
+            @Override
+            public void onResponse(HttpResponse response) {
+                LogHelper.log("Connection warmed up, status: " + response.getStatusCode());
+            }
+
+            @Override
+            public void onFailure(IOException exception) {
+                LogHelper.log("Unable to warm up connection. Failure: " + exception.getLocalizedMessage());
+
+                // allow the next warmup to try again
+                synchronized (WepayClient.class) {
+                    lastPrewarmTimeMs = 0;
+                }
+            }
+        });
+    }
 
     /**
      * Get the request.
@@ -108,10 +262,11 @@ public class WepayClient {
      * @param config the config
      * @param url the url
      * @param params the params
+     * @param decoder the response decoder
      * @param responseHandler the response handler
      */
-    private static void get(Config config, String url, Map<String, Object> params, ResponseHandler responseHandler) {
-        makeRequest(url, Request.Method.GET, config, params, responseHandler);
+    private static <T> void get(Config config, String url, Map<String, Object> params, ResponseDecoder<T> decoder, ResponseHandler<T> responseHandler) {
+        makeRequest(url, HttpRequest.METHOD_GET, config, params, decoder, RetryPolicy.NO_RETRY, -1, TransactionDeadline.NONE, null, null, responseHandler);
     }
 
     /**
@@ -120,149 +275,380 @@ public class WepayClient {
      * @param config the config
      * @param url the url
      * @param params the params
+     * @param decoder the response decoder
+     * @param retryPolicy the retry policy
+     * @param hedgeDelayMs the delay before a hedged copy is sent, or -1 to never hedge
+     * @param deadline the deadline of the transaction the call belongs to
+     * @param cancellationToken the token that abandons the call, may be null
+     * @param abandonedResponseHandler the handler for a success that arrives after cancellation, or null to cancel attempts in flight
      * @param responseHandler the response handler
      */
-    private static void post(Config config, String url, Map<String, Object> params, final ResponseHandler responseHandler) {
+    private static <T> void post(Config config, String url, Map<String, Object> params, ResponseDecoder<T> decoder, RetryPolicy retryPolicy, long hedgeDelayMs,
+                                 TransactionDeadline deadline, CancellationToken cancellationToken, ResponseHandler<T> abandonedResponseHandler, final ResponseHandler<T> responseHandler) {
+        if (cancellationToken != null && cancellationToken.isCancelled()) {
+            LogHelper.log("Call to " + url + " was cancelled before it was sent");
+        } else if (isMockClient(config)) {
+            mockResponse(config, url, decoder, responseHandler);
+        } else {
+            makeRequest(url, HttpRequest.METHOD_POST, config, params, decoder, retryPolicy, hedgeDelayMs, deadline, cancellationToken, abandonedResponseHandler, responseHandler);
+        }
+    }
 
+    /**
+     * Post the request through the outbox. The request is persisted before it is sent, and is retried
+     * in the background until the server accepts or rejects it, even across process restarts.
+     * While the device is offline, the request is parked until connectivity returns.
+     * The response handler only receives the result of the first attempt, or is told that the
+     * request was queued if it cannot be completed right away, and may be null.
+     *
+     * @param config the config
+     * @param url the url
+     * @param params the params
+     * @param decoder the response decoder
+     * @param responseHandler the response handler
+     */
+    private static <T> void postDeferred(Config config, String url, Map<String, Object> params, ResponseDecoder<T> decoder, final QueuedResponseHandler<T> responseHandler) {
+        if (isMockClient(config)) {
+            if (responseHandler != null) {
+                mockResponse(config, url, decoder, responseHandler);
+            }
+        } else {
+            params.put("client_id", config.getClientId());
+            ApiOutbox.getInstance(config).enqueue(url, getAbsoluteUrl(config, url), params, decoder, responseHandler);
+        }
+    }
+
+    private static boolean isMockClient(Config config) {
         MockConfig mockConfig = config.getMockConfig();
-        if (mockConfig != null && mockConfig.isUseMockWepayClient()) {
-            JSONObject response = new JSONObject();
-            try {
-                if ("credit_card/create".equals(url)) {
-                    if (mockConfig.isCardTokenizationFailure()) {
-                        responseHandler.onFailure(500, null, response);
-                    } else {
-                        response.put("credit_card_id", "1234567890");
-                    }
-                } else if ("credit_card/create_swipe".equals(url)) {
-                    if (mockConfig.isCardTokenizationFailure()) {
-                        responseHandler.onFailure(500, null, response);
-                    } else {
-                        response.put("credit_card_id", "1234567890");
-                    }
-                } else if ("credit_card/create_emv".equals(url)) {
-                    if (mockConfig.isEMVAuthFailure()) {
-                        responseHandler.onFailure(500, null, response);
-                    }
-                } else if ("checkout/signature/create".equals(url)) {
-                    response.put("signature_url", "<signature url>");
+        return mockConfig != null && mockConfig.isUseMockWepayClient();
+    }
+
+    private static <T> void mockResponse(Config config, String url, ResponseDecoder<T> decoder, final ResponseHandler<T> responseHandler) {
+        MockConfig mockConfig = config.getMockConfig();
+        JSONObject response = new JSONObject();
+        try {
+            if ("credit_card/create".equals(url)) {
+                if (mockConfig.isCardTokenizationFailure()) {
+                    responseHandler.onFailure(500, null, response);
+                } else {
+                    response.put("credit_card_id", "1234567890");
+                }
+            } else if ("credit_card/create_swipe".equals(url)) {
+                if (mockConfig.isCardTokenizationFailure()) {
+                    responseHandler.onFailure(500, null, response);
+                } else {
+                    response.put("credit_card_id", "1234567890");
                 }
-            } catch (JSONException e) {
-                e.printStackTrace();
+            } else if ("credit_card/create_emv".equals(url)) {
+                if (mockConfig.isEMVAuthFailure()) {
+                    responseHandler.onFailure(500, null, response);
+                }
+            } else if ("checkout/signature/create".equals(url)) {
+                response.put("signature_url", "<signature url>");
             }
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
 
-            responseHandler.onSuccess(200, response);
-        } else {
-            makeRequest(url, Request.Method.POST, config, params, responseHandler);
+        try {
+            responseHandler.onSuccess(200, decoder.decode(new JsonReader(new StringReader(response.toString()))));
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
-    private static void makeRequest(String url, int method, Config config, Map<String, Object> params, final ResponseHandler responseHandler) {
+    private static <T> void makeRequest(String url, String method, Config config, Map<String, Object> params, ResponseDecoder<T> decoder, RetryPolicy retryPolicy, long hedgeDelayMs,
+                                        TransactionDeadline deadline, final CancellationToken cancellationToken, ResponseHandler<T> abandonedResponseHandler, final ResponseHandler<T> responseHandler) {
+        if (!ConnectivityMonitor.getInstance(config.getContext()).isConnected()) {
+            // There is no point in waiting for a timeout, so that the caller can fall back right away.
+            LogHelper.log("Call to " + url + " failed, device is offline");
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancellationToken == null || !cancellationToken.isCancelled()) {
+                        deliverFailure(new IOException("No network connection"), responseHandler);
+                    }
+                }
+            });
+            return;
+        }
+
         String fullUrl = getAbsoluteUrl(config, url);
-        JSONObject requestBody = null;
 
-        if (requestQueue == null) {
-            init(config.getContext());
+        params.put("client_id", config.getClientId());
+
+        // The params are encoded straight into the connection's output stream on the network thread.
+        // A cardholder is waiting on every call made here, so they go ahead of background traffic.
+        ApiCall<T> call = new ApiCall<>(getTransport(config), url, fullUrl, method, new JsonRequestBody(params), decoder, retryPolicy, responseHandler)
+                .setPriority(RequestPriority.CRITICAL)
+                .setHedgeDelayMs(hedgeDelayMs)
+                .setCompressionEnabled(config.isRequestCompressionEnabled())
+                .setTimeoutPolicy(new AdaptiveTimeoutPolicy(config.getApiTimeoutFloorMs(), config.getApiTimeoutCeilingMs()))
+                .setCircuitBreaker(CircuitBreaker.forEndpoint(url))
+                .setDeadline(deadline)
+                .setRateLimiter(getRateLimiter(config, RequestPriority.CRITICAL))
+                .setCancellationToken(cancellationToken, abandonedResponseHandler);
+        call.start();
+    }
+
+    /**
+     * Gets the delay after which a tokenization call is hedged: the configured percentile of the
+     * endpoint's recent latencies. Hedging waits until enough latencies have been recorded.
+     *
+     * @param config the config
+     * @param url the endpoint
+     * @return the delay in milliseconds, or -1 if the call should not be hedged
+     */
+    static long getHedgeDelayMs(Config config, String url) {
+        if (!config.isHedgingEnabled()) {
+            return -1;
         }
 
-        params.put("client_id", config.getClientId());
+        LatencyHistogram histogram = LatencyHistogram.forEndpoint(url);
+        if (histogram.getSampleCount() < HEDGE_MIN_SAMPLES) {
+            return -1;
+        }
+
+        return Math.max(HEDGE_MIN_DELAY_MS, histogram.getPercentile(config.getHedgingPercentile()));
+    }
+
+    /**
+     * Gets the retry policy for the credit_card/create* endpoints. These calls carry an idempotency
+     * key, which keeps a retry from creating a second token or authorization only if the server
+     * deduplicates by it, so retries are off unless the config turns them on.
+     *
+     * @param config the config
+     * @return the retry policy
+     */
+    private static RetryPolicy getTokenizationRetryPolicy(Config config) {
+        return new RetryPolicy(config.getTokenizationRetryCount(), RETRY_BASE_DELAY_MS, RETRY_MAX_DELAY_MS);
+    }
+
+    /**
+     * Creates a request with the headers that all API calls share.
+     *
+     * @param endpoint the API endpoint
+     * @param fullUrl the absolute url
+     * @param method the HTTP method
+     * @param timeoutMs the connect and read timeout in milliseconds
+     * @return the request
+     */
+    static HttpRequest newRequest(String endpoint, String fullUrl, String method, int timeoutMs) {
+        return new HttpRequest(endpoint, fullUrl, method)
+                .setHeader("User-Agent", USER_AGENT)
+                .setHeader("Api-Version", WEPAY_API_VERSION)
+                .setHeader("Accept-Encoding", GzipRequestBody.CONTENT_ENCODING_GZIP)
+                .setTimeoutMs(timeoutMs);
+    }
+
+    /**
+     * Sets the body of a request, gzipped if compression is enabled, the endpoint's bodies are worth
+     * compressing and the endpoint has not rejected a gzipped body before.
+     *
+     * @param request the request
+     * @param body the body
+     * @param compressionEnabled true, if the config enables request compression
+     * @return the request
+     */
+    static HttpRequest setBody(HttpRequest request, RequestBody body, boolean compressionEnabled) {
+        String endpoint = request.getEndpoint();
+
+        if (compressionEnabled && COMPRESSED_ENDPOINTS.contains(endpoint) && RequestCompression.isSupported(endpoint)) {
+            return request.setHeader("Content-Encoding", GzipRequestBody.CONTENT_ENCODING_GZIP)
+                    .setBody(new GzipRequestBody(body));
+        }
+
+        return request.setBody(body);
+    }
+
+    /**
+     * Delivers a response to the response handler.
+     *
+     * @param response the response
+     * @param responseHandler the response handler
+     */
+    static <T> void deliverResponse(HttpResponse response, ResponseHandler<T> responseHandler) {
+        if (response.isSuccessful()) {
+            handleSuccessResponse(response, responseHandler);
+        } else {
+            handleErrorResponse(response, responseHandler);
+        }
+    }
+
+    /**
+     * Delivers a failure to get a response to the response handler.
+     *
+     * @param exception the exception that caused the failure
+     * @param responseHandler the response handler
+     */
+    static void deliverFailure(IOException exception, ResponseHandler<?> responseHandler) {
+        handleFailure(exception, responseHandler);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void handleSuccessResponse(HttpResponse response, ResponseHandler<T> responseHandler) {
+        // the body was decoded on the network thread by the request's decoder
+        T decodedBody = (T) response.getDecodedBody();
+
+        LogHelper.log(String.format("WePayClient response: %s", decodedBody));
+
+        responseHandler.onSuccess(response.getStatusCode(), decodedBody);
+    }
+
+    private static void handleErrorResponse(HttpResponse response, ResponseHandler<?> responseHandler) {
+        JSONObject errorJSON = new JSONObject();
+        String errorResponse = "";
 
         try {
-            requestBody = new JSONObject(new Gson().toJson(params));
+            errorResponse = new String(response.getBody(), response.getCharset());
+            errorJSON = new JSONObject(errorResponse);
+        } catch (UnsupportedEncodingException e) {
+            LogHelper.log("Error: Unable to convert error response to string. Failure: " + e.getLocalizedMessage());
         } catch (JSONException e) {
-            LogHelper.log("Error: Unable to serialize request params to JSON. Params: " + params.toString() + ". Failure: " + e.getLocalizedMessage());
+            LogHelper.log("Error: Unable to serialize response " + errorResponse + " into JSON. Failure: " + e.getLocalizedMessage());
         }
 
-        // Create the response listener.
-        Response.Listener<JSONObject> responseListener = new Response.Listener<JSONObject>() {
-            @Override
-            public void onResponse(JSONObject response) {
-                responseHandler.onSuccess(200, response);
-            }
-        };
+        responseHandler.onFailure(response.getStatusCode(), null, errorJSON);
+    }
 
-        // Create the error listener
-        Response.ErrorListener errorListener =  new Response.ErrorListener() {
-            @Override
-            public void onErrorResponse(VolleyError error) {
-                JSONObject response = new JSONObject();
-                String errorResponse = "";
-
-                if (error.networkResponse != null) {
-                    try {
-                        errorResponse = new String(error.networkResponse.data, HttpHeaderParser.parseCharset(error.networkResponse.headers));
-                        response = new JSONObject(errorResponse);
-                    } catch (UnsupportedEncodingException e) {
-                        LogHelper.log("Error: Unable to convert error response to string. Failure: " + e.getLocalizedMessage());
-                    } catch (JSONException e) {
-                        LogHelper.log("Error: Unable to serialize response " + errorResponse + " into JSON. Failure: " + e.getLocalizedMessage());
-                    }
+    private static void handleFailure(Exception exception, ResponseHandler<?> responseHandler) {
+        JSONObject response = new JSONObject();
+        Integer errorCode = 500;
+        String errorDescription = exception.getLocalizedMessage();
 
-                    responseHandler.onFailure(error.networkResponse.statusCode, error.getCause(), response);
-                } else {
-                    Integer errorCode = 500;
-                    String errorDescription = null;
-
-                    try {
-                        response.put("error_code", errorCode);
-                        response.put("error_domain", Error.ERROR_DOMAIN_API);
-                        response.put("error", Error.ERROR_CATEGORY_API);
-
-                        if (error.getCause() != null) {
-                            errorDescription = error.getCause().getLocalizedMessage();
-                            response.put("error_description", errorDescription);
-                        }
-                    } catch (JSONException e) {
-                        LogHelper.log("Error: unable to populate error response. Caught exception: " + e.getLocalizedMessage());
-                    }
+        try {
+            response.put("error_code", errorCode);
+            response.put("error_domain", Error.ERROR_DOMAIN_API);
+            response.put("error", Error.ERROR_CATEGORY_API);
 
-                    LogHelper.log("Received error response, but response contains no data.");
-                    LogHelper.log("Error response class: " + error.getClass().toString());
+            if (errorDescription != null) {
+                response.put("error_description", errorDescription);
+            }
+        } catch (JSONException e) {
+            LogHelper.log("Error: unable to populate error response. Caught exception: " + e.getLocalizedMessage());
+        }
 
-                    if (errorDescription != null) {
-                        LogHelper.log("Error response description: " + errorDescription);
-                    }
+        LogHelper.log("Received error response, but response contains no data.");
+        LogHelper.log("Error response class: " + exception.getClass().toString());
 
-                    responseHandler.onFailure(errorCode, error.getCause(), response);
-                }
+        if (errorDescription != null) {
+            LogHelper.log("Error response description: " + errorDescription);
+        }
+
+        responseHandler.onFailure(errorCode, exception, response);
+    }
+
+    /**
+     * Registers a listener for the network timing of calls to an endpoint.
+     *
+     * @param endpoint the endpoint
+     * @param listener the listener
+     */
+    public static void addNetworkTimingListener(String endpoint, NetworkTimingListener listener) {
+        synchronized (timingListeners) {
+            List<NetworkTimingListener> listeners = timingListeners.get(endpoint);
+            if (listeners == null) {
+                listeners = new ArrayList<>();
+                timingListeners.put(endpoint, listeners);
             }
-        };
 
-        // Create a JSON Request with some of the methods overwritten.
-        JsonObjectRequest request = new JsonObjectRequest(method, fullUrl, requestBody, responseListener, errorListener) {
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                Map<String, String> headers = new HashMap<>();
+            if (!listeners.contains(listener)) {
+                listeners.add(listener);
+            }
+        }
+    }
 
-                headers.put("User-Agent", USER_AGENT);
-                headers.put("Api-Version", WEPAY_API_VERSION);
+    /**
+     * Unregisters a listener for the network timing of calls to an endpoint.
+     *
+     * @param endpoint the endpoint
+     * @param listener the listener
+     */
+    public static void removeNetworkTimingListener(String endpoint, NetworkTimingListener listener) {
+        synchronized (timingListeners) {
+            List<NetworkTimingListener> listeners = timingListeners.get(endpoint);
+            if (listeners != null) {
+                listeners.remove(listener);
+            }
+        }
+    }
 
-                return headers;
+    /**
+     * Reports the timing of a finished attempt to the listeners of its endpoint. Must be called on
+     * the main thread.
+     *
+     * @param request the request
+     * @param response the response, or null if none was received
+     */
+    static void publishTiming(HttpRequest request, HttpResponse response) {
+        List<NetworkTimingListener> listeners;
+        synchronized (timingListeners) {
+            List<NetworkTimingListener> registered = timingListeners.get(request.getEndpoint());
+            if (registered == null || registered.isEmpty()) {
+                return;
             }
+            listeners = new ArrayList<>(registered);
+        }
 
-            @Override
-            protected Response<JSONObject> parseNetworkResponse(NetworkResponse response) {
-                try {
-                    String rawJSON = new String (response.data, HttpHeaderParser.parseCharset(response.headers, PROTOCOL_CHARSET));
-                    JSONObject responseJSON = new JSONObject(rawJSON);
-                    responseJSON.put("headers", new JSONObject(response.headers));
-
-                    LogHelper.log(String.format("WePayClient response: %s", responseJSON.toString()));
-
-                    return Response.success(responseJSON, HttpHeaderParser.parseCacheHeaders(response));
-                } catch (UnsupportedEncodingException e) {
-                    LogHelper.log("Error: Unable to parse header data into string.");
-                } catch (JSONException e) {
-                    LogHelper.log("Error: Unable to serialize string into JSON object.");
-                }
+        NetworkTiming timing = request.getTimingRecorder().build(request.getEndpoint(), (response == null) ? 0 : response.getStatusCode());
+        for (NetworkTimingListener listener : listeners) {
+            listener.onNetworkTiming(timing);
+        }
+    }
 
-                return super.parseNetworkResponse(response);
+    /**
+     * Replaces the transport used for all API calls.
+     *
+     * @param httpTransport the transport
+     */
+    public static synchronized void setTransport(HttpTransport httpTransport) {
+        transport = httpTransport;
+    }
+
+    /**
+     * Gets the transport, creating the default one on first use.
+     *
+     * @param config the config
+     * @return the transport
+     */
+    static synchronized HttpTransport getTransport(Config config) {
+        if (transport == null) {
+            transport = new UrlConnectionTransport(config.getNetworkThreadPoolSize());
+        }
+
+        return transport;
+    }
+
+    /**
+     * Gets the rate limiter of a class of calls. Calls made in the background are deferred calls, and
+     * all others are interactive calls. Each class has its own bucket, so deferred calls never use up
+     * the budget of interactive calls. A limiter is created again, with a full bucket, when the
+     * config's rate for its class changes.
+     *
+     * @param config the config
+     * @param priority the priority of the calls
+     * @return the rate limiter, or null if the calls are not limited
+     */
+    static synchronized RateLimiter getRateLimiter(Config config, RequestPriority priority) {
+        if (priority == RequestPriority.BACKGROUND) {
+            int deferredRate = Math.max(0, config.getDeferredApiRateLimit());
+            if (deferredRate != deferredRateLimit) {
+                deferredRateLimit = deferredRate;
+
+                // a burst of one spaces deferred calls out evenly
+                deferredRateLimiter = (deferredRate > 0) ? new RateLimiter(deferredRate, 1) : null;
             }
-        };
 
-        request.setShouldCache(false);
-        request.setRetryPolicy(new DefaultRetryPolicy(REQUEST_TIMEOUT_MS, 0, DefaultRetryPolicy.DEFAULT_BACKOFF_MULT));
-        requestQueue.add(request);
+            return deferredRateLimiter;
+        }
+
+        int interactiveRate = Math.max(0, config.getInteractiveApiRateLimit());
+        if (interactiveRate != interactiveRateLimit) {
+            interactiveRateLimit = interactiveRate;
+            interactiveRateLimiter = (interactiveRate > 0) ? new RateLimiter(interactiveRate, interactiveRate) : null;
+        }
+
+        return interactiveRateLimiter;
     }
 
     /**
@@ -284,12 +670,17 @@ public class WepayClient {
         }
     }
 
-    private static void init(Context context) {
-        requestQueue = Volley.newRequestQueue(context);
+    public interface ResponseHandler<T> {
+        void onSuccess(int statusCode, T response);
+        void onFailure(int statusCode, Throwable throwable, JSONObject errorResponse);
     }
 
-    public interface ResponseHandler {
-        void onSuccess(int statusCode, JSONObject response);
-        void onFailure(int statusCode, Throwable throwable, JSONObject errorResponse);
+    /**
+     * Receives the result of a call queued in the outbox. Exactly one method is called: onQueued if
+     * the call could not be completed right away and will be retried in the background, otherwise
+     * onSuccess or onFailure with the result of its first attempt.
+     */
+    public interface QueuedResponseHandler<T> extends ResponseHandler<T> {
+        void onQueued();
     }
 }
@@ -0,0 +1,60 @@
+package com.wepay.android.internal.network;
+
+/**
+ * Derives a call's timeout from the recent latencies of its endpoint, so that a stalled call is
+ * abandoned soon after it has become clearly slower than usual instead of after a fixed worst case.
+ *
+ * The timeout is a multiple of a high percentile of the endpoint's latencies, clamped between a
+ * floor and a ceiling. Until the endpoint has enough latencies, the ceiling is used.
+ */
+public class AdaptiveTimeoutPolicy {
+
+    /** The percentile of recent latencies the timeout is based on. */
+    static final double TIMEOUT_PERCENTILE = 99;
+
+    /** The factor applied to the percentile, leaving room for ordinary variance. */
+    static final int TIMEOUT_MULTIPLIER = 2;
+
+    /** The number of latencies an endpoint needs before its timeout adapts. */
+    static final int MIN_SAMPLES = 10;
+
+    /** The smallest timeout in milliseconds. */
+    private final int floorMs;
+
+    /** The largest timeout in milliseconds, also used when there are too few latencies. */
+    private final int ceilingMs;
+
+    /**
+     * Instantiates a new policy.
+     *
+     * @param floorMs the smallest timeout in milliseconds
+     * @param ceilingMs the largest timeout in milliseconds
+     */
+    public AdaptiveTimeoutPolicy(int floorMs, int ceilingMs) {
+        this.floorMs = Math.min(floorMs, ceilingMs);
+        this.ceilingMs = ceilingMs;
+    }
+
+    public int getFloorMs() {
+        return this.floorMs;
+    }
+
+    public int getCeilingMs() {
+        return this.ceilingMs;
+    }
+
+    /**
+     * Gets the timeout for the next call to an endpoint.
+     *
+     * @param histogram the endpoint's recent latencies
+     * @return the timeout in milliseconds
+     */
+    public int getTimeoutMs(LatencyHistogram histogram) {
+        if (histogram.getSampleCount() < MIN_SAMPLES) {
+            return this.ceilingMs;
+        }
+
+        long timeoutMs = histogram.getPercentile(TIMEOUT_PERCENTILE) * TIMEOUT_MULTIPLIER;
+        return (int) Math.max(this.floorMs, Math.min(this.ceilingMs, timeoutMs));
+    }
+}
@@ -0,0 +1,74 @@
+package com.wepay.android.internal.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * A JSON RequestBody with one large field whose value is base64 text held in a byte buffer, such as
+ * an encoded image. The small params are encoded as JSON, and the base64 bytes are copied straight
+ * from the buffer into the body: base64 needs no JSON escaping, so the value is never turned into a
+ * String.
+ */
+public class Base64FieldRequestBody implements RequestBody {
+
+    /** The charset of JSON bodies. */
+    private static final String PROTOCOL_CHARSET = "UTF-8";
+
+    /** The other params. */
+    private final JsonRequestBody params;
+
+    /** The name of the base64 field. */
+    private final String fieldName;
+
+    /** The base64 text, as ASCII bytes. */
+    private final byte[] base64;
+
+    /** The number of bytes of base64 text in the buffer. */
+    private final int length;
+
+    /**
+     * Instantiates a new body. The buffer is read when the body is written, so it must not be
+     * reused until then.
+     *
+     * @param params the other params
+     * @param fieldName the name of the base64 field
+     * @param base64 the buffer holding the base64 text, without line breaks
+     * @param length the number of bytes of base64 text in the buffer
+     */
+    public Base64FieldRequestBody(Map<String, Object> params, String fieldName, byte[] base64, int length) {
+        this.params = new JsonRequestBody(params);
+        this.fieldName = fieldName;
+        this.base64 = base64;
+        this.length = length;
+    }
+
+    @Override
+    public String getContentType() {
+        return JsonRequestBody.CONTENT_TYPE_JSON;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        ByteArrayOutputStream paramsOutput = new ByteArrayOutputStream();
+        this.params.writeTo(paramsOutput);
+        byte[] paramsJson = paramsOutput.toByteArray();
+
+        // reopen the params object, to append the base64 field to it
+        int closingBraceIndex = paramsJson.length - 1;
+        outputStream.write(paramsJson, 0, closingBraceIndex);
+        if (!this.params.getParams().isEmpty()) {
+            outputStream.write(',');
+        }
+
+        outputStream.write(("\"" + this.fieldName + "\":\"").getBytes(PROTOCOL_CHARSET));
+        outputStream.write(this.base64, 0, this.length);
+        outputStream.write("\"}".getBytes(PROTOCOL_CHARSET));
+    }
+}
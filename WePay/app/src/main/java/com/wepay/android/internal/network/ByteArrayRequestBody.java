@@ -0,0 +1,36 @@
+package com.wepay.android.internal.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A RequestBody whose content has already been encoded, such as a request read back from disk.
+ */
+public class ByteArrayRequestBody implements RequestBody {
+
+    /** The content type. */
+    private final String contentType;
+
+    /** The encoded content. */
+    private final byte[] content;
+
+    public ByteArrayRequestBody(String contentType, byte[] content) {
+        this.contentType = contentType;
+        this.content = content;
+    }
+
+    @Override
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.content.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(this.content);
+    }
+}
@@ -0,0 +1,180 @@
+package com.wepay.android.internal.network;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stops calls to an endpoint that keeps failing, so that callers fail fast instead of each waiting
+ * for a timeout.
+ *
+ * The breaker starts closed and lets every call through. After a number of consecutive failures it
+ * opens and refuses calls. Once the open duration has passed it becomes half-open and lets a single
+ * probe through: if the probe succeeds the breaker closes, otherwise it opens again.
+ *
+ * Times are passed in by the caller, in milliseconds since boot.
+ */
+public class CircuitBreaker {
+
+    /** The number of consecutive failures that opens the breaker. */
+    private static final int FAILURE_THRESHOLD = 5;
+
+    /** How long the breaker stays open before letting a probe through, in milliseconds. */
+    private static final long OPEN_DURATION_MS = 30000;
+
+    /** The breakers, by endpoint. */
+    private static final Map<String, CircuitBreaker> BREAKERS = new HashMap<>();
+
+    /**
+     * The states of a circuit breaker.
+     */
+    public enum State {
+        /** Calls go through. */
+        CLOSED,
+
+        /** Calls are refused. */
+        OPEN,
+
+        /** A single probe call is let through to test for recovery. */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAtMs = 0;
+    private boolean isProbeInFlight = false;
+    private long probeStartedAtMs = 0;
+
+    /**
+     * Gets the breaker of an endpoint, creating it if needed.
+     *
+     * @param endpoint the API endpoint
+     * @return the breaker
+     */
+    public static synchronized CircuitBreaker forEndpoint(String endpoint) {
+        CircuitBreaker breaker = BREAKERS.get(endpoint);
+
+        if (breaker == null) {
+            breaker = new CircuitBreaker(FAILURE_THRESHOLD, OPEN_DURATION_MS);
+            BREAKERS.put(endpoint, breaker);
+        }
+
+        return breaker;
+    }
+
+    /**
+     * Gets the breaker of an endpoint, if calls to it have been made.
+     *
+     * @param endpoint the API endpoint
+     * @return the breaker, or null if there is none
+     */
+    public static synchronized CircuitBreaker findForEndpoint(String endpoint) {
+        return BREAKERS.get(endpoint);
+    }
+
+    /**
+     * Determines if a response counts as a failure of the endpoint. Client errors show that the
+     * server is answering, so only server errors and throttling count.
+     *
+     * @param response the response, or null if the call failed without one
+     * @return true, if the response counts as a failure
+     */
+    public static boolean isFailure(HttpResponse response) {
+        return response == null || response.getStatusCode() >= 500 || RetryPolicy.isRetryableStatus(response.getStatusCode());
+    }
+
+    /**
+     * Instantiates a new breaker.
+     *
+     * @param failureThreshold the number of consecutive failures that opens the breaker
+     * @param openDurationMs how long the breaker stays open before letting a probe through
+     */
+    public CircuitBreaker(int failureThreshold, long openDurationMs) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+    }
+
+    /**
+     * Determines if a call may be made now. In the half-open state, this claims the single probe,
+     * so the caller must report the call's outcome.
+     *
+     * @param nowMs the current time
+     * @return true, if the call may be made
+     */
+    public synchronized boolean allowRequest(long nowMs) {
+        switch (this.getState(nowMs)) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                // a probe whose outcome was never reported does not block probing forever
+                if (this.isProbeInFlight && nowMs - this.probeStartedAtMs < this.openDurationMs) {
+                    return false;
+                }
+                this.state = State.HALF_OPEN;
+                this.isProbeInFlight = true;
+                this.probeStartedAtMs = nowMs;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Records a successful call, which closes the breaker.
+     */
+    public synchronized void recordSuccess() {
+        this.state = State.CLOSED;
+        this.consecutiveFailures = 0;
+        this.isProbeInFlight = false;
+    }
+
+    /**
+     * Records a failed call. Opens the breaker if the threshold is reached or a probe failed.
+     *
+     * @param nowMs the current time
+     */
+    public synchronized void recordFailure(long nowMs) {
+        this.consecutiveFailures++;
+
+        // a call that was started before the breaker opened does not extend the open duration
+        if (this.state == State.OPEN) {
+            return;
+        }
+
+        if (this.state == State.HALF_OPEN || this.consecutiveFailures >= this.failureThreshold) {
+            this.state = State.OPEN;
+            this.openedAtMs = nowMs;
+            this.isProbeInFlight = false;
+        }
+    }
+
+    /**
+     * Gets the state. An open breaker whose open duration has passed is reported as half-open.
+     *
+     * @param nowMs the current time
+     * @return the state
+     */
+    public synchronized State getState(long nowMs) {
+        if (this.state == State.OPEN && nowMs - this.openedAtMs >= this.openDurationMs) {
+            return State.HALF_OPEN;
+        }
+
+        return this.state;
+    }
+
+    /**
+     * Gets the time until an open breaker lets a probe through.
+     *
+     * @param nowMs the current time
+     * @return the time in milliseconds, or 0 if the breaker is not open
+     */
+    public synchronized long getRemainingOpenMs(long nowMs) {
+        if (this.state != State.OPEN) {
+            return 0;
+        }
+
+        return Math.max(0, this.openedAtMs + this.openDurationMs - nowMs);
+    }
+}
@@ -0,0 +1,80 @@
+package com.wepay.android.internal.network;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * The fields the SDK reads from the response of the credit_card/create* endpoints.
+ */
+public class CreditCardResponse {
+
+    /** The decoder for this response. */
+    public static final ResponseDecoder<CreditCardResponse> DECODER = new ResponseDecoder<CreditCardResponse>() {
+        @Override
+        public CreditCardResponse decode(JsonReader reader) throws IOException {
+            CreditCardResponse response = new CreditCardResponse();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if ("credit_card_id".equals(name)) {
+                    response.creditCardId = nextStringOrNull(reader);
+                } else if ("authorisation_code".equals(name)) {
+                    response.authorisationCode = nextStringOrNull(reader);
+                } else if ("authorisation_response_code".equals(name)) {
+                    response.authorisationResponseCode = nextStringOrNull(reader);
+                } else if ("issuer_authentication_data".equals(name)) {
+                    response.issuerAuthenticationData = nextStringOrNull(reader);
+                } else if ("issuer_script_template1".equals(name)) {
+                    response.issuerScriptTemplate1 = nextStringOrNull(reader);
+                } else if ("issuer_script_template2".equals(name)) {
+                    response.issuerScriptTemplate2 = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return response;
+        }
+    };
+
+    private String creditCardId;
+    private String authorisationCode;
+    private String authorisationResponseCode;
+    private String issuerAuthenticationData;
+    private String issuerScriptTemplate1;
+    private String issuerScriptTemplate2;
+
+    public String getCreditCardId() {
+        return this.creditCardId;
+    }
+
+    public String getAuthorisationCode() {
+        return this.authorisationCode;
+    }
+
+    public String getAuthorisationResponseCode() {
+        return this.authorisationResponseCode;
+    }
+
+    public String getIssuerAuthenticationData() {
+        return this.issuerAuthenticationData;
+    }
+
+    public String getIssuerScriptTemplate1() {
+        return this.issuerScriptTemplate1;
+    }
+
+    public String getIssuerScriptTemplate2() {
+        return this.issuerScriptTemplate2;
+    }
+
+    @Override
+    public String toString() {
+        return "CreditCardResponse{credit_card_id=" + this.creditCardId
+                + ", authorisation_response_code=" + this.authorisationResponseCode + "}";
+    }
+}
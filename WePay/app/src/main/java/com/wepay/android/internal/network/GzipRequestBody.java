@@ -0,0 +1,60 @@
+package com.wepay.android.internal.network;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A RequestBody that gzips another body as it is written. The wrapped body is streamed through the
+ * compressor, so neither the plain nor the compressed content is ever held in memory as a whole.
+ * The compressed length is not known in advance, so the body is sent chunked.
+ */
+public class GzipRequestBody implements RequestBody {
+
+    /** The value of the Content-Encoding header of gzipped bodies. */
+    public static final String CONTENT_ENCODING_GZIP = "gzip";
+
+    /** The size of the compressor's output buffer. */
+    private static final int BUFFER_SIZE = 4096;
+
+    /** The body to compress. */
+    private final RequestBody body;
+
+    public GzipRequestBody(RequestBody body) {
+        this.body = body;
+    }
+
+    @Override
+    public String getContentType() {
+        return this.body.getContentType();
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        // closing the gzip stream releases the native compressor, but the caller still owns the stream
+        OutputStream unclosable = new FilterOutputStream(outputStream) {
+            @Override
+            public void write(byte[] buffer, int offset, int count) throws IOException {
+                outputStream.write(buffer, offset, count);
+            }
+
+            @Override
+            public void close() throws IOException {
+                outputStream.flush();
+            }
+        };
+
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(unclosable, BUFFER_SIZE);
+        try {
+            this.body.writeTo(gzipOutputStream);
+        } finally {
+            gzipOutputStream.close();
+        }
+    }
+}
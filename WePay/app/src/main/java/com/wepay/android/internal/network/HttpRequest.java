@@ -0,0 +1,120 @@
+package com.wepay.android.internal.network;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An HTTP request sent through an HttpTransport.
+ */
+public class HttpRequest {
+
+    /** The constant string representing the GET method. */
+    public static final String METHOD_GET = "GET";
+
+    /** The constant string representing the POST method. */
+    public static final String METHOD_POST = "POST";
+
+    /** The constant string representing the HEAD method. */
+    public static final String METHOD_HEAD = "HEAD";
+
+    /** The API endpoint, relative to the base url. */
+    private String endpoint;
+
+    /** The absolute url. */
+    private String url;
+
+    /** The HTTP method. */
+    private String method;
+
+    /** The request headers. */
+    private Map<String, String> headers = new LinkedHashMap<>();
+
+    /** The request body. May be null. */
+    private RequestBody body;
+
+    /** The connect and read timeout in milliseconds. */
+    private int timeoutMs;
+
+    /** The scheduling priority. */
+    private RequestPriority priority = RequestPriority.NORMAL;
+
+    /** Collects the timing of the request's phases. */
+    private final NetworkTimingRecorder timingRecorder = new NetworkTimingRecorder();
+
+    /** The decoder for a successful response body. May be null, in which case the raw body is returned. */
+    private ResponseDecoder<?> responseDecoder;
+
+    /**
+     * Instantiates a new request.
+     *
+     * @param endpoint the API endpoint, relative to the base url
+     * @param url the absolute url
+     * @param method the HTTP method
+     */
+    public HttpRequest(String endpoint, String url, String method) {
+        this.endpoint = endpoint;
+        this.url = url;
+        this.method = method;
+    }
+
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    public String getUrl() {
+        return this.url;
+    }
+
+    public String getMethod() {
+        return this.method;
+    }
+
+    public Map<String, String> getHeaders() {
+        return this.headers;
+    }
+
+    public HttpRequest setHeader(String name, String value) {
+        this.headers.put(name, value);
+        return this;
+    }
+
+    public RequestBody getBody() {
+        return this.body;
+    }
+
+    public HttpRequest setBody(RequestBody body) {
+        this.body = body;
+        return this;
+    }
+
+    public int getTimeoutMs() {
+        return this.timeoutMs;
+    }
+
+    public HttpRequest setTimeoutMs(int timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        return this;
+    }
+
+    public RequestPriority getPriority() {
+        return this.priority;
+    }
+
+    public HttpRequest setPriority(RequestPriority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public ResponseDecoder<?> getResponseDecoder() {
+        return this.responseDecoder;
+    }
+
+    public HttpRequest setResponseDecoder(ResponseDecoder<?> responseDecoder) {
+        this.responseDecoder = responseDecoder;
+        return this;
+    }
+
+    public NetworkTimingRecorder getTimingRecorder() {
+        return this.timingRecorder;
+    }
+}
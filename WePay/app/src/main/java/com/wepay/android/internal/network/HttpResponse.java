@@ -0,0 +1,104 @@
+package com.wepay.android.internal.network;
+
+import java.util.Map;
+
+/**
+ * An HTTP response received through an HttpTransport.
+ */
+public class HttpResponse {
+
+    /** The default charset, used when the response does not specify one. */
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    /** The status code. */
+    private int statusCode;
+
+    /** The response headers. */
+    private Map<String, String> headers;
+
+    /** The response body. Never null, but empty if the body was decoded. */
+    private byte[] body;
+
+    /** The result of the request's ResponseDecoder. May be null. */
+    private Object decodedBody;
+
+    public HttpResponse(int statusCode, Map<String, String> headers, byte[] body) {
+        this(statusCode, headers, body, null);
+    }
+
+    public HttpResponse(int statusCode, Map<String, String> headers, byte[] body, Object decodedBody) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+        this.decodedBody = decodedBody;
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    public Map<String, String> getHeaders() {
+        return this.headers;
+    }
+
+    public byte[] getBody() {
+        return this.body;
+    }
+
+    public Object getDecodedBody() {
+        return this.decodedBody;
+    }
+
+    /**
+     * Determines if the status code indicates success.
+     *
+     * @return true, if the status code is 2xx
+     */
+    public boolean isSuccessful() {
+        return this.statusCode >= 200 && this.statusCode < 300;
+    }
+
+    /**
+     * Gets the charset from the Content-Type header.
+     *
+     * @return the charset, or UTF-8 if none was specified
+     */
+    public String getCharset() {
+        return parseCharset(this.getHeader("Content-Type"));
+    }
+
+    /**
+     * Gets the charset from a Content-Type header value.
+     *
+     * @param contentType the header value, may be null
+     * @return the charset, or UTF-8 if none was specified
+     */
+    public static String parseCharset(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                String[] pair = param.trim().split("=");
+                if (pair.length == 2 && pair[0].equalsIgnoreCase("charset")) {
+                    return pair[1];
+                }
+            }
+        }
+
+        return DEFAULT_CHARSET;
+    }
+
+    /**
+     * Gets a header value, ignoring the case of the header name.
+     *
+     * @param name the header name
+     * @return the header value, or null if not present
+     */
+    public String getHeader(String name) {
+        for (Map.Entry<String, String> entry : this.headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+
+        return null;
+    }
+}
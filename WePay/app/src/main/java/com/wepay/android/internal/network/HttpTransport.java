@@ -0,0 +1,55 @@
+package com.wepay.android.internal.network;
+
+import java.io.IOException;
+
+/**
+ * Defines the transport that WepayClient sends all of its API calls through. Implementations are
+ * responsible for connection management, threading, and for delivering results on the main thread.
+ */
+public interface HttpTransport {
+
+    /**
+     * Enqueues a request for execution.
+     *
+     * @param request the request
+     * @param callback the callback that receives the result on the main thread
+     * @return a handle that can be used to cancel the request
+     */
+    Call enqueue(HttpRequest request, Callback callback);
+
+    /**
+     * A handle to an enqueued request.
+     */
+    interface Call {
+        /**
+         * Cancels the request. Once cancelled, the callback will not be called.
+         */
+        void cancel();
+
+        /**
+         * Determines if the request was cancelled.
+         *
+         * @return true, if the request was cancelled
+         */
+        boolean isCancelled();
+    }
+
+    /**
+     * Receives the result of an enqueued request.
+     */
+    interface Callback {
+        /**
+         * Gets called when a response was received, regardless of the status code.
+         *
+         * @param response the response
+         */
+        void onResponse(HttpResponse response);
+
+        /**
+         * Gets called when no response could be received.
+         *
+         * @param exception the exception that caused the failure
+         */
+        void onFailure(IOException exception);
+    }
+}
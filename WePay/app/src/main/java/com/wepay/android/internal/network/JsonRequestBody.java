@@ -0,0 +1,73 @@
+package com.wepay.android.internal.network;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Map;
+
+/**
+ * A RequestBody that streams a map of request params as JSON.
+ */
+public class JsonRequestBody implements RequestBody {
+
+    /** The content type of JSON bodies. */
+    public static final String CONTENT_TYPE_JSON = "application/json; charset=utf-8";
+
+    /** The charset of JSON bodies. */
+    private static final String PROTOCOL_CHARSET = "UTF-8";
+
+    /** The codec shared by all requests. Gson instances are thread-safe. */
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    /** The params to be encoded. */
+    private final Map<String, Object> params;
+
+    /**
+     * Instantiates a new JSON body. The params are encoded when the body is written, so they must
+     * not be modified after the request is sent.
+     *
+     * @param params the params
+     */
+    public JsonRequestBody(Map<String, Object> params) {
+        this.params = params;
+    }
+
+    public Map<String, Object> getParams() {
+        return this.params;
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE_JSON;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, PROTOCOL_CHARSET)));
+
+        try {
+            GSON.toJson(this.params, this.params.getClass(), jsonWriter);
+        } catch (JsonIOException e) {
+            throw new IOException("Unable to encode request params. Failure: " + e.getLocalizedMessage());
+        }
+
+        // flush, but do not close, so the caller still owns the stream
+        jsonWriter.flush();
+    }
+
+    @Override
+    public String toString() {
+        return GSON.toJson(this.params);
+    }
+}
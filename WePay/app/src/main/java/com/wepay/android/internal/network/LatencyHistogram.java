@@ -0,0 +1,81 @@
+package com.wepay.android.internal.network;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recent response latencies of an endpoint, so that percentiles reflect current
+ * network conditions rather than the whole lifetime of the app.
+ */
+public class LatencyHistogram {
+
+    /** The number of latencies kept per endpoint. */
+    private static final int WINDOW_SIZE = 128;
+
+    /** The histograms, by endpoint. */
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new HashMap<>();
+
+    /** The ring buffer of latencies, in milliseconds. */
+    private final long[] samples;
+
+    /** The number of valid entries in the ring buffer. */
+    private int sampleCount = 0;
+
+    /** The index the next latency is written to. */
+    private int nextIndex = 0;
+
+    /**
+     * Gets the histogram of an endpoint, creating it if needed.
+     *
+     * @param endpoint the API endpoint
+     * @return the histogram
+     */
+    public static synchronized LatencyHistogram forEndpoint(String endpoint) {
+        LatencyHistogram histogram = HISTOGRAMS.get(endpoint);
+
+        if (histogram == null) {
+            histogram = new LatencyHistogram(WINDOW_SIZE);
+            HISTOGRAMS.put(endpoint, histogram);
+        }
+
+        return histogram;
+    }
+
+    public LatencyHistogram(int windowSize) {
+        this.samples = new long[windowSize];
+    }
+
+    /**
+     * Records a latency, replacing the oldest one once the window is full.
+     *
+     * @param latencyMs the latency in milliseconds
+     */
+    public synchronized void record(long latencyMs) {
+        this.samples[this.nextIndex] = latencyMs;
+        this.nextIndex = (this.nextIndex + 1) % this.samples.length;
+        this.sampleCount = Math.min(this.sampleCount + 1, this.samples.length);
+    }
+
+    public synchronized int getSampleCount() {
+        return this.sampleCount;
+    }
+
+    /**
+     * Gets a percentile of the recorded latencies, using the nearest-rank method.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in milliseconds, or -1 if nothing was recorded
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (this.sampleCount == 0) {
+            return -1;
+        }
+
+        long[] sorted = Arrays.copyOf(this.samples, this.sampleCount);
+        Arrays.sort(sorted);
+
+        int rank = (int) Math.ceil(percentile / 100.0 * this.sampleCount);
+        return sorted[Math.max(0, Math.min(this.sampleCount - 1, rank - 1))];
+    }
+}
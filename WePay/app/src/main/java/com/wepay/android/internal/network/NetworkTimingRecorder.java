@@ -0,0 +1,128 @@
+package com.wepay.android.internal.network;
+
+import android.os.SystemClock;
+
+import com.wepay.android.models.NetworkTiming;
+
+/**
+ * Collects the timestamps of one request's phases while the transport executes it. Timestamps
+ * are written on the network thread and read after the result is delivered, so they are volatile.
+ */
+public class NetworkTimingRecorder {
+
+    /** The recorder of the request executing on the current thread, used by TimingSSLSocketFactory. */
+    private static final ThreadLocal<NetworkTimingRecorder> CURRENT = new ThreadLocal<>();
+
+    private volatile long enqueuedAt;
+    private volatile long startedAt;
+    private volatile long dnsEndAt;
+    private volatile long tlsStartAt;
+    private volatile long connectEndAt;
+    private volatile long writeEndAt;
+    private volatile long firstByteAt;
+    private volatile long readEndAt;
+    private volatile long parseMs;
+
+    /**
+     * Gets the recorder of the request executing on the current thread.
+     *
+     * @return the recorder, or null
+     */
+    static NetworkTimingRecorder current() {
+        return CURRENT.get();
+    }
+
+    static void setCurrent(NetworkTimingRecorder recorder) {
+        if (recorder == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(recorder);
+        }
+    }
+
+    private static long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    public void markEnqueued() {
+        this.enqueuedAt = now();
+    }
+
+    public void markStarted() {
+        this.startedAt = now();
+    }
+
+    public void markDnsEnd() {
+        this.dnsEndAt = now();
+    }
+
+    /** Marks the start of the TLS handshake, which is also the end of the TCP connect. */
+    public void markTlsStart() {
+        this.tlsStartAt = now();
+    }
+
+    /** Marks that the connection, including any TLS handshake, is ready. */
+    public void markConnectEnd() {
+        this.connectEndAt = now();
+    }
+
+    public void markWriteEnd() {
+        this.writeEndAt = now();
+    }
+
+    public void markFirstByte() {
+        this.firstByteAt = now();
+    }
+
+    public void markReadEnd() {
+        this.readEndAt = now();
+    }
+
+    public void addParseMs(long parseMs) {
+        this.parseMs += parseMs;
+    }
+
+    /**
+     * Builds the timing breakdown. Phases that were not reached have a duration of 0.
+     *
+     * @param endpoint the endpoint
+     * @param statusCode the HTTP status code, or 0 if no response was received
+     * @return the timing breakdown
+     */
+    public NetworkTiming build(String endpoint, int statusCode) {
+        long end = (this.readEndAt != 0) ? this.readEndAt : now();
+        boolean isReused = this.connectEndAt != 0 && this.tlsStartAt == 0;
+
+        long connectMs = 0;
+        long tlsMs = 0;
+        if (this.connectEndAt != 0) {
+            if (this.tlsStartAt != 0) {
+                connectMs = this.tlsStartAt - this.dnsEndAt;
+                tlsMs = this.connectEndAt - this.tlsStartAt;
+            } else {
+                // a pooled connection, or plain http; either way, no handshake to report
+                connectMs = this.connectEndAt - this.dnsEndAt;
+            }
+        }
+
+        long readMs = 0;
+        if (this.readEndAt != 0 && this.firstByteAt != 0) {
+            readMs = Math.max(0, this.readEndAt - this.firstByteAt - this.parseMs);
+        }
+
+        return new NetworkTiming(endpoint, statusCode, isReused,
+                span(this.enqueuedAt, this.startedAt),
+                span(this.startedAt, this.dnsEndAt),
+                connectMs,
+                tlsMs,
+                span(this.connectEndAt, this.writeEndAt),
+                span(this.writeEndAt, this.firstByteAt),
+                readMs,
+                this.parseMs,
+                span(this.enqueuedAt, end));
+    }
+
+    private static long span(long start, long end) {
+        return (start != 0 && end != 0) ? Math.max(0, end - start) : 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.wepay.android.internal.network;
+
+/**
+ * A token bucket that limits how often calls are made. The bucket holds up to a burst of tokens and
+ * is refilled at a steady rate; each call takes one token, and a call that finds the bucket empty
+ * has to wait for the next one.
+ *
+ * Times are passed in by the caller, in milliseconds since boot.
+ */
+public class RateLimiter {
+
+    private final double tokensPerMs;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillMs = -1;
+
+    /**
+     * Instantiates a new rate limiter, with a full bucket.
+     *
+     * @param ratePerSecond the number of calls allowed per second, on average
+     * @param burst the number of calls that may be made at once
+     */
+    public RateLimiter(double ratePerSecond, int burst) {
+        this.tokensPerMs = ratePerSecond / 1000;
+        this.capacity = Math.max(1, burst);
+        this.tokens = this.capacity;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param nowMs the current time
+     * @return 0 if a token was taken, otherwise the time in milliseconds until one is available
+     */
+    public synchronized long tryAcquire(long nowMs) {
+        this.refill(nowMs);
+
+        if (this.tokens >= 1) {
+            this.tokens -= 1;
+            return 0;
+        }
+
+        return Math.max(1, (long) Math.ceil((1 - this.tokens) / this.tokensPerMs));
+    }
+
+    private void refill(long nowMs) {
+        if (this.lastRefillMs >= 0 && nowMs > this.lastRefillMs) {
+            this.tokens = Math.min(this.capacity, this.tokens + (nowMs - this.lastRefillMs) * this.tokensPerMs);
+        }
+
+        this.lastRefillMs = Math.max(this.lastRefillMs, nowMs);
+    }
+}
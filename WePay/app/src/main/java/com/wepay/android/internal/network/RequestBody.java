@@ -0,0 +1,34 @@
+package com.wepay.android.internal.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The body of an HttpRequest. The body is written directly to the connection's output stream, so
+ * it never needs to be fully materialized in memory. It may be written more than once if the
+ * request is sent again.
+ */
+public interface RequestBody {
+
+    /**
+     * Gets the value of the Content-Type header.
+     *
+     * @return the content type
+     */
+    String getContentType();
+
+    /**
+     * Gets the length of the body in bytes, if it is known before writing.
+     *
+     * @return the content length, or -1 if unknown
+     */
+    long getContentLength();
+
+    /**
+     * Writes the body to the output stream. Implementations must not close the stream.
+     *
+     * @param outputStream the output stream
+     * @throws IOException if writing fails
+     */
+    void writeTo(OutputStream outputStream) throws IOException;
+}
@@ -0,0 +1,63 @@
+package com.wepay.android.internal.network;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps track of which endpoints accept gzipped request bodies. Endpoints are assumed to accept them
+ * until the server answers a gzipped request with 415 Unsupported Media Type, 400 Bad Request or
+ * 500 Internal Server Error; from then on, requests to that endpoint are sent uncompressed. A server
+ * that cannot decode the body may answer with any of these, and an uncompressed resend that fails
+ * again only costs one extra request.
+ */
+public class RequestCompression {
+
+    /** The status code of a server that does not accept the request's encoding. */
+    public static final int STATUS_UNSUPPORTED_MEDIA_TYPE = 415;
+
+    /** The status code of a server that could not make sense of the request. */
+    public static final int STATUS_BAD_REQUEST = 400;
+
+    /** The status code of a server that failed while handling the request. */
+    public static final int STATUS_INTERNAL_SERVER_ERROR = 500;
+
+    /** The endpoints that rejected a gzipped body. */
+    private static final Set<String> UNSUPPORTED_ENDPOINTS = new HashSet<>();
+
+    /**
+     * Determines if requests to an endpoint may be gzipped.
+     *
+     * @param endpoint the API endpoint
+     * @return true, unless the endpoint has rejected a gzipped body
+     */
+    public static synchronized boolean isSupported(String endpoint) {
+        return !UNSUPPORTED_ENDPOINTS.contains(endpoint);
+    }
+
+    /**
+     * Stops gzipping requests to an endpoint.
+     *
+     * @param endpoint the API endpoint
+     */
+    public static synchronized void markUnsupported(String endpoint) {
+        UNSUPPORTED_ENDPOINTS.add(endpoint);
+    }
+
+    /**
+     * Determines if a response rejects the request's gzipped body, in which case the request can be
+     * sent again uncompressed.
+     *
+     * @param request the request
+     * @param response the response, or null if there was none
+     * @return true, if the gzipped body was rejected
+     */
+    public static boolean isRejected(HttpRequest request, HttpResponse response) {
+        if (response == null || !(request.getBody() instanceof GzipRequestBody)) {
+            return false;
+        }
+
+        int statusCode = response.getStatusCode();
+        return statusCode == STATUS_UNSUPPORTED_MEDIA_TYPE || statusCode == STATUS_BAD_REQUEST
+                || statusCode == STATUS_INTERNAL_SERVER_ERROR;
+    }
+}
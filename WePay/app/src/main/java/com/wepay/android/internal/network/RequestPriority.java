@@ -0,0 +1,18 @@
+package com.wepay.android.internal.network;
+
+/**
+ * The scheduling classes of requests. When requests are waiting for a network thread, higher
+ * priorities are sent first, and requests of the same priority are sent in the order they were
+ * enqueued.
+ */
+public enum RequestPriority {
+
+    /** Calls a cardholder is waiting on, such as tokenization and authorization. */
+    CRITICAL,
+
+    /** Calls that should not wait behind background traffic, but nobody is blocked on. */
+    NORMAL,
+
+    /** Calls that can be delayed, such as signature uploads and reversals. */
+    BACKGROUND
+}
@@ -0,0 +1,57 @@
+package com.wepay.android.internal.network;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Decodes the body of a successful API response into a typed response object. Decoders run on
+ * the network thread and read straight from the connection, so they should only pick out the
+ * fields they need and skip everything else.
+ *
+ * @param <T> the type of the response object
+ */
+public abstract class ResponseDecoder<T> {
+
+    /** A decoder for responses whose body is not needed. The body is drained and discarded. */
+    public static final ResponseDecoder<Void> IGNORE_BODY = new ResponseDecoder<Void>() {
+        @Override
+        public Void decode(JsonReader reader) {
+            return null;
+        }
+    };
+
+    /**
+     * Decodes the response body.
+     *
+     * @param reader the reader, positioned before the top level value
+     * @return the response object
+     * @throws IOException if the body cannot be read or is malformed
+     */
+    public abstract T decode(JsonReader reader) throws IOException;
+
+    /**
+     * Reads the next value as a string. Numbers and booleans are returned in their JSON form,
+     * and objects and arrays are skipped.
+     *
+     * @param reader the reader
+     * @return the string value, or null if the value is null or not a primitive
+     * @throws IOException if the value cannot be read
+     */
+    protected static String nextStringOrNull(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        } else if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        } else if (token == JsonToken.NULL) {
+            reader.nextNull();
+        } else {
+            reader.skipValue();
+        }
+
+        return null;
+    }
+}
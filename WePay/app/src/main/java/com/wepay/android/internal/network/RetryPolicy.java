@@ -0,0 +1,117 @@
+package com.wepay.android.internal.network;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Decides if and when a failed API call is sent again. Delays grow exponentially and are fully
+ * jittered, so that clients that failed together do not retry together.
+ *
+ * A retry policy must only be used for requests that carry an idempotency key, so that the server
+ * can tell a retry from a new request.
+ */
+public class RetryPolicy {
+
+    /** The policy for requests that must never be sent twice. */
+    public static final RetryPolicy NO_RETRY = new RetryPolicy(0, 0, 0);
+
+    /** The maximum number of retries after the first attempt. */
+    private final int maxRetries;
+
+    /** The upper bound of the first retry delay, in milliseconds. */
+    private final long baseDelayMs;
+
+    /** The upper bound of any retry delay, in milliseconds. */
+    private final long maxDelayMs;
+
+    /**
+     * Instantiates a new retry policy.
+     *
+     * @param maxRetries the maximum number of retries after the first attempt
+     * @param baseDelayMs the upper bound of the first retry delay, in milliseconds
+     * @param maxDelayMs the upper bound of any retry delay, in milliseconds
+     */
+    public RetryPolicy(int maxRetries, long baseDelayMs, long maxDelayMs) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    /**
+     * Determines if a failed attempt should be retried.
+     *
+     * @param retryCount the number of retries made so far
+     * @param response the response, or null if none was received
+     * @param exception the exception that prevented a response, or null
+     * @return true, if the request should be sent again
+     */
+    public boolean shouldRetry(int retryCount, HttpResponse response, IOException exception) {
+        if (retryCount >= this.maxRetries) {
+            return false;
+        }
+
+        if (response == null) {
+            // no response, the request may or may not have reached the server
+            return exception != null;
+        }
+
+        return isRetryableStatus(response.getStatusCode());
+    }
+
+    /**
+     * Gets the delay before the next retry: a random value between zero and the exponentially
+     * growing ceiling, or the server's Retry-After if that is longer.
+     *
+     * @param retryCount the number of retries made so far
+     * @param response the response, or null if none was received
+     * @param random the source of jitter
+     * @return the delay in milliseconds
+     */
+    public long getDelayMs(int retryCount, HttpResponse response, Random random) {
+        long ceiling = Math.min(this.maxDelayMs, this.baseDelayMs << Math.min(retryCount, 16));
+        long delayMs = (long) (random.nextDouble() * ceiling);
+
+        if (response != null) {
+            long retryAfterMs = parseRetryAfterMs(response.getHeader("Retry-After"));
+            delayMs = Math.max(delayMs, Math.min(retryAfterMs, this.maxDelayMs));
+        }
+
+        return delayMs;
+    }
+
+    /**
+     * Determines if a status code indicates a transient failure.
+     *
+     * @param statusCode the status code
+     * @return true, for 408, 429, 502, 503 and 504
+     */
+    public static boolean isRetryableStatus(int statusCode) {
+        switch (statusCode) {
+            case 408:
+            case 429:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static long parseRetryAfterMs(String retryAfter) {
+        if (retryAfter == null) {
+            return 0;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim())) * 1000;
+        } catch (NumberFormatException e) {
+            // an HTTP date, not worth waiting for
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.wepay.android.internal.network;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * The fields the SDK reads from the response of the checkout/signature/create endpoint.
+ */
+public class SignatureResponse {
+
+    /** The decoder for this response. */
+    public static final ResponseDecoder<SignatureResponse> DECODER = new ResponseDecoder<SignatureResponse>() {
+        @Override
+        public SignatureResponse decode(JsonReader reader) throws IOException {
+            SignatureResponse response = new SignatureResponse();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("signature_url".equals(reader.nextName())) {
+                    response.signatureUrl = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return response;
+        }
+    };
+
+    private String signatureUrl;
+
+    public String getSignatureUrl() {
+        return this.signatureUrl;
+    }
+
+    @Override
+    public String toString() {
+        return "SignatureResponse{signature_url=" + this.signatureUrl + "}";
+    }
+}
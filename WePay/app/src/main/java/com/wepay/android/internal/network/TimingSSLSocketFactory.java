@@ -0,0 +1,74 @@
+package com.wepay.android.internal.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * An SSLSocketFactory that marks the start of the TLS handshake for the request executing on the
+ * current thread. HttpURLConnection connects the TCP socket first and then layers TLS on top of it
+ * through this factory, so the call to the layering createSocket() separates the two phases.
+ * It is not called at all when a pooled connection is reused.
+ */
+class TimingSSLSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+
+    TimingSSLSocketFactory(SSLSocketFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+        markTlsStart();
+        return this.delegate.createSocket(socket, host, port, autoClose);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        markTlsStart();
+        return this.delegate.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        markTlsStart();
+        return this.delegate.createSocket(host, port, localHost, localPort);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        markTlsStart();
+        return this.delegate.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        markTlsStart();
+        return this.delegate.createSocket(address, port, localAddress, localPort);
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return this.delegate.createSocket();
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return this.delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return this.delegate.getSupportedCipherSuites();
+    }
+
+    private static void markTlsStart() {
+        NetworkTimingRecorder recorder = NetworkTimingRecorder.current();
+        if (recorder != null) {
+            recorder.markTlsStart();
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.wepay.android.internal.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.google.gson.stream.JsonReader;
+import com.wepay.android.internal.LogHelper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * The default HttpTransport, built on the platform's HttpURLConnection.
+ *
+ * Connections are kept alive and pooled by the platform as long as every response body is fully
+ * read and closed, so this class never calls disconnect() on a successful exchange. All https
+ * connections share a single SSLSocketFactory: the platform pools connections per socket factory,
+ * and the shared SSLContext lets a new connection resume a cached TLS session instead of doing a
+ * full handshake. HTTP/2 is used when the platform's HttpURLConnection negotiates it.
+ *
+ * Request bodies are sent as given, so a GzipRequestBody goes out compressed. Responses with a
+ * gzip Content-Encoding are decompressed as they are read, since a request that sets its own
+ * Accept-Encoding header opts out of the platform's transparent decompression.
+ *
+ * Requests waiting for a network thread are sent in order of their RequestPriority. At most
+ * MAX_BACKGROUND_REQUESTS background requests run at once; the others wait outside the executor, so
+ * that large uploads can neither take every thread nor sit in front of a critical request.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+    /** The number of TLS sessions kept for resumption. */
+    private static final int TLS_SESSION_CACHE_SIZE = 16;
+
+    /** How long a cached TLS session can be resumed, in seconds. */
+    private static final int TLS_SESSION_TIMEOUT_SEC = 60 * 60;
+
+    /** How long an idle network thread is kept around, in seconds. */
+    private static final int IDLE_THREAD_TIMEOUT_SEC = 60;
+
+    /** The size of the buffer used to read response bodies. */
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    /** The size of the buffer used to write request bodies. */
+    private static final int WRITE_BUFFER_SIZE = 8192;
+
+    /** The maximum number of background requests that run at the same time. */
+    private static final int MAX_BACKGROUND_REQUESTS = 1;
+
+    /** The executor that runs requests. */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * The executor that closes the connections of cancelled requests. Closing an https connection can
+     * block, so it is kept off the cancelling thread, and off the request threads, which may all be
+     * blocked on the connections being closed.
+     */
+    private final ThreadPoolExecutor disconnectExecutor;
+
+    /** The socket factory shared by all https connections. May be null if TLS setup failed. */
+    private final SSLSocketFactory sslSocketFactory;
+
+    /** Orders waiting requests that have the same priority. */
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    /** The background requests waiting for a background slot. Guarded by itself. */
+    private final Deque<UrlConnectionCall> waitingBackgroundCalls = new ArrayDeque<>();
+
+    /** The number of background requests in the executor. Guarded by waitingBackgroundCalls. */
+    private int activeBackgroundCount = 0;
+
+    /** The handler that delivers results on the main thread. */
+    private final Handler deliveryHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Instantiates a new transport.
+     *
+     * @param threadPoolSize the maximum number of concurrent requests
+     */
+    public UrlConnectionTransport(int threadPoolSize) {
+        int poolSize = Math.max(1, threadPoolSize);
+
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, IDLE_THREAD_TIMEOUT_SEC, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new NetworkThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.disconnectExecutor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_TIMEOUT_SEC, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NetworkThreadFactory());
+        this.disconnectExecutor.allowCoreThreadTimeOut(true);
+        this.sslSocketFactory = createSslSocketFactory();
+    }
+
+    @Override
+    public Call enqueue(HttpRequest request, Callback callback) {
+        request.getTimingRecorder().markEnqueued();
+
+        UrlConnectionCall call = new UrlConnectionCall(request, callback, this.sequence.getAndIncrement());
+
+        if (request.getPriority() == RequestPriority.BACKGROUND) {
+            synchronized (this.waitingBackgroundCalls) {
+                if (this.activeBackgroundCount >= MAX_BACKGROUND_REQUESTS) {
+                    this.waitingBackgroundCalls.addLast(call);
+                    return call;
+                }
+                this.activeBackgroundCount++;
+            }
+        }
+
+        this.executor.execute(call);
+        return call;
+    }
+
+    /**
+     * Releases the background slot of a finished or cancelled background request, and hands it to
+     * the next waiting background request.
+     */
+    private void releaseBackgroundSlot() {
+        UrlConnectionCall nextCall;
+
+        synchronized (this.waitingBackgroundCalls) {
+            nextCall = this.waitingBackgroundCalls.pollFirst();
+            if (nextCall == null) {
+                this.activeBackgroundCount--;
+                return;
+            }
+        }
+
+        this.executor.execute(nextCall);
+    }
+
+    /**
+     * Creates the socket factory shared by all https connections.
+     *
+     * @return the socket factory, or null if the platform default should be used
+     */
+    private static SSLSocketFactory createSslSocketFactory() {
+        try {
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, null, null);
+
+            SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+            sessionContext.setSessionCacheSize(TLS_SESSION_CACHE_SIZE);
+            sessionContext.setSessionTimeout(TLS_SESSION_TIMEOUT_SEC);
+
+            return new TimingSSLSocketFactory(sslContext.getSocketFactory());
+        } catch (GeneralSecurityException e) {
+            LogHelper.log("Error: Unable to create TLS context, using platform default. Failure: " + e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a stream to the end and closes it, which allows the connection to be reused.
+     *
+     * @param inputStream the stream, may be null
+     * @return the bytes read
+     * @throws IOException if reading fails
+     */
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        if (inputStream == null) {
+            return output.toByteArray();
+        }
+
+        try {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * A single request execution.
+     */
+    private class UrlConnectionCall implements Call, Runnable, Comparable<UrlConnectionCall> {
+        private final HttpRequest request;
+        private final Callback callback;
+        private final long sequence;
+        private final AtomicBoolean isReleased = new AtomicBoolean(false);
+        private volatile boolean isCancelled = false;
+        private volatile HttpURLConnection connection = null;
+
+        UrlConnectionCall(HttpRequest request, Callback callback, long sequence) {
+            this.request = request;
+            this.callback = callback;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(UrlConnectionCall other) {
+            int result = this.request.getPriority().compareTo(other.request.getPriority());
+            if (result == 0) {
+                result = (this.sequence < other.sequence) ? -1 : ((this.sequence == other.sequence) ? 0 : 1);
+            }
+            return result;
+        }
+
+        @Override
+        public void cancel() {
+            this.isCancelled = true;
+
+            // a call that has not started yet gives up its place right away
+            boolean isWaiting;
+            synchronized (waitingBackgroundCalls) {
+                isWaiting = waitingBackgroundCalls.remove(this);
+            }
+            if (!isWaiting && executor.remove(this)) {
+                this.release();
+            }
+
+            // Closing the socket is the only way to interrupt blocking I/O on the connection.
+            final HttpURLConnection activeConnection = this.connection;
+            if (activeConnection != null) {
+                disconnectExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        activeConnection.disconnect();
+                    }
+                });
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.isCancelled;
+        }
+
+        @Override
+        public void run() {
+            if (this.isCancelled) {
+                this.release();
+                return;
+            }
+
+            NetworkTimingRecorder.setCurrent(this.request.getTimingRecorder());
+
+            try {
+                final HttpResponse response = this.execute();
+                deliveryHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isCancelled) {
+                            callback.onResponse(response);
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                this.deliverFailure(e);
+            } catch (RuntimeException e) {
+                // a failure outside the expected I/O errors still has to reach the caller, or it waits forever
+                this.deliverFailure(new IOException("Unexpected failure: " + e.toString(), e));
+            } finally {
+                NetworkTimingRecorder.setCurrent(null);
+                this.connection = null;
+                this.release();
+            }
+        }
+
+        private void deliverFailure(final IOException e) {
+            deliveryHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isCancelled) {
+                        callback.onFailure(e);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Gives up the call's background slot, once.
+         */
+        private void release() {
+            if (this.request.getPriority() == RequestPriority.BACKGROUND && this.isReleased.compareAndSet(false, true)) {
+                releaseBackgroundSlot();
+            }
+        }
+
+        private HttpResponse execute() throws IOException {
+            NetworkTimingRecorder timingRecorder = this.request.getTimingRecorder();
+            timingRecorder.markStarted();
+
+            // Resolve the host up front to time it. The platform caches the result, so the connection
+            // does not look it up again.
+            URL url = new URL(this.request.getUrl());
+            InetAddress.getAllByName(url.getHost());
+            timingRecorder.markDnsEnd();
+
+            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+            this.connection = urlConnection;
+
+            if (sslSocketFactory != null && urlConnection instanceof HttpsURLConnection) {
+                ((HttpsURLConnection) urlConnection).setSSLSocketFactory(sslSocketFactory);
+            }
+
+            urlConnection.setRequestMethod(this.request.getMethod());
+            urlConnection.setConnectTimeout(this.request.getTimeoutMs());
+            urlConnection.setReadTimeout(this.request.getTimeoutMs());
+            urlConnection.setUseCaches(false);
+            urlConnection.setRequestProperty("Connection", "keep-alive");
+
+            for (Map.Entry<String, String> header : this.request.getHeaders().entrySet()) {
+                urlConnection.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            RequestBody body = this.request.getBody();
+            if (body != null) {
+                urlConnection.setDoOutput(true);
+                urlConnection.setRequestProperty("Content-Type", body.getContentType());
+
+                // Stream the body instead of letting the connection buffer it to compute the length.
+                long contentLength = body.getContentLength();
+                if (contentLength >= 0) {
+                    urlConnection.setFixedLengthStreamingMode((int) contentLength);
+                } else {
+                    urlConnection.setChunkedStreamingMode(0);
+                }
+            }
+
+            // Connect explicitly, so that connection setup is not counted as writing or waiting.
+            urlConnection.connect();
+            timingRecorder.markConnectEnd();
+
+            if (body != null) {
+                OutputStream outputStream = new BufferedOutputStream(urlConnection.getOutputStream(), WRITE_BUFFER_SIZE);
+                try {
+                    body.writeTo(outputStream);
+                } finally {
+                    outputStream.close();
+                }
+            }
+
+            timingRecorder.markWriteEnd();
+
+            int statusCode = urlConnection.getResponseCode();
+            timingRecorder.markFirstByte();
+
+            Map<String, String> responseHeaders = getResponseHeaders(urlConnection);
+            ResponseDecoder<?> decoder = this.request.getResponseDecoder();
+
+            if (decoder != null && statusCode >= 200 && statusCode < 300) {
+                Object decodedBody = decode(decoder, this.decompress(urlConnection, urlConnection.getInputStream()), HttpResponse.parseCharset(urlConnection.getContentType()));
+                timingRecorder.markReadEnd();
+                return new HttpResponse(statusCode, responseHeaders, new byte[0], decodedBody);
+            }
+
+            InputStream inputStream = (statusCode >= 400) ? urlConnection.getErrorStream() : urlConnection.getInputStream();
+            byte[] responseBody = readFully(this.decompress(urlConnection, inputStream));
+            timingRecorder.markReadEnd();
+
+            return new HttpResponse(statusCode, responseHeaders, responseBody);
+        }
+
+        /**
+         * Wraps a response stream in a decompressor if the response is gzipped.
+         *
+         * @param urlConnection the connection
+         * @param inputStream the response stream, may be null
+         * @return the stream to read the body from
+         * @throws IOException if the gzip header cannot be read
+         */
+        private InputStream decompress(HttpURLConnection urlConnection, InputStream inputStream) throws IOException {
+            // an empty or HEAD response has no gzip header to read
+            if (inputStream == null || urlConnection.getContentLength() == 0 || HttpRequest.METHOD_HEAD.equals(this.request.getMethod())
+                    || !GzipRequestBody.CONTENT_ENCODING_GZIP.equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                return inputStream;
+            }
+
+            return new GZIPInputStream(inputStream, READ_BUFFER_SIZE);
+        }
+
+        private Object decode(ResponseDecoder<?> decoder, InputStream inputStream, String charset) throws IOException {
+            try {
+                long decodeStart = SystemClock.elapsedRealtime();
+                JsonReader reader = new JsonReader(new InputStreamReader(new BufferedInputStream(inputStream, READ_BUFFER_SIZE), charset));
+                Object decodedBody = decoder.decode(reader);
+                this.request.getTimingRecorder().addParseMs(SystemClock.elapsedRealtime() - decodeStart);
+
+                // drain whatever the decoder did not read, so the connection can be reused
+                readFully(inputStream);
+                return decodedBody;
+            } catch (IllegalStateException e) {
+                // the body did not have the expected structure
+                throw new IOException("Unable to decode response. Failure: " + e.getLocalizedMessage());
+            } finally {
+                inputStream.close();
+            }
+        }
+
+        private Map<String, String> getResponseHeaders(HttpURLConnection urlConnection) {
+            Map<String, String> headers = new HashMap<>();
+
+            for (Map.Entry<String, List<String>> header : urlConnection.getHeaderFields().entrySet()) {
+                // the status line is reported with a null key
+                if (header.getKey() != null && !header.getValue().isEmpty()) {
+                    headers.put(header.getKey(), header.getValue().get(0));
+                }
+            }
+
+            return headers;
+        }
+    }
+
+    /**
+     * Names the network threads and keeps them at background priority.
+     */
+    private static class NetworkThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "wepay-network-" + this.threadCount.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
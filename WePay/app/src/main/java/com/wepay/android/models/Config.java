@@ -48,6 +48,42 @@ public class Config {
     /** Determines what log messages the SDK will show. Defaults to ALL. */
     private LogLevel logLevel = LogLevel.ALL;
 
+    /** The maximum number of concurrent API calls. Defaults to 4. */
+    private int networkThreadPoolSize = 4;
+
+    /** The number of times a failed tokenization call is retried. Defaults to 0. */
+    private int tokenizationRetryCount = 0;
+
+    /** Determines if slow tokenization calls are hedged. Defaults to false. */
+    private boolean hedgingEnabled = false;
+
+    /** The latency percentile after which a tokenization call is hedged. Defaults to 95. */
+    private double hedgingPercentile = 95;
+
+    /** The shortest timeout of an interactive API call in milliseconds. Defaults to 10000. */
+    private int apiTimeoutFloorMs = 10000;
+
+    /** The longest timeout of an API call in milliseconds. Defaults to 40000. */
+    private int apiTimeoutCeilingMs = 40000;
+
+    /** The maximum duration of a card transaction in milliseconds, or 0 for no limit. Defaults to 0. */
+    private long transactionTimeoutMs = 0;
+
+    /** The maximum rate of interactive API calls per second, or 0 for no limit. Defaults to 10. */
+    private int interactiveApiRateLimit = 10;
+
+    /** The maximum rate of deferred API calls per second, or 0 for no limit. Defaults to 1. */
+    private int deferredApiRateLimit = 1;
+
+    /** How long a card reader is kept ready after an operation in milliseconds, or 0 to not keep it. Defaults to 0. */
+    private long warmReaderSessionMs = 0;
+
+    /** How long a risk profiling session is reused in milliseconds. Defaults to 600000. */
+    private long riskSessionTtlMs = 600000;
+
+    /** Determines if large request bodies are gzipped. Defaults to false. */
+    private boolean requestCompressionEnabled = false;
+
     private MockConfig mockConfig;
 
     /**
@@ -236,6 +272,268 @@ public class Config {
         return this;
     }
 
+    /**
+     * Gets the maximum number of concurrent API calls.
+     *
+     * @return the network thread pool size
+     */
+    public int getNetworkThreadPoolSize() {
+        return this.networkThreadPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of concurrent API calls. Connections to WePay's servers are kept alive
+     * and reused across calls, so this also bounds the number of open connections.
+     * The value is read when the SDK makes its first API call. If not explicitly set, defaults to 4.
+     *
+     * @param networkThreadPoolSize the network thread pool size
+     * @return the config
+     */
+    public Config setNetworkThreadPoolSize(int networkThreadPoolSize) {
+        this.networkThreadPoolSize = networkThreadPoolSize;
+        return this;
+    }
+
+    /**
+     * Gets the number of times a failed tokenization call is retried.
+     *
+     * @return the tokenization retry count
+     */
+    public int getTokenizationRetryCount() {
+        return this.tokenizationRetryCount;
+    }
+
+    /**
+     * Sets the number of times a tokenization or authorization call is retried after a network failure or a temporary server error.
+     * A call whose response was lost, for example to a timeout, is sent again, so only enable retries if the WePay environment deduplicates calls by their Idempotency-Key header. Every retry carries the same key as the original call, and without server-side deduplication a retried authorization may be processed twice.
+     * Set to 0 to disable retries. If not explicitly set, defaults to 0.
+     *
+     * @param tokenizationRetryCount the tokenization retry count
+     * @return the config
+     */
+    public Config setTokenizationRetryCount(int tokenizationRetryCount) {
+        this.tokenizationRetryCount = tokenizationRetryCount;
+        return this;
+    }
+
+    /**
+     * Determines if slow tokenization calls are hedged.
+     *
+     * @return true, if hedging is enabled
+     */
+    public boolean isHedgingEnabled() {
+        return this.hedgingEnabled;
+    }
+
+    /**
+     * Sets the option to hedge slow tokenization and authorization calls. When a call has not answered within the hedging percentile of recent response times, a second copy is sent with the same idempotency key, and whichever answers first is used.
+     * This trades a small amount of extra traffic for fewer very slow calls. If not explicitly set to true, defaults to false.
+     *
+     * @param hedgingEnabled the flag to determine if slow tokenization calls are hedged
+     * @return the config
+     */
+    public Config setHedgingEnabled(boolean hedgingEnabled) {
+        this.hedgingEnabled = hedgingEnabled;
+        return this;
+    }
+
+    /**
+     * Gets the latency percentile after which a tokenization call is hedged.
+     *
+     * @return the hedging percentile
+     */
+    public double getHedgingPercentile() {
+        return this.hedgingPercentile;
+    }
+
+    /**
+     * Sets the latency percentile after which a tokenization call is hedged, between 50 and 99.9. Lower values hedge more calls.
+     * Only used if hedging is enabled. If not explicitly set, defaults to 95.
+     *
+     * @param hedgingPercentile the hedging percentile
+     * @return the config
+     */
+    public Config setHedgingPercentile(double hedgingPercentile) {
+        if (hedgingPercentile < 50 || hedgingPercentile > 99.9) {
+            throw new IllegalArgumentException("Hedging percentile must be between 50 and 99.9");
+        }
+        this.hedgingPercentile = hedgingPercentile;
+        return this;
+    }
+
+    /**
+     * Gets the shortest timeout of an interactive API call.
+     *
+     * @return the timeout floor in milliseconds
+     */
+    public int getApiTimeoutFloorMs() {
+        return this.apiTimeoutFloorMs;
+    }
+
+    /**
+     * Sets the shortest timeout of an interactive API call, such as tokenization. These calls time out at twice the 99th percentile of the endpoint's recent response times, but never sooner than this.
+     * If not explicitly set, defaults to 10000.
+     *
+     * @param apiTimeoutFloorMs the timeout floor in milliseconds
+     * @return the config
+     */
+    public Config setApiTimeoutFloorMs(int apiTimeoutFloorMs) {
+        this.apiTimeoutFloorMs = apiTimeoutFloorMs;
+        return this;
+    }
+
+    /**
+     * Gets the longest timeout of an API call.
+     *
+     * @return the timeout ceiling in milliseconds
+     */
+    public int getApiTimeoutCeilingMs() {
+        return this.apiTimeoutCeilingMs;
+    }
+
+    /**
+     * Sets the longest timeout of an API call. Interactive calls use this timeout until enough response times have been observed, and calls made in the background, such as signature uploads, always use it.
+     * If not explicitly set, defaults to 40000.
+     *
+     * @param apiTimeoutCeilingMs the timeout ceiling in milliseconds
+     * @return the config
+     */
+    public Config setApiTimeoutCeilingMs(int apiTimeoutCeilingMs) {
+        this.apiTimeoutCeilingMs = apiTimeoutCeilingMs;
+        return this;
+    }
+
+    /**
+     * Gets the maximum duration of a card transaction.
+     *
+     * @return the transaction timeout in milliseconds, or 0 if there is no limit
+     */
+    public long getTransactionTimeoutMs() {
+        return this.transactionTimeoutMs;
+    }
+
+    /**
+     * Sets the maximum duration of a card transaction started with startTransactionForTokenizing, from the call until the authorization result is known.
+     * Finding the card reader, waiting for the card, and calling WePay's servers all share this budget, and each of them gives up once it is spent, with the error it would report on its own timeout.
+     * Set to 0 to let each phase use its own timeout. If not explicitly set, defaults to 0.
+     *
+     * @param transactionTimeoutMs the transaction timeout in milliseconds
+     * @return the config
+     */
+    public Config setTransactionTimeoutMs(long transactionTimeoutMs) {
+        this.transactionTimeoutMs = transactionTimeoutMs;
+        return this;
+    }
+
+    /**
+     * Gets the maximum rate of interactive API calls.
+     *
+     * @return the number of calls per second, or 0 if there is no limit
+     */
+    public int getInteractiveApiRateLimit() {
+        return this.interactiveApiRateLimit;
+    }
+
+    /**
+     * Sets the maximum rate of interactive API calls, such as card tokenization and authorization, including their retries. Up to one second's worth of calls may be made at once.
+     * Interactive calls have their own budget, which deferred calls cannot use up. Set to 0 for no limit. If not explicitly set, defaults to 10.
+     * The limit is shared by all of the SDK's interactive calls, and a new limit takes effect with the next call.
+     *
+     * @param interactiveApiRateLimit the number of calls per second
+     * @return the config
+     */
+    public Config setInteractiveApiRateLimit(int interactiveApiRateLimit) {
+        this.interactiveApiRateLimit = interactiveApiRateLimit;
+        return this;
+    }
+
+    /**
+     * Gets the maximum rate of deferred API calls.
+     *
+     * @return the number of calls per second, or 0 if there is no limit
+     */
+    public int getDeferredApiRateLimit() {
+        return this.deferredApiRateLimit;
+    }
+
+    /**
+     * Sets the maximum rate of deferred API calls, such as authorization reversals and signature uploads. Deferred calls are spread out evenly at this rate, so that a backlog built up while offline does not burst against the API when connectivity returns.
+     * Set to 0 for no limit. If not explicitly set, defaults to 1.
+     * The limit is shared by all of the SDK's deferred calls, and a new limit takes effect with the next call.
+     *
+     * @param deferredApiRateLimit the number of calls per second
+     * @return the config
+     */
+    public Config setDeferredApiRateLimit(int deferredApiRateLimit) {
+        this.deferredApiRateLimit = deferredApiRateLimit;
+        return this;
+    }
+
+    /**
+     * Gets how long a risk profiling session is reused.
+     *
+     * @return the session time to live in milliseconds
+     */
+    public long getRiskSessionTtlMs() {
+        return this.riskSessionTtlMs;
+    }
+
+    /**
+     * Sets how long a risk profiling session is reused for tokenization before a new one is needed. A replacement session is profiled in the background shortly before the current one expires.
+     * Shorter times profile the device more often, which costs battery and bandwidth. Values below 120000 are treated as 120000. If not explicitly set, defaults to 600000.
+     * The value is read when the first WePay instance is created.
+     *
+     * @param riskSessionTtlMs the session time to live in milliseconds
+     * @return the config
+     */
+    public Config setRiskSessionTtlMs(long riskSessionTtlMs) {
+        this.riskSessionTtlMs = riskSessionTtlMs;
+        return this;
+    }
+
+    /**
+     * Gets how long a card reader is kept ready after an operation.
+     *
+     * @return the warm session time in milliseconds, or 0 if warm sessions are disabled
+     */
+    public long getWarmReaderSessionMs() {
+        return this.warmReaderSessionMs;
+    }
+
+    /**
+     * Sets how long a connected card reader is kept ready after an operation, so that the next transaction starts waiting for a card without setting the reader up again.
+     * While the session is warm the reader is checked every 15 seconds, and stopped if it stops responding. The session ends once it has been idle this long: if stopCardReaderAfterOperation is true the reader is stopped, otherwise it stays connected but is no longer checked.
+     * 0 disables warm sessions. If not explicitly set, defaults to 0.
+     *
+     * @param warmReaderSessionMs the warm session time in milliseconds
+     * @return the config
+     */
+    public Config setWarmReaderSessionMs(long warmReaderSessionMs) {
+        this.warmReaderSessionMs = warmReaderSessionMs;
+        return this;
+    }
+
+    /**
+     * Determines if large request bodies are gzipped.
+     *
+     * @return true, if request compression is enabled
+     */
+    public boolean isRequestCompressionEnabled() {
+        return this.requestCompressionEnabled;
+    }
+
+    /**
+     * Sets the option to gzip large request bodies, such as signature images, before they are sent. Only enable it if the WePay environment accepts gzipped requests.
+     * A request whose gzipped body is rejected is sent again uncompressed, and later requests to that endpoint are not compressed. If not explicitly set to true, defaults to false.
+     *
+     * @param requestCompressionEnabled the flag to determine if large request bodies are gzipped
+     * @return the config
+     */
+    public Config setRequestCompressionEnabled(boolean requestCompressionEnabled) {
+        this.requestCompressionEnabled = requestCompressionEnabled;
+        return this;
+    }
+
     /**
      * Gets the MockConfig instance.
      *
@@ -0,0 +1,207 @@
+package com.wepay.android.models;
+
+import com.google.gson.Gson;
+
+import java.util.LinkedHashMap;
+
+/**
+ * The Class NetworkTiming represents the timing breakdown of a single attempt of an API call to WePay's servers. All durations are in milliseconds.
+ * Phases that did not happen, such as connecting and the TLS handshake on a reused connection, have a duration of 0.
+ */
+public class NetworkTiming {
+
+    /** The endpoint used to tokenize manually entered cards. */
+    public static final String ENDPOINT_CREDIT_CARD_CREATE = "credit_card/create";
+
+    /** The endpoint used to tokenize swiped cards. */
+    public static final String ENDPOINT_CREDIT_CARD_CREATE_SWIPE = "credit_card/create_swipe";
+
+    /** The endpoint used to authorize dipped cards. */
+    public static final String ENDPOINT_CREDIT_CARD_CREATE_EMV = "credit_card/create_emv";
+
+    /** The endpoint used to reverse an authorization. */
+    public static final String ENDPOINT_CREDIT_CARD_AUTH_REVERSE = "credit_card/auth_reverse";
+
+    /** The endpoint used to store signatures. */
+    public static final String ENDPOINT_CHECKOUT_SIGNATURE_CREATE = "checkout/signature/create";
+
+    /** The endpoint. */
+    private String endpoint;
+
+    /** The HTTP status code, or 0 if no response was received. */
+    private int statusCode;
+
+    /** Whether an existing connection was reused. */
+    private boolean connectionReused;
+
+    private long queueMs;
+    private long dnsMs;
+    private long connectMs;
+    private long tlsMs;
+    private long writeMs;
+    private long firstByteMs;
+    private long readMs;
+    private long parseMs;
+    private long totalMs;
+
+    /**
+     * Instantiates a new network timing.
+     *
+     * @param endpoint the endpoint
+     * @param statusCode the HTTP status code, or 0 if no response was received
+     * @param connectionReused whether an existing connection was reused
+     * @param queueMs the time spent waiting for a network thread
+     * @param dnsMs the time spent resolving the host
+     * @param connectMs the time spent establishing the TCP connection
+     * @param tlsMs the time spent on the TLS handshake
+     * @param writeMs the time spent sending the request body
+     * @param firstByteMs the time between sending the request and receiving the response headers
+     * @param readMs the time spent reading the response body
+     * @param parseMs the time spent decoding the response body
+     * @param totalMs the time between queueing the request and receiving the full response
+     */
+    public NetworkTiming(String endpoint, int statusCode, boolean connectionReused, long queueMs, long dnsMs, long connectMs,
+                         long tlsMs, long writeMs, long firstByteMs, long readMs, long parseMs, long totalMs) {
+        this.endpoint = endpoint;
+        this.statusCode = statusCode;
+        this.connectionReused = connectionReused;
+        this.queueMs = queueMs;
+        this.dnsMs = dnsMs;
+        this.connectMs = connectMs;
+        this.tlsMs = tlsMs;
+        this.writeMs = writeMs;
+        this.firstByteMs = firstByteMs;
+        this.readMs = readMs;
+        this.parseMs = parseMs;
+        this.totalMs = totalMs;
+    }
+
+    /**
+     * Gets the endpoint, for example ENDPOINT_CREDIT_CARD_CREATE_EMV.
+     *
+     * @return the endpoint
+     */
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    /**
+     * Gets the HTTP status code.
+     *
+     * @return the status code, or 0 if no response was received
+     */
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    /**
+     * Determines if an existing connection was reused, so that no connection setup was needed.
+     *
+     * @return true, if the connection was reused
+     */
+    public boolean isConnectionReused() {
+        return this.connectionReused;
+    }
+
+    /**
+     * Gets the time spent waiting for a network thread.
+     *
+     * @return the queue time
+     */
+    public long getQueueMs() {
+        return this.queueMs;
+    }
+
+    /**
+     * Gets the time spent resolving the host.
+     *
+     * @return the DNS time
+     */
+    public long getDnsMs() {
+        return this.dnsMs;
+    }
+
+    /**
+     * Gets the time spent establishing the TCP connection.
+     *
+     * @return the connect time
+     */
+    public long getConnectMs() {
+        return this.connectMs;
+    }
+
+    /**
+     * Gets the time spent on the TLS handshake.
+     *
+     * @return the TLS time
+     */
+    public long getTlsMs() {
+        return this.tlsMs;
+    }
+
+    /**
+     * Gets the time spent sending the request body.
+     *
+     * @return the write time
+     */
+    public long getWriteMs() {
+        return this.writeMs;
+    }
+
+    /**
+     * Gets the time between sending the request and receiving the response headers. This is mostly time spent on WePay's servers.
+     *
+     * @return the time to first byte
+     */
+    public long getFirstByteMs() {
+        return this.firstByteMs;
+    }
+
+    /**
+     * Gets the time spent reading the response body.
+     *
+     * @return the read time
+     */
+    public long getReadMs() {
+        return this.readMs;
+    }
+
+    /**
+     * Gets the time spent decoding the response body.
+     *
+     * @return the parse time
+     */
+    public long getParseMs() {
+        return this.parseMs;
+    }
+
+    /**
+     * Gets the time between queueing the request and receiving the full response.
+     *
+     * @return the total time
+     */
+    public long getTotalMs() {
+        return this.totalMs;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        LinkedHashMap<String, Object> timingMap = new LinkedHashMap<>();
+        timingMap.put("endpoint", this.endpoint);
+        timingMap.put("statusCode", this.statusCode);
+        timingMap.put("connectionReused", this.connectionReused);
+        timingMap.put("queueMs", this.queueMs);
+        timingMap.put("dnsMs", this.dnsMs);
+        timingMap.put("connectMs", this.connectMs);
+        timingMap.put("tlsMs", this.tlsMs);
+        timingMap.put("writeMs", this.writeMs);
+        timingMap.put("firstByteMs", this.firstByteMs);
+        timingMap.put("readMs", this.readMs);
+        timingMap.put("parseMs", this.parseMs);
+        timingMap.put("totalMs", this.totalMs);
+
+        return new Gson().toJson(timingMap, LinkedHashMap.class);
+    }
+}
@@ -0,0 +1,152 @@
+package com.wepay.android.models;
+
+import android.view.MotionEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Class SignatureCapture records a signature as it is drawn, one point at a time. Feed it the touch events of the signature view, or add points directly, then call getSignatureStrokes() to get the SignatureStrokes to store.
+ * Points are rounded to whole pixels, and a point that rounds to the same pixel as the previous one is dropped.
+ *
+ * This class is not thread-safe, use it from the thread that receives the touch events.
+ */
+public class SignatureCapture {
+
+    /** The width of the capture area. */
+    private final int width;
+
+    /** The height of the capture area. */
+    private final int height;
+
+    /** The finished strokes. */
+    private final List<int[]> strokes = new ArrayList<>();
+
+    /** The coordinates of the stroke being drawn, or null between strokes. */
+    private int[] currentStroke = null;
+
+    /** The number of coordinates in the current stroke. */
+    private int currentLength = 0;
+
+    /**
+     * Instantiates a new signature capture.
+     *
+     * @param width the width of the capture area in pixels, usually the width of the signature view
+     * @param height the height of the capture area in pixels, usually the height of the signature view
+     */
+    public SignatureCapture(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Records a touch event of the signature view, including the batched historical points of a move. Only the first pointer is recorded.
+     *
+     * @param event the touch event, with coordinates relative to the capture area
+     * @return true, if the event was recorded
+     */
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                this.startStroke(event.getX(), event.getY());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                for (int i = 0; i < event.getHistorySize(); i++) {
+                    this.addPoint(event.getHistoricalX(i), event.getHistoricalY(i));
+                }
+                this.addPoint(event.getX(), event.getY());
+                return true;
+            case MotionEvent.ACTION_UP:
+                this.addPoint(event.getX(), event.getY());
+                this.endStroke();
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                this.endStroke();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Starts a new stroke, ending the current one.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    public void startStroke(float x, float y) {
+        this.endStroke();
+        this.currentStroke = new int[16];
+        this.currentLength = 0;
+        this.addPoint(x, y);
+    }
+
+    /**
+     * Adds a point to the current stroke. Starts a stroke if none is in progress.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    public void addPoint(float x, float y) {
+        if (this.currentStroke == null) {
+            this.startStroke(x, y);
+            return;
+        }
+
+        int pointX = Math.round(x);
+        int pointY = Math.round(y);
+
+        if (this.currentLength >= 2 && this.currentStroke[this.currentLength - 2] == pointX && this.currentStroke[this.currentLength - 1] == pointY) {
+            return;
+        }
+
+        if (this.currentLength + 2 > this.currentStroke.length) {
+            int[] grown = new int[this.currentStroke.length * 2];
+            System.arraycopy(this.currentStroke, 0, grown, 0, this.currentLength);
+            this.currentStroke = grown;
+        }
+
+        this.currentStroke[this.currentLength++] = pointX;
+        this.currentStroke[this.currentLength++] = pointY;
+    }
+
+    /**
+     * Ends the current stroke.
+     */
+    public void endStroke() {
+        if (this.currentStroke != null && this.currentLength > 0) {
+            int[] stroke = new int[this.currentLength];
+            System.arraycopy(this.currentStroke, 0, stroke, 0, this.currentLength);
+            this.strokes.add(stroke);
+        }
+
+        this.currentStroke = null;
+        this.currentLength = 0;
+    }
+
+    /**
+     * Removes everything that was drawn.
+     */
+    public void clear() {
+        this.strokes.clear();
+        this.currentStroke = null;
+        this.currentLength = 0;
+    }
+
+    /**
+     * Gets the signature drawn so far, including the stroke in progress.
+     *
+     * @return the signature
+     */
+    public SignatureStrokes getSignatureStrokes() {
+        List<int[]> allStrokes = new ArrayList<>(this.strokes);
+
+        if (this.currentStroke != null && this.currentLength > 0) {
+            int[] stroke = new int[this.currentLength];
+            System.arraycopy(this.currentStroke, 0, stroke, 0, this.currentLength);
+            allStrokes.add(stroke);
+        }
+
+        return new SignatureStrokes(this.width, this.height, allStrokes);
+    }
+}
@@ -0,0 +1,185 @@
+package com.wepay.android.models;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Class SignatureStrokes represents a signature as the strokes of the pen, instead of as an image. It is recorded with a SignatureCapture.
+ * Coordinates are whole pixels in the capture area, with the origin at its top left corner.
+ *
+ * A signature can be encoded in a compact binary form of a few hundred bytes, for example to store it until it is uploaded.
+ */
+public class SignatureStrokes {
+
+    /** The version of the binary form. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The width of the capture area. */
+    private final int width;
+
+    /** The height of the capture area. */
+    private final int height;
+
+    /** The strokes, each holding alternating x and y coordinates. */
+    private final List<int[]> strokes;
+
+    /**
+     * Instantiates a new signature.
+     *
+     * @param width the width of the capture area
+     * @param height the height of the capture area
+     * @param strokes the strokes, each holding alternating x and y coordinates
+     */
+    public SignatureStrokes(int width, int height, List<int[]> strokes) {
+        this.width = width;
+        this.height = height;
+        this.strokes = Collections.unmodifiableList(new ArrayList<>(strokes));
+    }
+
+    /**
+     * Gets the width of the capture area.
+     *
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Gets the height of the capture area.
+     *
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Gets the strokes.
+     *
+     * @return the strokes, each holding alternating x and y coordinates
+     */
+    public List<int[]> getStrokes() {
+        return this.strokes;
+    }
+
+    /**
+     * Determines if the signature has no strokes.
+     *
+     * @return true, if nothing was drawn
+     */
+    public boolean isEmpty() {
+        return this.strokes.isEmpty();
+    }
+
+    /**
+     * Encodes the signature in its compact binary form. Each point is stored as its distance from the previous point, as variable-length integers, so the slow movements of a pen take a byte per coordinate.
+     *
+     * @return the encoded signature
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        writeVarint(output, FORMAT_VERSION);
+        writeVarint(output, this.width);
+        writeVarint(output, this.height);
+        writeVarint(output, this.strokes.size());
+
+        int lastX = 0;
+        int lastY = 0;
+
+        for (int[] stroke : this.strokes) {
+            writeVarint(output, stroke.length / 2);
+
+            for (int i = 0; i + 1 < stroke.length; i += 2) {
+                writeVarint(output, zigzag(stroke[i] - lastX));
+                writeVarint(output, zigzag(stroke[i + 1] - lastY));
+                lastX = stroke[i];
+                lastY = stroke[i + 1];
+            }
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Decodes a signature from its compact binary form.
+     *
+     * @param data the encoded signature
+     * @return the signature
+     * @throws IllegalArgumentException if the data is not an encoded signature
+     */
+    public static SignatureStrokes decode(byte[] data) {
+        int[] position = new int[] {0};
+
+        int version = readVarint(data, position);
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported signature format version " + version);
+        }
+
+        int width = readVarint(data, position);
+        int height = readVarint(data, position);
+        int strokeCount = readVarint(data, position);
+
+        List<int[]> strokes = new ArrayList<>();
+        int lastX = 0;
+        int lastY = 0;
+
+        for (int s = 0; s < strokeCount; s++) {
+            int pointCount = readVarint(data, position);
+
+            // every point takes at least two bytes
+            if (pointCount > (data.length - position[0]) / 2) {
+                throw new IllegalArgumentException("Truncated signature data");
+            }
+
+            int[] stroke = new int[pointCount * 2];
+            for (int i = 0; i < stroke.length; i += 2) {
+                lastX += unzigzag(readVarint(data, position));
+                lastY += unzigzag(readVarint(data, position));
+                stroke[i] = lastX;
+                stroke[i + 1] = lastY;
+            }
+            strokes.add(stroke);
+        }
+
+        return new SignatureStrokes(width, height, strokes);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] position) {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position[0] >= data.length) {
+                throw new IllegalArgumentException("Truncated signature data");
+            }
+
+            byte b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Malformed signature data");
+    }
+}